@@ -1,14 +1,17 @@
 package org.jetbrains.conf.bookify;
 
 import org.jetbrains.conf.bookify.config.BookifySettingsConfig;
+import org.jetbrains.conf.bookify.events.EventBatchingSettings;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.modulith.Modulithic;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @Modulithic
 @SpringBootApplication
-@EnableConfigurationProperties({BookifySettingsConfig.class})
+@EnableScheduling
+@EnableConfigurationProperties({BookifySettingsConfig.class, EventBatchingSettings.class})
 public class BookifyApplication {
 
     public static void main(String[] args) {
@@ -2,12 +2,17 @@ package org.jetbrains.conf.bookify.books;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jdbc.repository.query.Modifying;
+import org.springframework.data.jdbc.repository.query.Query;
 import org.springframework.data.querydsl.binding.QuerydslPredicate;
 import org.springframework.data.relational.core.mapping.event.BeforeConvertCallback;
 import org.springframework.data.repository.CrudRepository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 interface BookRepository extends CrudRepository<Book, UUID> {
@@ -19,9 +24,137 @@ interface BookRepository extends CrudRepository<Book, UUID> {
      * @return a list of matching books; never {@code null}, possibly empty
      */
     List<Book> findByNameContainingIgnoreCase(String name, Sort sort);
+
+    /**
+     * Finds a book and locks it until the end of the transaction, which serializes
+     * hand-overs and waitlist changes for the same book.
+     *
+     * @param id the id of the book
+     * @return the locked book, if it exists
+     */
+    @Query("SELECT * FROM book WHERE id = :id FOR UPDATE")
+    Optional<Book> findByIdForUpdate(UUID id);
+
+    /**
+     * Marks the available books among the given ones as borrowed.
+     *
+     * @param ids the ids of the books
+     * @return the ids of the books that were available and are now borrowed
+     */
+    @Query("UPDATE book SET available = false WHERE id IN (:ids) AND available RETURNING id")
+    List<UUID> markAvailableAsBorrowed(Collection<UUID> ids);
+
+    /**
+     * Counts the requests waiting for a book.
+     *
+     * @param bookId the id of the book
+     * @return the length of the waitlist
+     */
+    @Query("SELECT count(*) FROM book_waitlist WHERE book_id = :bookId")
+    int countWaitlisted(UUID bookId);
+
+    /**
+     * Appends a borrowing request to the waitlist of a book; a request that is already queued keeps its place.
+     *
+     * @param bookId the id of the book
+     * @param borrowingId the id of the borrowing request
+     * @return the number of inserted entries
+     */
+    @Modifying
+    @Query("INSERT INTO book_waitlist (book_id, borrowing_id) VALUES (:bookId, :borrowingId) ON CONFLICT (borrowing_id) DO NOTHING")
+    int enqueueWaitlisted(UUID bookId, UUID borrowingId);
+
+    /**
+     * Finds the 1-based place of a borrowing request in the waitlist of a book.
+     *
+     * @param bookId the id of the book
+     * @param borrowingId the id of the borrowing request
+     * @return the position in the queue
+     */
+    @Query("""
+            SELECT count(*) FROM book_waitlist
+            WHERE book_id = :bookId AND id <= (SELECT id FROM book_waitlist WHERE borrowing_id = :borrowingId)
+            """)
+    int findWaitlistPosition(UUID bookId, UUID borrowingId);
+
+    /**
+     * Removes the head of the waitlist of a book.
+     *
+     * @param bookId the id of the book
+     * @return the id of the borrowing request that waited longest, if any
+     */
+    @Query("""
+            DELETE FROM book_waitlist
+            WHERE id = (SELECT id FROM book_waitlist WHERE book_id = :bookId ORDER BY id LIMIT 1)
+            RETURNING borrowing_id
+            """)
+    Optional<UUID> dequeueWaitlisted(UUID bookId);
+
+    /**
+     * Records borrowing requests as handled; requests that were handled before are left as they are.
+     *
+     * @param borrowingIds the ids of the borrowing requests
+     * @param bookIds the ids of the books they ask for, in the same order
+     * @return the ids of the requests that had not been handled before
+     */
+    @Query("""
+            INSERT INTO book_borrow_request (borrowing_id, book_id)
+            SELECT * FROM unnest(ARRAY[:borrowingIds]::uuid[], ARRAY[:bookIds]::uuid[])
+            ON CONFLICT (borrowing_id) DO NOTHING
+            RETURNING borrowing_id
+            """)
+    List<UUID> recordHandled(List<UUID> borrowingIds, List<UUID> bookIds);
+
+    /**
+     * Records that a book was handed over to a borrowing request.
+     *
+     * @param bookId the id of the book
+     * @param borrowingId the id of the borrowing request
+     * @return the number of updated entries
+     */
+    @Modifying
+    @Query("""
+            INSERT INTO book_borrow_request (borrowing_id, book_id, holds_book) VALUES (:borrowingId, :bookId, true)
+            ON CONFLICT (borrowing_id) DO UPDATE SET holds_book = true
+            """)
+    int recordHolder(UUID bookId, UUID borrowingId);
+
+    /**
+     * Checks whether a book is out with a borrowing request.
+     *
+     * @param borrowingId the id of the borrowing request
+     * @return true if the book it asked for was handed over to it and not given back
+     */
+    @Query("SELECT EXISTS (SELECT 1 FROM book_borrow_request WHERE borrowing_id = :borrowingId AND holds_book)")
+    boolean holdsBook(UUID borrowingId);
+
+    /**
+     * Records that nobody holds a book anymore.
+     *
+     * @param bookId the id of the book
+     * @return the number of updated entries
+     */
+    @Modifying
+    @Query("UPDATE book_borrow_request SET holds_book = false WHERE book_id = :bookId AND holds_book")
+    int clearHolder(UUID bookId);
+
+    /**
+     * Records that a borrowing request gave back the book handed over to it.
+     *
+     * @param bookId the id of the book
+     * @param borrowingId the id of the borrowing request
+     * @return 1 if the request held the book, 0 otherwise
+     */
+    @Modifying
+    @Query("""
+            UPDATE book_borrow_request SET holds_book = false
+            WHERE borrowing_id = :borrowingId AND book_id = :bookId AND holds_book
+            """)
+    int releaseHolder(UUID bookId, UUID borrowingId);
 }
 
 @Configuration
+@EnableConfigurationProperties(BookWaitlistSettings.class)
 class BookCallbackConfiguration {
     @Bean
     BeforeConvertCallback<Book> beforeConvertCallback() {
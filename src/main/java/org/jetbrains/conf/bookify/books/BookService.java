@@ -2,29 +2,52 @@ package org.jetbrains.conf.bookify.books;
 
 import org.jetbrains.conf.bookify.events.BookAvailabilityCheckedEvent;
 import org.jetbrains.conf.bookify.events.BookBorrowRequestEvent;
+import org.jetbrains.conf.bookify.events.BookEventListener;
+import org.jetbrains.conf.bookify.events.BookHandOverDeclinedEvent;
 import org.jetbrains.conf.bookify.events.BookReturnedEvent;
+import org.jetbrains.conf.bookify.events.BookWaitlistedEvent;
+import org.jetbrains.conf.bookify.events.EventBatcher;
+import org.jetbrains.conf.bookify.events.EventBatchingSettings;
 import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Sort;
-import org.springframework.modulith.events.ApplicationModuleListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Service
-class BookService {
+class BookService implements DisposableBean {
 
     private final BookRepository bookRepository;
     private final ApplicationEventPublisher eventPublisher;
+    private final BookWaitlistSettings waitlistSettings;
+    private final TransactionTemplate transactionTemplate;
+    private final @Nullable EventBatcher<BookBorrowRequestEvent> borrowRequestBatcher;
 
-    BookService(BookRepository bookRepository, ApplicationEventPublisher eventPublisher) {
+    BookService(BookRepository bookRepository, ApplicationEventPublisher eventPublisher,
+                BookWaitlistSettings waitlistSettings, EventBatchingSettings batchingSettings,
+                TransactionTemplate transactionTemplate) {
         this.bookRepository = bookRepository;
         this.eventPublisher = eventPublisher;
+        this.waitlistSettings = waitlistSettings;
+        this.transactionTemplate = transactionTemplate;
+        this.borrowRequestBatcher = batchingSettings.enabled()
+                ? new EventBatcher<>("book-borrow-requests", batchingSettings.maxSize(), batchingSettings.maxDelay(),
+                        this::handleBookBorrowedEvents)
+                : null;
     }
 
     /**
@@ -79,7 +102,7 @@ class BookService {
      */
     @Transactional
     Optional<Book> markBookAsBorrowed(UUID id) {
-        Optional<Book> bookOpt = bookRepository.findById(id);
+        Optional<Book> bookOpt = bookRepository.findByIdForUpdate(id);
         if (bookOpt.isPresent()) {
             Book book = bookOpt.get();
             if (book.isAvailable()) {
@@ -106,6 +129,51 @@ class BookService {
         return Optional.empty();
     }
 
+    /**
+     * Queue a borrowing request for a book that is out
+     * @param id the id of the book
+     * @param borrowingId the id of the borrowing request
+     * @return the position in the waitlist, empty if the book does not exist or its waitlist is full
+     */
+    @Transactional
+    OptionalInt waitlist(UUID id, UUID borrowingId) {
+        if (bookRepository.findByIdForUpdate(id).isEmpty()
+                || bookRepository.countWaitlisted(id) >= waitlistSettings.maxSize()) {
+            return OptionalInt.empty();
+        }
+        bookRepository.enqueueWaitlisted(id, borrowingId);
+        return OptionalInt.of(bookRepository.findWaitlistPosition(id, borrowingId));
+    }
+
+    /**
+     * Hand a returned book over to the request that waited longest, or mark it as available if nobody waits
+     * @param id the id of the book
+     * @return the id of the borrowing request the book was handed over to, empty otherwise
+     */
+    @Transactional
+    Optional<UUID> handOverReturnedBook(UUID id) {
+        Optional<Book> bookOpt = bookRepository.findByIdForUpdate(id);
+        if (bookOpt.isEmpty()) {
+            return Optional.empty();
+        }
+        Optional<UUID> next = bookRepository.dequeueWaitlisted(id);
+        if (next.isPresent()) {
+            handOverTo(id, next.get());
+        } else {
+            bookRepository.clearHolder(id);
+            Book book = bookOpt.get();
+            book.setAvailable(true);
+            bookRepository.save(book);
+        }
+        return next;
+    }
+
+    private void handOverTo(UUID bookId, UUID borrowingId) {
+        // Whoever held the book before has given it back
+        bookRepository.clearHolder(bookId);
+        bookRepository.recordHolder(bookId, borrowingId);
+    }
+
     @Transactional(readOnly = true)
     public Optional<Book> findById(@Nullable UUID id) {
         return bookRepository.findById(id);
@@ -114,10 +182,91 @@ class BookService {
     /**
      * Event listener for when a book is borrowed.
      * @param event the book borrowed event
+     * @return completes once the request was handled, which is later than the return when batching is enabled
+     */
+    @BookEventListener
+    CompletableFuture<Void> handleBookBorrowedEvent(BookBorrowRequestEvent event) {
+        if (borrowRequestBatcher != null) {
+            return borrowRequestBatcher.submit(event);
+        }
+        if (!firstDeliveries(List.of(event)).isEmpty()) {
+            checkAvailability(event);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Record borrow requests as handled, in the transaction that handles them. A request that was handled
+     * before is answered with its outcome again, as its answer may be what got lost.
+     * @param events the borrow requests
+     * @return those of them that were not handled before, which a redelivery already was
      */
-    @ApplicationModuleListener
-    void handleBookBorrowedEvent(BookBorrowRequestEvent event) {
+    private List<BookBorrowRequestEvent> firstDeliveries(List<BookBorrowRequestEvent> events) {
+        Map<UUID, BookBorrowRequestEvent> byBorrowing = new LinkedHashMap<>();
+        events.forEach(event -> byBorrowing.putIfAbsent(event.borrowId(), event));
+        Set<UUID> unhandled = new HashSet<>(bookRepository.recordHandled(
+                List.copyOf(byBorrowing.keySet()),
+                byBorrowing.values().stream().map(BookBorrowRequestEvent::bookId).toList()));
+        List<BookBorrowRequestEvent> requests = new ArrayList<>();
+        for (BookBorrowRequestEvent event : byBorrowing.values()) {
+            if (unhandled.contains(event.borrowId())) {
+                requests.add(event);
+            } else {
+                replayOutcome(event);
+            }
+        }
+        return requests;
+    }
+
+    private void replayOutcome(BookBorrowRequestEvent event) {
+        if (bookRepository.holdsBook(event.borrowId())) {
+            eventPublisher.publishEvent(new BookAvailabilityCheckedEvent(event.bookId(), event.borrowId(), true));
+            return;
+        }
+        int position = bookRepository.findWaitlistPosition(event.bookId(), event.borrowId());
+        if (position > 0) {
+            eventPublisher.publishEvent(new BookWaitlistedEvent(event.bookId(), event.borrowId(), position));
+            return;
+        }
+        // Turned away, or the book went back already; members ignore the answer for a request that is settled
+        eventPublisher.publishEvent(new BookAvailabilityCheckedEvent(event.bookId(), event.borrowId(), false));
+    }
+
+    /**
+     * Handle a batch of borrow requests in one transaction. Books that are available are flipped with a
+     * single statement and go to the first request for them; the other requests take the regular path.
+     * @param events the borrow requests, in publication order
+     */
+    void handleBookBorrowedEvents(List<BookBorrowRequestEvent> events) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<BookBorrowRequestEvent> requests = firstDeliveries(events);
+            if (requests.isEmpty()) {
+                return;
+            }
+            Set<UUID> borrowed = new HashSet<>(bookRepository.markAvailableAsBorrowed(
+                    requests.stream().map(BookBorrowRequestEvent::bookId).distinct().toList()));
+            for (BookBorrowRequestEvent event : requests) {
+                if (borrowed.remove(event.bookId())) {
+                    handOverTo(event.bookId(), event.borrowId());
+                    eventPublisher.publishEvent(new BookAvailabilityCheckedEvent(event.bookId(), event.borrowId(), true));
+                } else {
+                    checkAvailability(event);
+                }
+            }
+        });
+    }
+
+    private void checkAvailability(BookBorrowRequestEvent event) {
         Optional<Book> updatedBook = markBookAsBorrowed(event.bookId());
+        if (updatedBook.isPresent()) {
+            handOverTo(event.bookId(), event.borrowId());
+        } else {
+            OptionalInt position = waitlist(event.bookId(), event.borrowId());
+            if (position.isPresent()) {
+                eventPublisher.publishEvent(new BookWaitlistedEvent(event.bookId(), event.borrowId(), position.getAsInt()));
+                return;
+            }
+        }
         eventPublisher.publishEvent(new BookAvailabilityCheckedEvent(event.bookId(), event.borrowId(), updatedBook.isPresent()));
     }
 
@@ -125,9 +274,33 @@ class BookService {
      * Event listener for when a book is returned.
      * @param event the book returned event
      */
-    @ApplicationModuleListener
+    @BookEventListener
     void handleBookReturnedEvent(BookReturnedEvent event) {
-        markBookAsReturned(event.bookId());
+        handOver(event.bookId());
+    }
+
+    /**
+     * Event listener for when a borrowing request declines the book handed over to it. Only the request that
+     * holds the book can pass it on; a decline from any other, or a repeated one, is ignored.
+     * @param event the book hand-over declined event
+     */
+    @BookEventListener
+    void handleBookHandOverDeclinedEvent(BookHandOverDeclinedEvent event) {
+        if (bookRepository.releaseHolder(event.bookId(), event.borrowingId()) > 0) {
+            handOver(event.bookId());
+        }
+    }
+
+    private void handOver(UUID bookId) {
+        handOverReturnedBook(bookId).ifPresent(borrowingId ->
+                eventPublisher.publishEvent(new BookAvailabilityCheckedEvent(bookId, borrowingId, true)));
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (borrowRequestBatcher != null) {
+            borrowRequestBatcher.close();
+        }
     }
 
 }
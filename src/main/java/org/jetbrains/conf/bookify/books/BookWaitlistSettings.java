@@ -0,0 +1,12 @@
+package org.jetbrains.conf.bookify.books;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of the per-book waitlist.
+ * @param maxSize the maximum number of requests queued for one book; further requests are rejected
+ */
+@ConfigurationProperties(prefix = "bookify.waitlist")
+record BookWaitlistSettings(@DefaultValue("50") int maxSize) {
+}
@@ -0,0 +1,31 @@
+package org.jetbrains.conf.bookify.config;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+/**
+ * The authentication of a request that presented a valid bearer token issued by {@link AccessTokens}.
+ */
+class AccessTokenAuthentication extends AbstractAuthenticationToken {
+
+    private final String username;
+
+    AccessTokenAuthentication(String username, Collection<? extends GrantedAuthority> authorities) {
+        super(authorities);
+        this.username = username;
+        setAuthenticated(true);
+    }
+
+    @Override
+    public @Nullable Object getCredentials() {
+        return null;
+    }
+
+    @Override
+    public Object getPrincipal() {
+        return username;
+    }
+}
@@ -0,0 +1,40 @@
+package org.jetbrains.conf.bookify.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping(path = "/api/auth")
+class AccessTokenController {
+
+    private final AccessTokens accessTokens;
+
+    AccessTokenController(AccessTokens accessTokens) {
+        this.accessTokens = accessTokens;
+    }
+
+    /**
+     * Exchange HTTP Basic credentials for a short-lived bearer token
+     * @param authentication the user, authenticated with its password
+     * @return 200 with the token, or 403 if the request was itself authenticated with a token
+     */
+    @PostMapping("/token")
+    ResponseEntity<TokenResponse> issueToken(Authentication authentication) {
+        // Tokens must not renew themselves, or they would never expire
+        if (authentication instanceof AccessTokenAuthentication) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        AccessTokens.IssuedToken issued = accessTokens.issue(authentication);
+        return new ResponseEntity<>(new TokenResponse(issued.token(), "Bearer", issued.expiresIn()), HttpStatus.OK);
+    }
+
+    record TokenResponse(@JsonProperty("access_token") String accessToken,
+                         @JsonProperty("token_type") String tokenType,
+                         @JsonProperty("expires_in") long expiresIn) {
+    }
+}
@@ -0,0 +1,156 @@
+package org.jetbrains.conf.bookify.config;
+
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.InstantSource;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Issues and verifies short-lived bearer tokens, so that clients verify their password once and then
+ * authenticate every request without a user lookup or a password hash verification.
+ *
+ * <p>Tokens are JWTs signed with HMAC-SHA256, carrying the name and the authorities of the user. Keys are
+ * configured as {@code <key id>:<base64 secret>}; the first one signs and all of them verify, so a key is
+ * rotated by putting a new key first and dropping the old one once the tokens it signed have expired. Without
+ * configured keys, a key is generated at startup: tokens are then only accepted by the node that issued them,
+ * until it restarts. The application only starts without keys in the {@code dev} and {@code test} profiles.</p>
+ *
+ * <p>A token is not checked against the user store, so a user keeps the authorities of a token until it
+ * expires, even if they are revoked in the meantime.</p>
+ */
+class AccessTokens {
+
+    private static final Logger log = LoggerFactory.getLogger(AccessTokens.class);
+
+    private static final String HMAC = "HmacSHA256";
+    private static final String ALGORITHM = "HS256";
+    private static final int MIN_SECRET_BYTES = 32;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final JsonMapper jsonMapper;
+    private final InstantSource clock;
+    private final int ttlSeconds;
+    private final String signingKeyId;
+    private final Map<String, SecretKeySpec> keys;
+
+    AccessTokens(List<String> keys, int ttlSeconds, JsonMapper jsonMapper, InstantSource clock) {
+        this.jsonMapper = jsonMapper;
+        this.clock = clock;
+        this.ttlSeconds = ttlSeconds;
+        this.keys = new LinkedHashMap<>();
+        for (String key : keys) {
+            int separator = key.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalStateException("Token keys must be given as <key id>:<base64 secret>");
+            }
+            byte[] secret = Base64.getDecoder().decode(key.substring(separator + 1).trim());
+            if (secret.length < MIN_SECRET_BYTES) {
+                throw new IllegalStateException("Token key %s is shorter than %d bytes"
+                        .formatted(key.substring(0, separator), MIN_SECRET_BYTES));
+            }
+            this.keys.put(key.substring(0, separator).trim(), new SecretKeySpec(secret, HMAC));
+        }
+        if (this.keys.isEmpty()) {
+            byte[] secret = new byte[MIN_SECRET_BYTES];
+            new SecureRandom().nextBytes(secret);
+            String keyId = "local-" + HexFormat.of().formatHex(secret, 0, 4);
+            this.keys.put(keyId, new SecretKeySpec(secret, HMAC));
+            log.info("No token keys configured, generated key {}; tokens are only valid on this node", keyId);
+        }
+        this.signingKeyId = this.keys.keySet().iterator().next();
+    }
+
+    /**
+     * Issue a token for an authenticated user.
+     * @param authentication the authentication of the user
+     * @return the signed token and how long it is valid
+     */
+    IssuedToken issue(Authentication authentication) {
+        long now = clock.instant().getEpochSecond();
+        Header header = new Header(ALGORITHM, "JWT", signingKeyId);
+        Claims claims = new Claims(authentication.getName(),
+                AuthorityUtils.authorityListToSet(authentication.getAuthorities()).stream().sorted().toList(),
+                now, now + ttlSeconds);
+        String content = encode(header) + "." + encode(claims);
+        return new IssuedToken(content + "." + ENCODER.encodeToString(sign(signingKeyId, content)), ttlSeconds);
+    }
+
+    /**
+     * Verify a token, in memory only.
+     * @param token the token presented by a client
+     * @return the authentication it carries, or {@code null} if it is malformed, forged or expired
+     */
+    @Nullable AccessTokenAuthentication verify(String token) {
+        String[] parts = token.split("\\.", -1);
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            Header header = jsonMapper.readValue(DECODER.decode(parts[0]), Header.class);
+            if (!ALGORITHM.equals(header.alg()) || header.kid() == null || !keys.containsKey(header.kid())) {
+                return null;
+            }
+            byte[] signature = sign(header.kid(), parts[0] + "." + parts[1]);
+            if (!MessageDigest.isEqual(signature, DECODER.decode(parts[2]))) {
+                return null;
+            }
+            Claims claims = jsonMapper.readValue(DECODER.decode(parts[1]), Claims.class);
+            if (claims.sub() == null || clock.instant().getEpochSecond() >= claims.exp()) {
+                return null;
+            }
+            List<GrantedAuthority> authorities = claims.roles() == null
+                    ? List.of()
+                    : AuthorityUtils.createAuthorityList(claims.roles());
+            return new AccessTokenAuthentication(claims.sub(), authorities);
+        } catch (IllegalArgumentException | JacksonException e) {
+            return null;
+        }
+    }
+
+    private String encode(Object part) {
+        return ENCODER.encodeToString(jsonMapper.writeValueAsBytes(part));
+    }
+
+    private byte[] sign(String keyId, String content) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(keys.get(keyId));
+            return mac.doFinal(content.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+
+    /**
+     * A token issued to a client.
+     *
+     * @param token the signed token, to be sent as {@code Authorization: Bearer <token>}
+     * @param expiresIn how many seconds the token is valid
+     */
+    record IssuedToken(String token, long expiresIn) {
+    }
+
+    record Header(@Nullable String alg, @Nullable String typ, @Nullable String kid) {
+    }
+
+    record Claims(@Nullable String sub, @Nullable List<String> roles, long iat, long exp) {
+    }
+}
@@ -0,0 +1,129 @@
+package org.jetbrains.conf.bookify.config;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.security.core.Authentication;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, short-lived memory of successful username and password authentications.
+ *
+ * <p>Entries are keyed on an HMAC of the presented username and password, under a key generated at startup
+ * that never leaves the process: the cache holds no passwords, and its keys cannot be checked against
+ * guessed passwords without that key.</p>
+ */
+class AuthenticationCache {
+
+    private static final String HMAC = "HmacSHA256";
+
+    private final long ttlNanos;
+    private final Map<String, Entry> entries;
+    private final SecretKeySpec key;
+    private long generation;
+
+    AuthenticationCache(int ttlSeconds, int maxEntries) {
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, HMAC);
+    }
+
+    /**
+     * Whether authentications are cached at all; a time to live of zero turns the cache off.
+     * @return {@code true} if the cache is in use
+     */
+    boolean isEnabled() {
+        return ttlNanos > 0;
+    }
+
+    /**
+     * Look up a recent authentication with the same credentials.
+     * @param username the presented username
+     * @param password the presented password
+     * @return the cached authentication, or a miss carrying the state to {@link #put} the result with
+     */
+    Lookup get(String username, String password) {
+        String cacheKey = cacheKey(username, password);
+        synchronized (entries) {
+            Entry entry = entries.get(cacheKey);
+            if (entry != null && System.nanoTime() - entry.expiresAt() < 0) {
+                return new Lookup(cacheKey, generation, entry.result());
+            }
+            return new Lookup(cacheKey, generation, null);
+        }
+    }
+
+    /**
+     * Remember a successful authentication, unless the cache was evicted since the lookup that missed.
+     * @param miss the lookup that missed
+     * @param username the name of the authenticated user
+     * @param result the successful authentication
+     */
+    void put(Lookup miss, String username, Authentication result) {
+        synchronized (entries) {
+            // An eviction during the verification may concern this user, whose result could then be stale
+            if (generation == miss.generation()) {
+                entries.put(miss.cacheKey(), new Entry(username, result, System.nanoTime() + ttlNanos));
+            }
+        }
+    }
+
+    /**
+     * Forget the authentications of a user.
+     * @param username the name of the user
+     */
+    void evict(String username) {
+        synchronized (entries) {
+            generation++;
+            entries.values().removeIf(entry -> entry.username().equals(username));
+        }
+    }
+
+    /**
+     * Forget all authentications.
+     */
+    void evictAll() {
+        synchronized (entries) {
+            generation++;
+            entries.clear();
+        }
+    }
+
+    private String cacheKey(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return HexFormat.of().formatHex(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+
+    /**
+     * The outcome of a lookup.
+     *
+     * @param cacheKey the keyed hash of the credentials
+     * @param generation the eviction count when the lookup was made
+     * @param result the cached authentication, or {@code null} on a miss
+     */
+    record Lookup(String cacheKey, long generation, @Nullable Authentication result) {
+    }
+
+    private record Entry(String username, Authentication result, long expiresAt) {
+    }
+}
@@ -0,0 +1,105 @@
+package org.jetbrains.conf.bookify.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.jetbrains.conf.bookify.events.BookEvent;
+import org.jetbrains.conf.bookify.events.BookEventListener;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.support.AbstractPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs {@link BookEventListener} methods on the {@link BookEventLanes}.
+ *
+ * <p>The advisor is the outermost one around the listener, so the event publication registry's
+ * completion tracking and the listener's transaction both run on the lane, once per event. A listener that
+ * completes asynchronously holds back the next event for its book until it is done. Each listener
+ * works for the {@link Bulkhead#LISTENERS} and holds one of their {@link JdbcConcurrencyLimit} permits
+ * while it runs, like requests do for theirs.</p>
+ */
+@Configuration
+class BookEventLaneConfiguration {
+
+    @Bean
+    BookEventLanes bookEventLanes(BookifySettingsConfig bookifySettingsConfig, MeterRegistry meterRegistry) {
+        return new BookEventLanes(bookifySettingsConfig.getEventsLanes(), meterRegistry);
+    }
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static BookEventLaneAdvisor bookEventLaneAdvisor(ObjectProvider<BookEventLanes> lanes,
+                                                     ObjectProvider<JdbcConcurrencyLimits> jdbcConcurrencyLimits) {
+        return new BookEventLaneAdvisor(lanes, jdbcConcurrencyLimits);
+    }
+
+    static class BookEventLaneAdvisor extends AbstractPointcutAdvisor {
+
+        private static final Logger log = LoggerFactory.getLogger(BookEventLaneAdvisor.class);
+
+        private final Pointcut pointcut = AnnotationMatchingPointcut.forMethodAnnotation(BookEventListener.class);
+        private final MethodInterceptor interceptor;
+
+        BookEventLaneAdvisor(ObjectProvider<BookEventLanes> lanes, ObjectProvider<JdbcConcurrencyLimits> jdbcConcurrencyLimits) {
+            this.interceptor = invocation -> dispatch(lanes.getObject(), jdbcConcurrencyLimits.getObject(), invocation);
+            setOrder(Ordered.HIGHEST_PRECEDENCE);
+        }
+
+        @Override
+        public Pointcut getPointcut() {
+            return pointcut;
+        }
+
+        @Override
+        public MethodInterceptor getAdvice() {
+            return interceptor;
+        }
+
+        private static @Nullable Object dispatch(BookEventLanes lanes, JdbcConcurrencyLimits jdbcConcurrencyLimits,
+                                                 MethodInvocation invocation) throws Throwable {
+            BookEvent event = Arrays.stream(invocation.getArguments())
+                    .filter(BookEvent.class::isInstance)
+                    .map(BookEvent.class::cast)
+                    .findFirst()
+                    .orElse(null);
+            if (event == null) {
+                return invocation.proceed();
+            }
+            lanes.dispatchAsync(event.bookId(), () -> {
+                // A listener that returns a future, such as one that batches its events, is done only once the
+                // future completes, and the next event for the book must not overtake it
+                AtomicReference<CompletionStage<?>> completion =
+                        new AtomicReference<>(CompletableFuture.completedFuture(null));
+                jdbcConcurrencyLimits.limit(Bulkhead.LISTENERS, () -> {
+                    try {
+                        if (invocation.proceed() instanceof CompletionStage<?> stage) {
+                            completion.set(stage.whenComplete((result, e) -> {
+                                if (e != null) {
+                                    log.error("Listener {} failed for {}", invocation.getMethod(), event, e);
+                                }
+                            }));
+                        }
+                    } catch (Throwable e) {
+                        log.error("Listener {} failed for {}", invocation.getMethod(), event, e);
+                    }
+                }).run();
+                return completion.get();
+            });
+            return null;
+        }
+    }
+}
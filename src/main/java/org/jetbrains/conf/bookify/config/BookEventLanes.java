@@ -0,0 +1,147 @@
+package org.jetbrains.conf.bookify.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jetbrains.conf.bookify.events.LocalEventBacklog;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A fixed set of single-writer lanes, each running its tasks one at a time on a virtual thread.
+ *
+ * <p>Tasks for the same book always go to the same lane, so they run in submission order. Tasks for
+ * books on different lanes run in parallel.</p>
+ *
+ * <p>A task may finish its work after it returns, such as a listener that hands its event to a batch. The
+ * next task for the same book then waits for that work to complete, so it does not overtake it, while the
+ * lane goes on with the tasks for other books.</p>
+ *
+ * <p>The lanes report when the oldest task they have not finished was dispatched, so that the publications of
+ * events still waiting on them are not taken for stuck ones.</p>
+ */
+class BookEventLanes implements LocalEventBacklog, DisposableBean {
+
+    private static final CompletableFuture<Void> COMPLETED = CompletableFuture.completedFuture(null);
+
+    private final ThreadPoolExecutor[] lanes;
+    private final Map<UUID, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final ConcurrentSkipListMap<Long, Instant> unfinished = new ConcurrentSkipListMap<>();
+
+    BookEventLanes(int laneCount, MeterRegistry meterRegistry) {
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                    Thread.ofVirtual().name("book-lane-" + i).factory());
+            Gauge.builder("bookify.events.lane.queue", lane, executor -> executor.getQueue().size())
+                    .description("Book events waiting on a lane")
+                    .tag("lane", String.valueOf(i))
+                    .register(meterRegistry);
+            lanes[i] = lane;
+        }
+    }
+
+    /**
+     * Run a task on the lane of a book.
+     * @param bookId the ID of the book the task is about
+     * @param task the task to run
+     */
+    void dispatch(UUID bookId, Runnable task) {
+        dispatchAsync(bookId, () -> {
+            task.run();
+            return COMPLETED;
+        });
+    }
+
+    /**
+     * Run a task on the lane of a book, holding back the next task for the book until the returned stage
+     * completes.
+     * @param bookId the ID of the book the task is about
+     * @param task the task to run, returning a stage that completes once its work is done
+     */
+    void dispatchAsync(UUID bookId, Supplier<? extends CompletionStage<?>> task) {
+        ThreadPoolExecutor lane = lanes[Math.floorMod(bookId.hashCode(), lanes.length)];
+        long ticket = dispatched.incrementAndGet();
+        unfinished.put(ticket, Instant.now());
+        Supplier<CompletionStage<?>> tracked = () -> {
+            CompletionStage<?> completion;
+            try {
+                completion = task.get();
+            } catch (RuntimeException | Error e) {
+                unfinished.remove(ticket);
+                throw e;
+            }
+            return completion.whenComplete((result, failure) -> unfinished.remove(ticket));
+        };
+        try {
+            lane.execute(() -> run(lane, bookId, tracked, null));
+        } catch (RejectedExecutionException e) {
+            unfinished.remove(ticket);
+            throw e;
+        }
+    }
+
+    @Override
+    public @Nullable Instant oldestTakenOnAt() {
+        Map.Entry<Long, Instant> oldest = unfinished.firstEntry();
+        return oldest != null ? oldest.getValue() : null;
+    }
+
+    /**
+     * Run a task on its lane, or defer it until the work of the previous task for the book is done.
+     * @param deferred the completion of a task that was deferred and is due now, {@code null} for a new task
+     */
+    private void run(Executor lane, UUID bookId, Supplier<? extends CompletionStage<?>> task,
+                     @Nullable CompletableFuture<Void> deferred) {
+        if (deferred == null) {
+            CompletableFuture<?> previous = inFlight.get(bookId);
+            if (previous != null && !previous.isDone()) {
+                CompletableFuture<Void> next = new CompletableFuture<>();
+                track(bookId, next);
+                previous.whenComplete((result, failure) -> lane.execute(() -> run(lane, bookId, task, next)));
+                return;
+            }
+        }
+
+        CompletableFuture<?> completion = COMPLETED;
+        try {
+            completion = task.get().toCompletableFuture();
+        } finally {
+            if (deferred != null) {
+                completion.whenComplete((result, failure) -> deferred.complete(null));
+            } else if (!completion.isDone()) {
+                track(bookId, completion);
+            }
+        }
+    }
+
+    private void track(UUID bookId, CompletableFuture<?> completion) {
+        inFlight.put(bookId, completion);
+        completion.whenComplete((result, failure) -> inFlight.remove(bookId, completion));
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -3,6 +3,8 @@ package org.jetbrains.conf.bookify.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.bind.Name;
 
+import java.util.List;
+
 @ConfigurationProperties(prefix = "bookify")
 public class BookifySettingsConfig {
 
@@ -12,6 +14,120 @@ public class BookifySettingsConfig {
     @Name("overdue.days")
     private int overdueDays = 0;
 
+    @Name("overdue.scan.chunk-size")
+    private int overdueScanChunkSize = 500;
+
+    @Name("archive.horizon-days")
+    private int archiveHorizonDays = 365;
+
+    @Name("archive.batch-size")
+    private int archiveBatchSize = 1000;
+
+    @Name("idempotency.ttl-hours")
+    private int idempotencyTtlHours = 24;
+
+    @Name("idempotency.cache-size")
+    private int idempotencyCacheSize = 10_000;
+
+    @Name("admission.refused-ttl-seconds")
+    private int admissionRefusedTtlSeconds = 30;
+
+    @Name("admission.max-entries")
+    private int admissionMaxEntries = 10_000;
+
+    @Name("members.cache.max-entries")
+    private int membersCacheMaxEntries = 100_000;
+
+    @Name("members.cache.ttl-seconds")
+    private int membersCacheTtlSeconds = 300;
+
+    @Name("members.bulk.batch-size")
+    private int membersBulkBatchSize = 500;
+
+    @Name("security.auth-cache.ttl-seconds")
+    private int securityAuthCacheTtlSeconds = 30;
+
+    @Name("security.auth-cache.max-entries")
+    private int securityAuthCacheMaxEntries = 10_000;
+
+    @Name("security.tokens.ttl-seconds")
+    private int securityTokensTtlSeconds = 600;
+
+    @Name("security.tokens.keys")
+    private List<String> securityTokensKeys = List.of();
+
+    @Name("rate-limit.requests-per-second")
+    private int rateLimitRequestsPerSecond = 20;
+
+    @Name("rate-limit.burst")
+    private int rateLimitBurst = 40;
+
+    @Name("rate-limit.slots")
+    private int rateLimitSlots = 65_536;
+
+    @Name("load-shedding.max-event-backlog")
+    private int loadSheddingMaxEventBacklog = 10_000;
+
+    @Name("load-shedding.max-pool-wait-millis")
+    private int loadSheddingMaxPoolWaitMillis = 500;
+
+    @Name("load-shedding.retry-after-seconds")
+    private int loadSheddingRetryAfterSeconds = 5;
+
+    @Name("bulkheads.read-api.pool-size")
+    private int bulkheadsReadApiPoolSize = 8;
+
+    @Name("bulkheads.read-api.timeout-millis")
+    private int bulkheadsReadApiTimeoutMillis = 2_000;
+
+    @Name("bulkheads.write-api.pool-size")
+    private int bulkheadsWriteApiPoolSize = 6;
+
+    @Name("bulkheads.write-api.timeout-millis")
+    private int bulkheadsWriteApiTimeoutMillis = 5_000;
+
+    @Name("bulkheads.listeners.pool-size")
+    private int bulkheadsListenersPoolSize = 6;
+
+    @Name("bulkheads.listeners.timeout-millis")
+    private int bulkheadsListenersTimeoutMillis = 30_000;
+
+    @Name("bulkheads.projections.pool-size")
+    private int bulkheadsProjectionsPoolSize = 10;
+
+    @Name("bulkheads.projections.timeout-millis")
+    private int bulkheadsProjectionsTimeoutMillis = 30_000;
+
+    @Name("recovery.stuck-after-seconds")
+    private int recoveryStuckAfterSeconds = 60;
+
+    @Name("recovery.batch-size")
+    private int recoveryBatchSize = 100;
+
+    @Name("recovery.max-attempts")
+    private int recoveryMaxAttempts = 8;
+
+    @Name("recovery.backoff-seconds")
+    private int recoveryBackoffSeconds = 30;
+
+    @Name("recovery.lease-seconds")
+    private int recoveryLeaseSeconds = 60;
+
+    @Name("recovery.node-timeout-seconds")
+    private int recoveryNodeTimeoutSeconds = 60;
+
+    @Name("events.retention-hours")
+    private int eventsRetentionHours = 168;
+
+    @Name("events.purge.batch-size")
+    private int eventsPurgeBatchSize = 1000;
+
+    @Name("events.purge.mode")
+    private String eventsPurgeMode = "delete";
+
+    @Name("events.lanes")
+    private int eventsLanes = 16;
+
     public int getMaximumBooksBorrowed() {
         return maximumBooksBorrowed;
     }
@@ -20,6 +136,158 @@ public class BookifySettingsConfig {
         return overdueDays;
     }
 
+    public int getOverdueScanChunkSize() {
+        return overdueScanChunkSize;
+    }
+
+    public int getArchiveHorizonDays() {
+        return archiveHorizonDays;
+    }
+
+    public int getArchiveBatchSize() {
+        return archiveBatchSize;
+    }
+
+    public int getIdempotencyTtlHours() {
+        return idempotencyTtlHours;
+    }
+
+    public int getIdempotencyCacheSize() {
+        return idempotencyCacheSize;
+    }
+
+    public int getAdmissionRefusedTtlSeconds() {
+        return admissionRefusedTtlSeconds;
+    }
+
+    public int getAdmissionMaxEntries() {
+        return admissionMaxEntries;
+    }
+
+    public int getMembersCacheMaxEntries() {
+        return membersCacheMaxEntries;
+    }
+
+    public int getMembersCacheTtlSeconds() {
+        return membersCacheTtlSeconds;
+    }
+
+    public int getMembersBulkBatchSize() {
+        return membersBulkBatchSize;
+    }
+
+    public int getSecurityAuthCacheTtlSeconds() {
+        return securityAuthCacheTtlSeconds;
+    }
+
+    public int getSecurityAuthCacheMaxEntries() {
+        return securityAuthCacheMaxEntries;
+    }
+
+    public int getSecurityTokensTtlSeconds() {
+        return securityTokensTtlSeconds;
+    }
+
+    public List<String> getSecurityTokensKeys() {
+        return securityTokensKeys;
+    }
+
+    public int getRateLimitRequestsPerSecond() {
+        return rateLimitRequestsPerSecond;
+    }
+
+    public int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    public int getRateLimitSlots() {
+        return rateLimitSlots;
+    }
+
+    public int getLoadSheddingMaxEventBacklog() {
+        return loadSheddingMaxEventBacklog;
+    }
+
+    public int getLoadSheddingMaxPoolWaitMillis() {
+        return loadSheddingMaxPoolWaitMillis;
+    }
+
+    public int getLoadSheddingRetryAfterSeconds() {
+        return loadSheddingRetryAfterSeconds;
+    }
+
+    public int getBulkheadsReadApiPoolSize() {
+        return bulkheadsReadApiPoolSize;
+    }
+
+    public int getBulkheadsReadApiTimeoutMillis() {
+        return bulkheadsReadApiTimeoutMillis;
+    }
+
+    public int getBulkheadsWriteApiPoolSize() {
+        return bulkheadsWriteApiPoolSize;
+    }
+
+    public int getBulkheadsWriteApiTimeoutMillis() {
+        return bulkheadsWriteApiTimeoutMillis;
+    }
+
+    public int getBulkheadsListenersPoolSize() {
+        return bulkheadsListenersPoolSize;
+    }
+
+    public int getBulkheadsListenersTimeoutMillis() {
+        return bulkheadsListenersTimeoutMillis;
+    }
+
+    public int getBulkheadsProjectionsPoolSize() {
+        return bulkheadsProjectionsPoolSize;
+    }
+
+    public int getBulkheadsProjectionsTimeoutMillis() {
+        return bulkheadsProjectionsTimeoutMillis;
+    }
+
+    public int getRecoveryStuckAfterSeconds() {
+        return recoveryStuckAfterSeconds;
+    }
+
+    public int getRecoveryBatchSize() {
+        return recoveryBatchSize;
+    }
+
+    public int getRecoveryMaxAttempts() {
+        return recoveryMaxAttempts;
+    }
+
+    public int getRecoveryBackoffSeconds() {
+        return recoveryBackoffSeconds;
+    }
+
+    public int getRecoveryLeaseSeconds() {
+        return recoveryLeaseSeconds;
+    }
+
+    public int getRecoveryNodeTimeoutSeconds() {
+        return recoveryNodeTimeoutSeconds;
+    }
+
+    public int getEventsRetentionHours() {
+        return eventsRetentionHours;
+    }
+
+    public int getEventsPurgeBatchSize() {
+        return eventsPurgeBatchSize;
+    }
+
+    public String getEventsPurgeMode() {
+        return eventsPurgeMode;
+    }
+
+    public int getEventsLanes() {
+        return eventsLanes;
+    }
+
     public void setMaximumBooksBorrowed(int maximumBooksBorrowed) {
         this.maximumBooksBorrowed = maximumBooksBorrowed;
     }
@@ -27,4 +295,156 @@ public class BookifySettingsConfig {
     public void setOverdueDays(int overdueDays) {
         this.overdueDays = overdueDays;
     }
+
+    public void setOverdueScanChunkSize(int overdueScanChunkSize) {
+        this.overdueScanChunkSize = overdueScanChunkSize;
+    }
+
+    public void setArchiveHorizonDays(int archiveHorizonDays) {
+        this.archiveHorizonDays = archiveHorizonDays;
+    }
+
+    public void setArchiveBatchSize(int archiveBatchSize) {
+        this.archiveBatchSize = archiveBatchSize;
+    }
+
+    public void setIdempotencyTtlHours(int idempotencyTtlHours) {
+        this.idempotencyTtlHours = idempotencyTtlHours;
+    }
+
+    public void setIdempotencyCacheSize(int idempotencyCacheSize) {
+        this.idempotencyCacheSize = idempotencyCacheSize;
+    }
+
+    public void setAdmissionRefusedTtlSeconds(int admissionRefusedTtlSeconds) {
+        this.admissionRefusedTtlSeconds = admissionRefusedTtlSeconds;
+    }
+
+    public void setAdmissionMaxEntries(int admissionMaxEntries) {
+        this.admissionMaxEntries = admissionMaxEntries;
+    }
+
+    public void setMembersCacheMaxEntries(int membersCacheMaxEntries) {
+        this.membersCacheMaxEntries = membersCacheMaxEntries;
+    }
+
+    public void setMembersCacheTtlSeconds(int membersCacheTtlSeconds) {
+        this.membersCacheTtlSeconds = membersCacheTtlSeconds;
+    }
+
+    public void setMembersBulkBatchSize(int membersBulkBatchSize) {
+        this.membersBulkBatchSize = membersBulkBatchSize;
+    }
+
+    public void setSecurityAuthCacheTtlSeconds(int securityAuthCacheTtlSeconds) {
+        this.securityAuthCacheTtlSeconds = securityAuthCacheTtlSeconds;
+    }
+
+    public void setSecurityAuthCacheMaxEntries(int securityAuthCacheMaxEntries) {
+        this.securityAuthCacheMaxEntries = securityAuthCacheMaxEntries;
+    }
+
+    public void setSecurityTokensTtlSeconds(int securityTokensTtlSeconds) {
+        this.securityTokensTtlSeconds = securityTokensTtlSeconds;
+    }
+
+    public void setSecurityTokensKeys(List<String> securityTokensKeys) {
+        this.securityTokensKeys = securityTokensKeys;
+    }
+
+    public void setRateLimitRequestsPerSecond(int rateLimitRequestsPerSecond) {
+        this.rateLimitRequestsPerSecond = rateLimitRequestsPerSecond;
+    }
+
+    public void setRateLimitBurst(int rateLimitBurst) {
+        this.rateLimitBurst = rateLimitBurst;
+    }
+
+    public void setRateLimitSlots(int rateLimitSlots) {
+        this.rateLimitSlots = rateLimitSlots;
+    }
+
+    public void setLoadSheddingMaxEventBacklog(int loadSheddingMaxEventBacklog) {
+        this.loadSheddingMaxEventBacklog = loadSheddingMaxEventBacklog;
+    }
+
+    public void setLoadSheddingMaxPoolWaitMillis(int loadSheddingMaxPoolWaitMillis) {
+        this.loadSheddingMaxPoolWaitMillis = loadSheddingMaxPoolWaitMillis;
+    }
+
+    public void setLoadSheddingRetryAfterSeconds(int loadSheddingRetryAfterSeconds) {
+        this.loadSheddingRetryAfterSeconds = loadSheddingRetryAfterSeconds;
+    }
+
+    public void setBulkheadsReadApiPoolSize(int bulkheadsReadApiPoolSize) {
+        this.bulkheadsReadApiPoolSize = bulkheadsReadApiPoolSize;
+    }
+
+    public void setBulkheadsReadApiTimeoutMillis(int bulkheadsReadApiTimeoutMillis) {
+        this.bulkheadsReadApiTimeoutMillis = bulkheadsReadApiTimeoutMillis;
+    }
+
+    public void setBulkheadsWriteApiPoolSize(int bulkheadsWriteApiPoolSize) {
+        this.bulkheadsWriteApiPoolSize = bulkheadsWriteApiPoolSize;
+    }
+
+    public void setBulkheadsWriteApiTimeoutMillis(int bulkheadsWriteApiTimeoutMillis) {
+        this.bulkheadsWriteApiTimeoutMillis = bulkheadsWriteApiTimeoutMillis;
+    }
+
+    public void setBulkheadsListenersPoolSize(int bulkheadsListenersPoolSize) {
+        this.bulkheadsListenersPoolSize = bulkheadsListenersPoolSize;
+    }
+
+    public void setBulkheadsListenersTimeoutMillis(int bulkheadsListenersTimeoutMillis) {
+        this.bulkheadsListenersTimeoutMillis = bulkheadsListenersTimeoutMillis;
+    }
+
+    public void setBulkheadsProjectionsPoolSize(int bulkheadsProjectionsPoolSize) {
+        this.bulkheadsProjectionsPoolSize = bulkheadsProjectionsPoolSize;
+    }
+
+    public void setBulkheadsProjectionsTimeoutMillis(int bulkheadsProjectionsTimeoutMillis) {
+        this.bulkheadsProjectionsTimeoutMillis = bulkheadsProjectionsTimeoutMillis;
+    }
+
+    public void setRecoveryStuckAfterSeconds(int recoveryStuckAfterSeconds) {
+        this.recoveryStuckAfterSeconds = recoveryStuckAfterSeconds;
+    }
+
+    public void setRecoveryBatchSize(int recoveryBatchSize) {
+        this.recoveryBatchSize = recoveryBatchSize;
+    }
+
+    public void setRecoveryMaxAttempts(int recoveryMaxAttempts) {
+        this.recoveryMaxAttempts = recoveryMaxAttempts;
+    }
+
+    public void setRecoveryBackoffSeconds(int recoveryBackoffSeconds) {
+        this.recoveryBackoffSeconds = recoveryBackoffSeconds;
+    }
+
+    public void setRecoveryLeaseSeconds(int recoveryLeaseSeconds) {
+        this.recoveryLeaseSeconds = recoveryLeaseSeconds;
+    }
+
+    public void setRecoveryNodeTimeoutSeconds(int recoveryNodeTimeoutSeconds) {
+        this.recoveryNodeTimeoutSeconds = recoveryNodeTimeoutSeconds;
+    }
+
+    public void setEventsRetentionHours(int eventsRetentionHours) {
+        this.eventsRetentionHours = eventsRetentionHours;
+    }
+
+    public void setEventsPurgeBatchSize(int eventsPurgeBatchSize) {
+        this.eventsPurgeBatchSize = eventsPurgeBatchSize;
+    }
+
+    public void setEventsPurgeMode(String eventsPurgeMode) {
+        this.eventsPurgeMode = eventsPurgeMode;
+    }
+
+    public void setEventsLanes(int eventsLanes) {
+        this.eventsLanes = eventsLanes;
+    }
 }
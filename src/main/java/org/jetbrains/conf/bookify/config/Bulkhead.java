@@ -0,0 +1,97 @@
+package org.jetbrains.conf.bookify.config;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The part of the application a thread works for, each with a connection pool of its own, so that one part
+ * cannot starve the others of connections.
+ *
+ * <p>Requests work for {@link #READ_API} or {@link #WRITE_API} depending on their method, and asynchronous
+ * tasks for the request that started them. Projection rebuilds, which hold several connections for a long
+ * time, work for {@link #PROJECTIONS}. Everything else, event listeners, scheduled jobs and startup, works
+ * for {@link #LISTENERS}.</p>
+ */
+public enum Bulkhead {
+
+    READ_API("read-api"),
+    WRITE_API("write-api"),
+    LISTENERS("listeners"),
+    PROJECTIONS("projections");
+
+    private static final ThreadLocal<@Nullable Bulkhead> CURRENT = new ThreadLocal<>();
+
+    private final String tag;
+
+    Bulkhead(String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * The bulkhead the current thread works for.
+     * @return the bulkhead entered last on this thread, {@link #LISTENERS} if none
+     */
+    static Bulkhead current() {
+        Bulkhead current = CURRENT.get();
+        return current != null ? current : LISTENERS;
+    }
+
+    /**
+     * The bulkhead of a request.
+     * @param method the HTTP method of the request
+     * @return {@link #READ_API} for methods that do not change anything, {@link #WRITE_API} otherwise
+     */
+    static Bulkhead ofRequest(String method) {
+        return switch (method) {
+            case "GET", "HEAD", "OPTIONS", "TRACE" -> READ_API;
+            default -> WRITE_API;
+        };
+    }
+
+    /**
+     * Wrap a task so that it works for this bulkhead, on whichever thread it runs.
+     * @param task the task
+     * @return the task, running in this bulkhead
+     */
+    public Runnable wrap(Runnable task) {
+        return () -> {
+            try (Scope ignored = enter()) {
+                task.run();
+            }
+        };
+    }
+
+    /**
+     * Make the current thread work for this bulkhead until the returned scope is closed.
+     * @return the scope, restoring the previous bulkhead when closed
+     */
+    public Scope enter() {
+        Bulkhead previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> CURRENT.set(previous);
+    }
+
+    /**
+     * The name of the bulkhead in configuration and metrics.
+     * @return e.g. {@code read-api}
+     */
+    String tag() {
+        return tag;
+    }
+
+    /**
+     * The name of the connection pool of the bulkhead, as tagged on the Hikari metrics.
+     * @return e.g. {@code bookify-read-api}
+     */
+    String poolName() {
+        return "bookify-" + tag;
+    }
+
+    /**
+     * The time a thread works for a bulkhead.
+     */
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
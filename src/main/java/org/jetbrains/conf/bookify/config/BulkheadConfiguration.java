@@ -0,0 +1,142 @@
+package org.jetbrains.conf.bookify.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.boot.jdbc.autoconfigure.JdbcConnectionDetails;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Gives each {@link Bulkhead} a connection pool and a {@link JdbcConcurrencyLimit} of its own, sized by
+ * {@code bookify.bulkheads.*}, so that a flood of writes or a listener backlog cannot take the connections
+ * reads need, nor the other way round.
+ *
+ * <p>The pools replace the one Spring Boot would configure, so {@code spring.datasource.hikari.*} no longer
+ * applies; the URL and credentials still come from {@code spring.datasource.*} or a service connection. Each
+ * pool publishes the Hikari metrics tagged with its {@link Bulkhead#poolName() name}, and each limit the
+ * {@code bookify.jdbc.permits.*} metrics tagged with its bulkhead.</p>
+ *
+ * <p>Requests enter their bulkhead in {@link BulkheadFilter} and take its permit in {@link JdbcConcurrencyFilter}.
+ * Tasks of the application task executor, which runs {@code @ApplicationModuleListener}s and {@code @Async}
+ * methods, work for the listeners, and so do book event listeners on their lane. Streamed responses run on an
+ * executor of their own and stay in the bulkhead of their request. Projection rebuilds enter their bulkhead
+ * themselves.</p>
+ */
+@Configuration
+class BulkheadConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkheadConfiguration.class);
+
+    @Bean
+    BulkheadDataSource dataSource(ObjectProvider<JdbcConnectionDetails> connectionDetails,
+                                  DataSourceProperties dataSourceProperties,
+                                  BookifySettingsConfig bookifySettingsConfig,
+                                  MeterRegistry meterRegistry) {
+        JdbcConnectionDetails details = connectionDetails.getIfAvailable(
+                () -> new PropertiesJdbcConnectionDetails(dataSourceProperties));
+        Map<Bulkhead, HikariDataSource> pools = new EnumMap<>(Bulkhead.class);
+        for (Bulkhead bulkhead : Bulkhead.values()) {
+            var pool = new HikariDataSource();
+            pool.setPoolName(bulkhead.poolName());
+            pool.setJdbcUrl(details.getJdbcUrl());
+            pool.setUsername(details.getUsername());
+            pool.setPassword(details.getPassword());
+            pool.setDriverClassName(details.getDriverClassName());
+            pool.setMaximumPoolSize(poolSize(bookifySettingsConfig, bulkhead));
+            pool.setConnectionTimeout(timeoutMillis(bookifySettingsConfig, bulkhead));
+            pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            pools.put(bulkhead, pool);
+            log.info("Bulkhead {} gets up to {} connections, waiting no longer than {} ms", bulkhead.tag(),
+                    pool.getMaximumPoolSize(), pool.getConnectionTimeout());
+        }
+        return new BulkheadDataSource(pools);
+    }
+
+    @Bean
+    JdbcConcurrencyLimits jdbcConcurrencyLimits(BulkheadDataSource dataSource, MeterRegistry meterRegistry) {
+        Map<Bulkhead, JdbcConcurrencyLimit> limits = new EnumMap<>(Bulkhead.class);
+        for (Bulkhead bulkhead : Bulkhead.values()) {
+            HikariDataSource pool = dataSource.pool(bulkhead);
+            limits.put(bulkhead, new JdbcConcurrencyLimit(bulkhead, pool.getMaximumPoolSize(),
+                    pool.getConnectionTimeout(), meterRegistry));
+        }
+        return new JdbcConcurrencyLimits(limits);
+    }
+
+    @Bean
+    TaskDecorator jdbcConcurrencyTaskDecorator(JdbcConcurrencyLimits jdbcConcurrencyLimits) {
+        return task -> jdbcConcurrencyLimits.limit(Bulkhead.LISTENERS, task);
+    }
+
+    @Bean
+    WebMvcConfigurer bulkheadAsyncSupport(JdbcConcurrencyLimits jdbcConcurrencyLimits) {
+        var executor = new SimpleAsyncTaskExecutor("bookify-mvc-");
+        executor.setVirtualThreads(true);
+        // Decorated on the request thread, so the task inherits the bulkhead of its request
+        executor.setTaskDecorator(task -> jdbcConcurrencyLimits.limit(Bulkhead.current(), task));
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.setTaskExecutor(executor);
+            }
+        };
+    }
+
+    private static int poolSize(BookifySettingsConfig bookifySettingsConfig, Bulkhead bulkhead) {
+        return switch (bulkhead) {
+            case READ_API -> bookifySettingsConfig.getBulkheadsReadApiPoolSize();
+            case WRITE_API -> bookifySettingsConfig.getBulkheadsWriteApiPoolSize();
+            case LISTENERS -> bookifySettingsConfig.getBulkheadsListenersPoolSize();
+            case PROJECTIONS -> bookifySettingsConfig.getBulkheadsProjectionsPoolSize();
+        };
+    }
+
+    private static long timeoutMillis(BookifySettingsConfig bookifySettingsConfig, Bulkhead bulkhead) {
+        return switch (bulkhead) {
+            case READ_API -> bookifySettingsConfig.getBulkheadsReadApiTimeoutMillis();
+            case WRITE_API -> bookifySettingsConfig.getBulkheadsWriteApiTimeoutMillis();
+            case LISTENERS -> bookifySettingsConfig.getBulkheadsListenersTimeoutMillis();
+            case PROJECTIONS -> bookifySettingsConfig.getBulkheadsProjectionsTimeoutMillis();
+        };
+    }
+
+    /**
+     * The connection details from {@code spring.datasource.*}, which Spring Boot only provides itself when it
+     * configures the data source.
+     */
+    private record PropertiesJdbcConnectionDetails(DataSourceProperties properties) implements JdbcConnectionDetails {
+
+        @Override
+        public @Nullable String getUsername() {
+            return properties.determineUsername();
+        }
+
+        @Override
+        public @Nullable String getPassword() {
+            return properties.determinePassword();
+        }
+
+        @Override
+        public String getJdbcUrl() {
+            return properties.determineUrl();
+        }
+
+        @Override
+        public String getDriverClassName() {
+            return properties.determineDriverClassName();
+        }
+    }
+}
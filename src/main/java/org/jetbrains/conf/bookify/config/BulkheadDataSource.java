@@ -0,0 +1,40 @@
+package org.jetbrains.conf.bookify.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out connections from the pool of the {@link Bulkhead} the current thread works for.
+ *
+ * <p>Threads that have not entered a bulkhead get connections from the {@link Bulkhead#LISTENERS} pool.
+ * Closing the data source closes all pools.</p>
+ */
+class BulkheadDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private final Map<Bulkhead, HikariDataSource> pools;
+
+    BulkheadDataSource(Map<Bulkhead, HikariDataSource> pools) {
+        this.pools = new EnumMap<>(pools);
+        setTargetDataSources(new HashMap<>(this.pools));
+        setDefaultTargetDataSource(this.pools.get(Bulkhead.LISTENERS));
+        setLenientFallback(false);
+    }
+
+    HikariDataSource pool(Bulkhead bulkhead) {
+        return pools.get(bulkhead);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return Bulkhead.current();
+    }
+
+    @Override
+    public void close() {
+        pools.values().forEach(HikariDataSource::close);
+    }
+}
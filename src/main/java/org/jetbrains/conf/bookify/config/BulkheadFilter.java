@@ -0,0 +1,24 @@
+package org.jetbrains.conf.bookify.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Makes the request thread work for the {@link Bulkhead} of the request, from authentication on, so that
+ * everything the request does with the database uses the connection pool of its bulkhead.
+ */
+class BulkheadFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try (Bulkhead.Scope ignored = Bulkhead.ofRequest(request.getMethod()).enter()) {
+            chain.doFilter(request, response);
+        }
+    }
+}
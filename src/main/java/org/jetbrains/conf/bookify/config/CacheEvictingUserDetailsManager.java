@@ -0,0 +1,82 @@
+package org.jetbrains.conf.bookify.config;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.provisioning.JdbcUserDetailsManager;
+
+import javax.sql.DataSource;
+
+/**
+ * A {@link JdbcUserDetailsManager} that evicts users from the {@link AuthenticationCache} once their
+ * password, status or authorities change, so that the cache never lets old credentials or roles through.
+ */
+class CacheEvictingUserDetailsManager extends JdbcUserDetailsManager {
+
+    private final AuthenticationCache authenticationCache;
+
+    CacheEvictingUserDetailsManager(DataSource dataSource, AuthenticationCache authenticationCache) {
+        super(dataSource);
+        this.authenticationCache = authenticationCache;
+    }
+
+    @Override
+    public void updateUser(UserDetails user) {
+        super.updateUser(user);
+        authenticationCache.evict(user.getUsername());
+    }
+
+    @Override
+    public void deleteUser(String username) {
+        super.deleteUser(username);
+        authenticationCache.evict(username);
+    }
+
+    @Override
+    public void changePassword(String oldPassword, String newPassword) {
+        super.changePassword(oldPassword, newPassword);
+        Authentication currentUser = SecurityContextHolder.getContext().getAuthentication();
+        if (currentUser != null) {
+            authenticationCache.evict(currentUser.getName());
+        }
+    }
+
+    @Override
+    public void addUserToGroup(String username, String groupName) {
+        super.addUserToGroup(username, groupName);
+        authenticationCache.evict(username);
+    }
+
+    @Override
+    public void removeUserFromGroup(String username, String groupName) {
+        super.removeUserFromGroup(username, groupName);
+        authenticationCache.evict(username);
+    }
+
+    // Group changes affect all members of the group
+
+    @Override
+    public void deleteGroup(String groupName) {
+        super.deleteGroup(groupName);
+        authenticationCache.evictAll();
+    }
+
+    @Override
+    public void renameGroup(String oldName, String newName) {
+        super.renameGroup(oldName, newName);
+        authenticationCache.evictAll();
+    }
+
+    @Override
+    public void addGroupAuthority(String groupName, GrantedAuthority authority) {
+        super.addGroupAuthority(groupName, authority);
+        authenticationCache.evictAll();
+    }
+
+    @Override
+    public void removeGroupAuthority(String groupName, GrantedAuthority authority) {
+        super.removeGroupAuthority(groupName, authority);
+        authenticationCache.evictAll();
+    }
+}
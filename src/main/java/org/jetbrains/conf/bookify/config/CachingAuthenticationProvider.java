@@ -0,0 +1,52 @@
+package org.jetbrains.conf.bookify.config;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * Skips the user lookups and the password hash verification for HTTP Basic requests whose credentials
+ * were verified moments ago.
+ *
+ * <p>Only successful authentications are cached, so wrong passwords always pay the full price. A user is
+ * evicted when its password or authorities change through {@link CacheEvictingUserDetailsManager} on this
+ * node; changes made on other nodes take effect here when the entry expires.</p>
+ */
+class CachingAuthenticationProvider implements AuthenticationProvider {
+
+    private final AuthenticationProvider delegate;
+    private final AuthenticationCache cache;
+
+    CachingAuthenticationProvider(AuthenticationProvider delegate, AuthenticationCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public @Nullable Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        if (!cache.isEnabled() || !(authentication.getCredentials() instanceof String password)) {
+            return delegate.authenticate(authentication);
+        }
+        AuthenticationCache.Lookup lookup = cache.get(authentication.getName(), password);
+        if (lookup.result() != null) {
+            // A new token for every request, so that no two requests share a security context
+            var token = UsernamePasswordAuthenticationToken.authenticated(
+                    lookup.result().getPrincipal(), null, lookup.result().getAuthorities());
+            token.setDetails(authentication.getDetails());
+            return token;
+        }
+
+        Authentication result = delegate.authenticate(authentication);
+        if (result != null && result.isAuthenticated()) {
+            cache.put(lookup, authentication.getName(), result);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+}
@@ -0,0 +1,74 @@
+package org.jetbrains.conf.bookify.config;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets per client, in a fixed amount of memory and without locks.
+ *
+ * <p>Each bucket is a single {@code long} holding the time at which it will be full again, the generic cell
+ * rate algorithm form of a token bucket: a request takes one token by moving that time one emission interval
+ * forward with a compare-and-set, and is refused if that would put it more than the burst ahead of now.
+ * Clients are hashed onto a fixed number of slots under a key chosen at startup, so memory does not grow with
+ * the number of clients; the rare clients sharing a slot share its rate.</p>
+ */
+class ClientRateLimiter {
+
+    private final AtomicLongArray buckets;
+    private final long emissionIntervalNanos;
+    private final long burstNanos;
+    private final long hashKey;
+    private final LongSupplier nanoTime;
+
+    ClientRateLimiter(int requestsPerSecond, int burst, int slots, LongSupplier nanoTime) {
+        this.buckets = new AtomicLongArray(Math.max(1, slots));
+        this.emissionIntervalNanos = requestsPerSecond > 0 ? 1_000_000_000L / requestsPerSecond : 0;
+        this.burstNanos = emissionIntervalNanos * Math.max(1, burst);
+        this.hashKey = new SecureRandom().nextLong();
+        this.nanoTime = nanoTime;
+        // Every bucket starts out full
+        long now = nanoTime.getAsLong();
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, now);
+        }
+    }
+
+    /**
+     * Whether clients are limited at all; a rate of zero turns the limiter off.
+     * @return {@code true} if the limiter is in use
+     */
+    boolean isEnabled() {
+        return emissionIntervalNanos > 0;
+    }
+
+    /**
+     * Take a token from the bucket of a client.
+     * @param client the name of the client
+     * @return zero if the request may proceed, otherwise how many nanoseconds until a token is available
+     */
+    long tryAcquire(String client) {
+        int slot = slot(client);
+        while (true) {
+            long now = nanoTime.getAsLong();
+            long fullAt = buckets.get(slot);
+            long next = (fullAt - now > 0 ? fullAt : now) + emissionIntervalNanos;
+            if (next - now > burstNanos) {
+                return next - now - burstNanos;
+            }
+            if (buckets.compareAndSet(slot, fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private int slot(String client) {
+        // FNV-1a from a random offset, so that which clients share a slot changes from one node and start to the next
+        long hash = hashKey;
+        for (int i = 0; i < client.length(); i++) {
+            hash = (hash ^ client.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 32;
+        return (int) Math.floorMod(hash, (long) buckets.length());
+    }
+}
@@ -0,0 +1,65 @@
+package org.jetbrains.conf.bookify.config;
+
+import org.jetbrains.conf.bookify.events.BookEvent;
+import org.jetbrains.conf.bookify.events.BookEventCodec;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.env.Environment;
+import org.springframework.modulith.events.core.EventSerializer;
+
+/**
+ * Stores the {@link BookEvent}s in the event publication registry in the compact form of the
+ * {@link BookEventCodec} instead of JSON. Other events keep going through the serializer Spring
+ * Modulith configured.
+ *
+ * <p>Set {@code bookify.events.serialization=json} to write JSON again. Stored book events are read by
+ * their header whichever form is written, so publications from before a switch in either direction
+ * can still be resubmitted.</p>
+ */
+@Configuration
+class CompactEventSerializationConfiguration {
+
+    static final String SERIALIZATION = "bookify.events.serialization";
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static BeanPostProcessor compactEventSerializerPostProcessor(Environment environment) {
+        boolean writeCompact = "compact".equalsIgnoreCase(environment.getProperty(SERIALIZATION, "compact"));
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof EventSerializer serializer && !(bean instanceof CompactEventSerializer)
+                        ? new CompactEventSerializer(serializer, writeCompact)
+                        : bean;
+            }
+        };
+    }
+
+    static class CompactEventSerializer implements EventSerializer {
+
+        private final EventSerializer delegate;
+        private final boolean writeCompact;
+
+        CompactEventSerializer(EventSerializer delegate, boolean writeCompact) {
+            this.delegate = delegate;
+            this.writeCompact = writeCompact;
+        }
+
+        @Override
+        public Object serialize(Object event) {
+            return writeCompact && event instanceof BookEvent bookEvent && BookEventCodec.supports(event.getClass())
+                    ? BookEventCodec.encode(bookEvent)
+                    : delegate.serialize(event);
+        }
+
+        @Override
+        public <T> T deserialize(Object serialized, Class<T> type) {
+            return BookEventCodec.supports(type) && BookEventCodec.isRecord(serialized.toString())
+                    ? BookEventCodec.decode(serialized.toString(), type)
+                    : delegate.deserialize(serialized, type);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.jetbrains.conf.bookify.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retention job for the Spring Modulith {@code event_publication} table, which otherwise keeps every
+ * completed publication forever.
+ *
+ * <p>Publications completed longer than the retention period ago are deleted, or moved to
+ * {@code event_publication_history} when the purge mode is {@code archive}. Each batch is a single
+ * statement in its own transaction and skips rows locked by the registry, so the job never holds
+ * locks on more than one batch and never waits for the listeners.</p>
+ */
+@Component
+class EventPublicationPurge {
+
+    private static final Logger log = LoggerFactory.getLogger(EventPublicationPurge.class);
+
+    private static final String SELECT_BATCH = """
+            SELECT id FROM event_publication
+            WHERE completion_date < now() - make_interval(hours => :retentionHours)
+            ORDER BY completion_date
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final BookifySettingsConfig bookifySettingsConfig;
+
+    private final AtomicLong tableRows = new AtomicLong();
+    private final AtomicLong tableBytes = new AtomicLong();
+    private final Counter purged;
+    private final Timer purgeTimer;
+
+    EventPublicationPurge(NamedParameterJdbcTemplate jdbcTemplate, BookifySettingsConfig bookifySettingsConfig,
+                          MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bookifySettingsConfig = bookifySettingsConfig;
+
+        Gauge.builder("bookify.events.publications.rows", tableRows, AtomicLong::get)
+                .description("Estimated number of rows in the event publication table")
+                .register(meterRegistry);
+        Gauge.builder("bookify.events.publications.size", tableBytes, AtomicLong::get)
+                .description("Size of the event publication table including its indexes")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.purged = Counter.builder("bookify.events.purged")
+                .description("Completed event publications deleted or archived by the retention job")
+                .register(meterRegistry);
+        this.purgeTimer = Timer.builder("bookify.events.purge")
+                .description("Duration of the event publication retention job")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${bookify.events.purge.cron}")
+    void scheduledPurge() {
+        int purgedNow = purge();
+        if (purgedNow > 0) {
+            log.info("Purged {} completed event publications", purgedNow);
+        }
+    }
+
+    /**
+     * Purge all publications completed before the retention period, batch by batch.
+     * @return the number of publications deleted or archived
+     */
+    int purge() {
+        int total = purgeTimer.record(() -> {
+            int batchSize = bookifySettingsConfig.getEventsPurgeBatchSize();
+            int sum = 0;
+            int batch;
+            do {
+                batch = purgeBatch(batchSize);
+                sum += batch;
+                purged.increment(batch);
+            } while (batch == batchSize);
+            return sum;
+        });
+        refreshMetrics();
+        return total;
+    }
+
+    private int purgeBatch(int batchSize) {
+        var params = new MapSqlParameterSource()
+                .addValue("retentionHours", bookifySettingsConfig.getEventsRetentionHours())
+                .addValue("limit", batchSize);
+        if ("archive".equalsIgnoreCase(bookifySettingsConfig.getEventsPurgeMode())) {
+            return jdbcTemplate.update("""
+                    WITH moved AS (
+                        DELETE FROM event_publication WHERE id IN (%s)
+                        RETURNING id, listener_id, event_type, serialized_event, publication_date, completion_date
+                    )
+                    INSERT INTO event_publication_history
+                        (id, listener_id, event_type, serialized_event, publication_date, completion_date)
+                    SELECT id, listener_id, event_type, serialized_event, publication_date, completion_date FROM moved
+                    ON CONFLICT (id) DO NOTHING
+                    """.formatted(SELECT_BATCH), params);
+        }
+        return jdbcTemplate.update("DELETE FROM event_publication WHERE id IN (%s)".formatted(SELECT_BATCH), params);
+    }
+
+    private void refreshMetrics() {
+        jdbcTemplate.query("""
+                SELECT GREATEST(reltuples, 0)::BIGINT AS estimated_rows, pg_total_relation_size(oid) AS total_bytes
+                FROM pg_class
+                WHERE oid = to_regclass('event_publication')
+                """, Map.of(), rs -> {
+            tableRows.set(rs.getLong("estimated_rows"));
+            tableBytes.set(rs.getLong("total_bytes"));
+        });
+    }
+}
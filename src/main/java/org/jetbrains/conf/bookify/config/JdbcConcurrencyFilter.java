@@ -0,0 +1,55 @@
+package org.jetbrains.conf.bookify.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Holds a {@link JdbcConcurrencyLimit} permit of the request's {@link Bulkhead} while a request is handled,
+ * once it has been authorized.
+ *
+ * <p>A request that gets no permit within its pool's connection timeout is refused with 503 and a
+ * {@code Retry-After} header, which it would otherwise have got as a 500 from the pool.</p>
+ */
+class JdbcConcurrencyFilter extends OncePerRequestFilter {
+
+    private final JdbcConcurrencyLimits jdbcConcurrencyLimits;
+    private final int retryAfterSeconds;
+
+    JdbcConcurrencyFilter(JdbcConcurrencyLimits jdbcConcurrencyLimits, int retryAfterSeconds) {
+        this.jdbcConcurrencyLimits = jdbcConcurrencyLimits;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        JdbcConcurrencyLimit jdbcConcurrencyLimit = jdbcConcurrencyLimits.get(Bulkhead.current());
+        boolean acquired;
+        try {
+            acquired = jdbcConcurrencyLimit.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServletException("Interrupted while waiting for the database", e);
+        }
+        if (!acquired) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"database-busy\"}");
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            jdbcConcurrencyLimit.release();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.jetbrains.conf.bookify.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps how many threads of a {@link Bulkhead} work with the database at once, at the size of its connection pool.
+ *
+ * <p>On virtual threads nothing else bounds how many of them block on JDBC: without the cap, thousands
+ * could queue for a connection inside the pool and time out there. With it, the ones beyond the pool
+ * size wait for a permit in arrival order, requests no longer than the pool's connection timeout.</p>
+ */
+class JdbcConcurrencyLimit {
+
+    private final Semaphore permits;
+    private final long timeoutMillis;
+    private final Timer waitTimer;
+
+    JdbcConcurrencyLimit(Bulkhead bulkhead, int maxPermits, long timeoutMillis, MeterRegistry meterRegistry) {
+        this.permits = new Semaphore(maxPermits, true);
+        this.timeoutMillis = timeoutMillis;
+
+        Gauge.builder("bookify.jdbc.permits.active", permits, semaphore -> maxPermits - semaphore.availablePermits())
+                .description("Requests and listeners currently allowed to work with the database")
+                .tag("bulkhead", bulkhead.tag())
+                .register(meterRegistry);
+        Gauge.builder("bookify.jdbc.permits.waiting", permits, Semaphore::getQueueLength)
+                .description("Requests and listeners waiting to work with the database")
+                .tag("bulkhead", bulkhead.tag())
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("bookify.jdbc.permits.wait")
+                .description("Time requests and listeners waited to work with the database")
+                .tag("bulkhead", bulkhead.tag())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Wait for a permit, no longer than the connection timeout of the pool.
+     * @return {@code true} if a permit was acquired and must be {@link #release() released}
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean tryAcquire() throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            return permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    void release() {
+        permits.release();
+    }
+
+    /**
+     * Wrap an asynchronous task so that it holds a permit while it runs. Tasks wait for their permit as long
+     * as it takes, as they have no caller that would rather give up.
+     * @param task the task
+     * @return the task, limited
+     */
+    Runnable limit(Runnable task) {
+        return () -> {
+            long start = System.nanoTime();
+            permits.acquireUninterruptibly();
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            try {
+                task.run();
+            } finally {
+                permits.release();
+            }
+        };
+    }
+}
@@ -0,0 +1,30 @@
+package org.jetbrains.conf.bookify.config;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The {@link JdbcConcurrencyLimit} of each {@link Bulkhead}.
+ */
+class JdbcConcurrencyLimits {
+
+    private final Map<Bulkhead, JdbcConcurrencyLimit> limits;
+
+    JdbcConcurrencyLimits(Map<Bulkhead, JdbcConcurrencyLimit> limits) {
+        this.limits = new EnumMap<>(limits);
+    }
+
+    JdbcConcurrencyLimit get(Bulkhead bulkhead) {
+        return limits.get(bulkhead);
+    }
+
+    /**
+     * Wrap an asynchronous task so that it works for a bulkhead, holding a permit of that bulkhead while it runs.
+     * @param bulkhead the bulkhead
+     * @param task the task
+     * @return the task, limited
+     */
+    Runnable limit(Bulkhead bulkhead, Runnable task) {
+        return get(bulkhead).limit(bulkhead.wrap(task));
+    }
+}
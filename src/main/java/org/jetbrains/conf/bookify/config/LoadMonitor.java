@@ -0,0 +1,156 @@
+package org.jetbrains.conf.bookify.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Samples the event backlog and the database connection pool wait, and tells whether writes should be shed.
+ *
+ * <p>The backlog is the number of event publications not completed yet, counted up to just above the threshold
+ * so the count stays cheap however far behind the listeners are. The pool wait is the mean time it took to get a
+ * connection from the {@link Bulkhead#WRITE_API} pool, or one of its {@link JdbcConcurrencyLimit} permits, since
+ * the previous sample, whichever is longer; or the whole interval if some were awaited and none was handed out.
+ * Only writes are shed, so only the writes' own bulkhead counts. Requests only read the outcome of the last
+ * sample.</p>
+ */
+@Component
+class LoadMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadMonitor.class);
+
+    static final String EVENT_BACKLOG = "event-backlog";
+    static final String POOL_WAIT = "pool-wait";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final BookifySettingsConfig bookifySettingsConfig;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicLong eventBacklog = new AtomicLong();
+    private final AtomicLong poolWaitMillis = new AtomicLong();
+    private volatile @Nullable String overload;
+
+    private final WaitSampler connectionWait = new WaitSampler("hikaricp.connections.acquire",
+            "hikaricp.connections.pending", "pool", Bulkhead.WRITE_API.poolName());
+    private final WaitSampler permitWait = new WaitSampler("bookify.jdbc.permits.wait",
+            "bookify.jdbc.permits.waiting", "bulkhead", Bulkhead.WRITE_API.tag());
+    private long lastSampleNanos = System.nanoTime();
+
+    LoadMonitor(NamedParameterJdbcTemplate jdbcTemplate, BookifySettingsConfig bookifySettingsConfig,
+                MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bookifySettingsConfig = bookifySettingsConfig;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("bookify.load.event-backlog", eventBacklog, AtomicLong::get)
+                .description("Incomplete event publications at the last sample, counted up to the shedding threshold")
+                .register(meterRegistry);
+        Gauge.builder("bookify.load.pool-wait", poolWaitMillis, AtomicLong::get)
+                .description("Mean wait for a database connection or permit between the last two samples")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Tell why writes should be shed right now.
+     * @return {@link #EVENT_BACKLOG} or {@link #POOL_WAIT} if a threshold was crossed at the last sample,
+     * {@code null} otherwise
+     */
+    @Nullable String overload() {
+        return overload;
+    }
+
+    @Scheduled(cron = "${bookify.load-shedding.sample.cron}")
+    void sample() {
+        // The pool first, as the backlog query itself may have to wait for a connection
+        poolWaitMillis.set(samplePoolWait());
+        try {
+            int maxBacklog = bookifySettingsConfig.getLoadSheddingMaxEventBacklog();
+            Long backlog = jdbcTemplate.queryForObject("""
+                    SELECT count(*) FROM (
+                        SELECT 1 FROM event_publication WHERE completion_date IS NULL LIMIT :limit
+                    ) incomplete
+                    """, new MapSqlParameterSource("limit", maxBacklog + 1), Long.class);
+            eventBacklog.set(backlog != null ? backlog : 0);
+        } catch (DataAccessException e) {
+            log.warn("Could not count the event backlog, keeping the previous count: {}", e.getMessage());
+        }
+
+        String previous = overload;
+        if (eventBacklog.get() > bookifySettingsConfig.getLoadSheddingMaxEventBacklog()) {
+            overload = EVENT_BACKLOG;
+        } else if (poolWaitMillis.get() > bookifySettingsConfig.getLoadSheddingMaxPoolWaitMillis()) {
+            overload = POOL_WAIT;
+        } else {
+            overload = null;
+        }
+        if (overload != null && previous == null) {
+            log.warn("Shedding writes: event backlog {}, connection wait {} ms", eventBacklog.get(), poolWaitMillis.get());
+        } else if (overload == null && previous != null) {
+            log.info("Accepting writes again: event backlog {}, connection wait {} ms", eventBacklog.get(), poolWaitMillis.get());
+        }
+    }
+
+    private long samplePoolWait() {
+        long now = System.nanoTime();
+        long waitNanos = Math.max(
+                connectionWait.sample(meterRegistry, now - lastSampleNanos),
+                permitWait.sample(meterRegistry, now - lastSampleNanos));
+        lastSampleNanos = now;
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos);
+    }
+
+    /**
+     * The mean of a wait timer between two samples.
+     */
+    private static final class WaitSampler {
+
+        private final String timer;
+        private final String waiting;
+        private final String tagKey;
+        private final String tagValue;
+        private long lastCount;
+        private double lastTotalNanos;
+
+        WaitSampler(String timer, String waiting, String tagKey, String tagValue) {
+            this.timer = timer;
+            this.waiting = waiting;
+            this.tagKey = tagKey;
+            this.tagValue = tagValue;
+        }
+
+        long sample(MeterRegistry meterRegistry, long intervalNanos) {
+            long count = 0;
+            double totalNanos = 0;
+            for (Timer meter : meterRegistry.find(timer).tag(tagKey, tagValue).timers()) {
+                count += meter.count();
+                totalNanos += meter.totalTime(TimeUnit.NANOSECONDS);
+            }
+            double waitingNow = meterRegistry.find(waiting).tag(tagKey, tagValue).gauges().stream()
+                    .mapToDouble(Gauge::value)
+                    .sum();
+
+            long waitNanos;
+            if (count > lastCount) {
+                waitNanos = (long) ((totalNanos - lastTotalNanos) / (count - lastCount));
+            } else {
+                // Nobody got through, which is only fine if nobody tried
+                waitNanos = waitingNow > 0 ? intervalNanos : 0;
+            }
+            lastCount = count;
+            lastTotalNanos = totalNanos;
+            return waitNanos;
+        }
+    }
+}
@@ -1,31 +1,51 @@
 package org.jetbrains.conf.bookify.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.security.provisioning.JdbcUserDetailsManager;
 import org.springframework.security.provisioning.UserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import org.springframework.security.web.session.DisableEncodeUrlFilter;
+import tools.jackson.databind.json.JsonMapper;
 
 import javax.sql.DataSource;
+import java.time.InstantSource;
 
 @Configuration
 @EnableWebSecurity
 class SecurityConfig {
 
     @Bean
-    SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    SecurityFilterChain securityFilterChain(HttpSecurity http, AccessTokens accessTokens, LoadMonitor loadMonitor,
+                                           JdbcConcurrencyLimits jdbcConcurrencyLimits,
+                                           BookifySettingsConfig bookifySettingsConfig,
+                                           MeterRegistry meterRegistry) throws Exception {
+        var clientRateLimiter = new ClientRateLimiter(bookifySettingsConfig.getRateLimitRequestsPerSecond(),
+                bookifySettingsConfig.getRateLimitBurst(), bookifySettingsConfig.getRateLimitSlots(), System::nanoTime);
+
         http
                 .authorizeHttpRequests(auth -> auth
+                        .requestMatchers(HttpMethod.POST,
+                                "/api/auth/token"
+                        ).authenticated()
                         .requestMatchers(HttpMethod.POST,
                                 "/api/members",
-                                "/api/books"
+                                "/api/members/bulk",
+                                "/api/books",
+                                "/api/projections/**"
                         ).hasRole("LIBRARIAN")
                         .requestMatchers(HttpMethod.DELETE,
                                 "/api/books/**"
@@ -35,19 +55,57 @@ class SecurityConfig {
                                 "/api/books"
                         ).hasRole("LIBRARIAN")
                         .requestMatchers(HttpMethod.GET,
-                                "/api/members/active")
+                                "/api/members/active",
+                                "/api/members/active/count",
+                                "/api/projections/**")
                         .hasRole("LIBRARIAN")
                         .anyRequest().anonymous()
                 )
                 .httpBasic(Customizer.withDefaults())
+                .addFilterBefore(new BulkheadFilter(), DisableEncodeUrlFilter.class)
+                .addFilterBefore(new AccessTokenAuthenticationFilter(accessTokens), BasicAuthenticationFilter.class)
+                // Ahead of all authentication, so that failed password attempts are throttled too
+                .addFilterBefore(WriteThrottlingFilter.byAddress(clientRateLimiter, loadMonitor,
+                        bookifySettingsConfig.getLoadSheddingRetryAfterSeconds(), meterRegistry),
+                        UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(WriteThrottlingFilter.byPrincipal(clientRateLimiter, meterRegistry),
+                        AuthorizationFilter.class)
+                .addFilterAfter(new JdbcConcurrencyFilter(jdbcConcurrencyLimits,
+                        bookifySettingsConfig.getLoadSheddingRetryAfterSeconds()), AuthorizationFilter.class)
                 .csrf(AbstractHttpConfigurer::disable);
 
         return http.build();
     }
 
     @Bean
-    UserDetailsManager userDetailsManager(DataSource dataSource) {
-        return new JdbcUserDetailsManager(dataSource);
+    AccessTokens accessTokens(BookifySettingsConfig bookifySettingsConfig, JsonMapper jsonMapper,
+                              Environment environment) {
+        // A generated key is only good for a single node, so it is left to development and tests
+        if (bookifySettingsConfig.getSecurityTokensKeys().isEmpty() && !environment.matchesProfiles("dev | test")) {
+            throw new IllegalStateException(
+                    "No token keys configured; set bookify.security.tokens.keys so that all nodes accept the same tokens");
+        }
+        return new AccessTokens(bookifySettingsConfig.getSecurityTokensKeys(),
+                bookifySettingsConfig.getSecurityTokensTtlSeconds(), jsonMapper, InstantSource.system());
+    }
+
+    @Bean
+    AuthenticationCache authenticationCache(BookifySettingsConfig bookifySettingsConfig) {
+        return new AuthenticationCache(bookifySettingsConfig.getSecurityAuthCacheTtlSeconds(),
+                bookifySettingsConfig.getSecurityAuthCacheMaxEntries());
+    }
+
+    @Bean
+    UserDetailsManager userDetailsManager(DataSource dataSource, AuthenticationCache authenticationCache) {
+        return new CacheEvictingUserDetailsManager(dataSource, authenticationCache);
+    }
+
+    @Bean
+    AuthenticationProvider authenticationProvider(UserDetailsManager userDetailsManager, PasswordEncoder passwordEncoder,
+                                                  AuthenticationCache authenticationCache) {
+        var passwordVerification = new DaoAuthenticationProvider(userDetailsManager);
+        passwordVerification.setPasswordEncoder(passwordEncoder);
+        return new CachingAuthenticationProvider(passwordVerification, authenticationCache);
     }
 
     @Bean
@@ -0,0 +1,148 @@
+package org.jetbrains.conf.bookify.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.jspecify.annotations.Nullable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Protects the write endpoints, and the event pipeline behind them, from overload.
+ *
+ * <p>While the {@link LoadMonitor} reports an overload, every write is refused with 503. Otherwise each client
+ * gets its own {@link ClientRateLimiter} bucket, and writes beyond it are refused with 429. Both carry a
+ * {@code Retry-After} header and are counted in {@code bookify.requests.shed}, by reason. Reads are never
+ * throttled.</p>
+ *
+ * <p>Writes are throttled twice. {@link #byAddress} runs before authentication and tells clients apart by
+ * address only, since nothing a client claims is verified yet: keyed on a claimed user name or token, a client
+ * would get a fresh bucket by claiming a new one, and could use up the bucket of any user it names. So guessing
+ * passwords costs a client its bucket, and a flood of writes does not get as far as hashing passwords.
+ * {@link #byPrincipal} runs once the request is authenticated, and gives each user one bucket however many
+ * addresses they write from. Behind a reverse proxy the address is the proxy's unless
+ * {@code server.forward-headers-strategy} is set, which is then required; otherwise all clients share one
+ * bucket.</p>
+ */
+class WriteThrottlingFilter extends OncePerRequestFilter {
+
+    static final String RATE_LIMIT = "rate-limit";
+
+    private static final Set<String> READ_METHODS = Set.of(
+            HttpMethod.GET.name(), HttpMethod.HEAD.name(), HttpMethod.OPTIONS.name(), HttpMethod.TRACE.name());
+
+    private final String by;
+    private final ClientRateLimiter clientRateLimiter;
+    private final Function<HttpServletRequest, @Nullable String> client;
+    private final @Nullable LoadMonitor loadMonitor;
+    private final int retryAfterSeconds;
+    private final Map<String, Counter> shed;
+
+    private WriteThrottlingFilter(String by, ClientRateLimiter clientRateLimiter,
+                                  Function<HttpServletRequest, @Nullable String> client,
+                                  @Nullable LoadMonitor loadMonitor, int retryAfterSeconds, MeterRegistry meterRegistry) {
+        this.by = by;
+        this.clientRateLimiter = clientRateLimiter;
+        this.client = client;
+        this.loadMonitor = loadMonitor;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.shed = Stream.of(RATE_LIMIT, LoadMonitor.EVENT_BACKLOG, LoadMonitor.POOL_WAIT)
+                .collect(Collectors.toUnmodifiableMap(reason -> reason, reason -> Counter.builder("bookify.requests.shed")
+                        .description("Write requests refused to protect the application from overload")
+                        .tag("reason", reason)
+                        .register(meterRegistry)));
+    }
+
+    /**
+     * Throttle writes by the address they come from, and shed them under overload, ahead of authentication.
+     * @param clientRateLimiter the buckets
+     * @param loadMonitor tells whether the application is overloaded
+     * @param retryAfterSeconds when clients are told to retry a shed write
+     * @param meterRegistry where refused writes are counted
+     * @return the filter
+     */
+    static WriteThrottlingFilter byAddress(ClientRateLimiter clientRateLimiter, LoadMonitor loadMonitor,
+                                           int retryAfterSeconds, MeterRegistry meterRegistry) {
+        return new WriteThrottlingFilter("address", clientRateLimiter, request -> "address:" + request.getRemoteAddr(),
+                loadMonitor, retryAfterSeconds, meterRegistry);
+    }
+
+    /**
+     * Throttle the writes of authenticated users by who they are, once they are authenticated. Anonymous writes
+     * pass, having been throttled by address.
+     * @param clientRateLimiter the buckets
+     * @param meterRegistry where refused writes are counted
+     * @return the filter
+     */
+    static WriteThrottlingFilter byPrincipal(ClientRateLimiter clientRateLimiter, MeterRegistry meterRegistry) {
+        return new WriteThrottlingFilter("principal", clientRateLimiter, WriteThrottlingFilter::principal, null, 0,
+                meterRegistry);
+    }
+
+    @Override
+    protected String getAlreadyFilteredAttributeName() {
+        // Both filters are in the chain, and each must run once
+        return WriteThrottlingFilter.class.getName() + "." + by + ALREADY_FILTERED_SUFFIX;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return READ_METHODS.contains(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String overload = loadMonitor != null ? loadMonitor.overload() : null;
+        if (overload != null) {
+            refuse(response, HttpStatus.SERVICE_UNAVAILABLE, retryAfterSeconds, overload);
+            return;
+        }
+        String name = clientRateLimiter.isEnabled() ? client.apply(request) : null;
+        if (name != null) {
+            long waitNanos = clientRateLimiter.tryAcquire(name);
+            if (waitNanos > 0) {
+                long waitSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999));
+                refuse(response, HttpStatus.TOO_MANY_REQUESTS, waitSeconds, RATE_LIMIT);
+                return;
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    private static @Nullable String principal(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return "user:" + authentication.getName();
+    }
+
+    private void refuse(HttpServletResponse response, HttpStatus status, long retryAfterSeconds, String reason)
+            throws IOException {
+        shed.get(reason).increment();
+        // Written right away rather than through an error dispatch, which is authorized again
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"%s\"}".formatted(reason));
+    }
+}
@@ -5,5 +5,5 @@ import java.util.UUID;
 /**
  * Event published when a book's availability is checked.
  */
-public record BookAvailabilityCheckedEvent(UUID bookId, UUID borrowingId, boolean available) {
+public record BookAvailabilityCheckedEvent(UUID bookId, UUID borrowingId, boolean available) implements BookEvent {
 }
\ No newline at end of file
@@ -5,5 +5,5 @@ import java.util.UUID;
 /**
  * Event published when a book is borrowed by a member.
  */
-public record BookBorrowRequestEvent(UUID bookId, UUID borrowId) {
+public record BookBorrowRequestEvent(UUID bookId, UUID borrowId) implements BookEvent {
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package org.jetbrains.conf.bookify.events;
+
+import java.util.UUID;
+
+/**
+ * An event about a single book. Listeners of these events are run in order per book.
+ */
+public interface BookEvent {
+
+    /**
+     * @return the ID of the book the event is about
+     */
+    UUID bookId();
+}
@@ -0,0 +1,131 @@
+package org.jetbrains.conf.bookify.events;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Compact binary form of the {@link BookEvent}s, for storing them in the event publication registry.
+ *
+ * <p>A record is a schema version byte, a type tag byte and the fields in declaration order: UUIDs as
+ * two fixed-width longs, booleans as one byte and ints as four. The registry stores text, so the bytes
+ * are Base64 encoded. A new version gets a new version byte, and the decoder keeps reading the old ones
+ * for as long as publications written with them may still be around.</p>
+ */
+public final class BookEventCodec {
+
+    /**
+     * The schema version written by {@link #encode(BookEvent)}.
+     */
+    public static final byte VERSION = 1;
+
+    private static final byte BORROW_REQUEST = 1;
+    private static final byte AVAILABILITY_CHECKED = 2;
+    private static final byte RETURNED = 3;
+    private static final byte WAITLISTED = 4;
+    private static final byte HAND_OVER_DECLINED = 5;
+
+    private static final int UUID_BYTES = 16;
+
+    private static final Set<Class<?>> SUPPORTED_TYPES = Set.of(BookBorrowRequestEvent.class,
+            BookAvailabilityCheckedEvent.class, BookReturnedEvent.class, BookWaitlistedEvent.class,
+            BookHandOverDeclinedEvent.class);
+
+    private BookEventCodec() {
+    }
+
+    /**
+     * Check whether events of a type can be encoded.
+     * @param type the type of the event
+     * @return true if the codec knows the type
+     */
+    public static boolean supports(Class<?> type) {
+        return SUPPORTED_TYPES.contains(type);
+    }
+
+    /**
+     * Check whether a stored event is a record of this codec rather than, for example, JSON. Records are told
+     * apart by their version and type tag, so that they stay readable whichever form is being written.
+     * @param serialized the stored event
+     * @return true if it starts with the header of a record
+     */
+    public static boolean isRecord(String serialized) {
+        byte[] header;
+        try {
+            // Four Base64 characters are the first three bytes
+            header = Base64.getDecoder().decode(serialized.length() > 4 ? serialized.substring(0, 4) : serialized);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return header.length >= 2 && header[0] == VERSION
+                && header[1] >= BORROW_REQUEST && header[1] <= HAND_OVER_DECLINED;
+    }
+
+    /**
+     * Encode an event.
+     * @param event the event, of a {@link #supports(Class) supported} type
+     * @return the Base64 encoded record
+     * @throws IllegalArgumentException if the type of the event is not supported
+     */
+    public static String encode(BookEvent event) {
+        ByteBuffer buffer = switch (event) {
+            case BookBorrowRequestEvent e -> write(BORROW_REQUEST, e.bookId(), e.borrowId(), 0);
+            case BookAvailabilityCheckedEvent e -> write(AVAILABILITY_CHECKED, e.bookId(), e.borrowingId(), 1)
+                    .put((byte) (e.available() ? 1 : 0));
+            case BookReturnedEvent e -> write(RETURNED, e.bookId(), e.memberId(), 0);
+            case BookWaitlistedEvent e -> write(WAITLISTED, e.bookId(), e.borrowingId(), Integer.BYTES)
+                    .putInt(e.position());
+            case BookHandOverDeclinedEvent e -> write(HAND_OVER_DECLINED, e.bookId(), e.borrowingId(), 0);
+            default -> throw new IllegalArgumentException("Unsupported event type " + event.getClass().getName());
+        };
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    /**
+     * Decode an event.
+     * @param encoded the Base64 encoded record
+     * @param type the expected type of the event
+     * @return the event
+     * @param <T> the expected type of the event
+     * @throws IllegalArgumentException if the record is malformed, of an unknown version or of another type
+     */
+    public static <T> T decode(String encoded, Class<T> type) {
+        ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(encoded));
+        try {
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported event schema version " + version);
+            }
+            Object event = switch (buffer.get()) {
+                case BORROW_REQUEST -> new BookBorrowRequestEvent(uuid(buffer), uuid(buffer));
+                case AVAILABILITY_CHECKED -> new BookAvailabilityCheckedEvent(uuid(buffer), uuid(buffer), buffer.get() != 0);
+                case RETURNED -> new BookReturnedEvent(uuid(buffer), uuid(buffer));
+                case WAITLISTED -> new BookWaitlistedEvent(uuid(buffer), uuid(buffer), buffer.getInt());
+                case HAND_OVER_DECLINED -> new BookHandOverDeclinedEvent(uuid(buffer), uuid(buffer));
+                default -> throw new IllegalArgumentException("Unknown event type tag in " + encoded);
+            };
+            if (buffer.hasRemaining() || !type.isInstance(event)) {
+                throw new IllegalArgumentException("Record " + encoded + " is not a " + type.getName());
+            }
+            return type.cast(event);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated event record " + encoded, e);
+        }
+    }
+
+    private static ByteBuffer write(byte tag, UUID first, UUID second, int remainingBytes) {
+        return ByteBuffer.allocate(2 + 2 * UUID_BYTES + remainingBytes)
+                .put(VERSION)
+                .put(tag)
+                .putLong(first.getMostSignificantBits())
+                .putLong(first.getLeastSignificantBits())
+                .putLong(second.getMostSignificantBits())
+                .putLong(second.getLeastSignificantBits());
+    }
+
+    private static UUID uuid(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
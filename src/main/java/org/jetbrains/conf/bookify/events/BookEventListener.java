@@ -0,0 +1,25 @@
+package org.jetbrains.conf.bookify.events;
+
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Like {@code @ApplicationModuleListener}, for listeners of a {@link BookEvent}: the listener runs
+ * asynchronously after the publishing transaction commits, in a transaction of its own. Instead of the
+ * shared task executor, it runs on the lane of the event's book, so events about the same book are
+ * handled one at a time and in publication order, while events about different books run in parallel.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Transactional(propagation = Propagation.REQUIRES_NEW)
+@TransactionalEventListener
+public @interface BookEventListener {
+}
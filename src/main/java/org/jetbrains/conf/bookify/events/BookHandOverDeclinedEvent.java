@@ -0,0 +1,10 @@
+package org.jetbrains.conf.bookify.events;
+
+import java.util.UUID;
+
+/**
+ * Event published when a book is handed over to a borrowing request that no longer waits for it, for example
+ * because it was rejected in the meantime. The book goes to the next request in its waitlist or back on the shelf.
+ */
+public record BookHandOverDeclinedEvent(UUID bookId, UUID borrowingId) implements BookEvent {
+}
@@ -5,5 +5,5 @@ import java.util.UUID;
 /**
  * Event published when a book is returned by a member.
  */
-public record BookReturnedEvent(UUID bookId, UUID memberId) {
+public record BookReturnedEvent(UUID bookId, UUID memberId) implements BookEvent {
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package org.jetbrains.conf.bookify.events;
+
+import java.util.UUID;
+
+/**
+ * Event published when a borrowing request is queued because the book is out.
+ * The book is handed over with a {@link BookAvailabilityCheckedEvent} once it is the request's turn.
+ */
+public record BookWaitlistedEvent(UUID bookId, UUID borrowingId, int position) implements BookEvent {
+}
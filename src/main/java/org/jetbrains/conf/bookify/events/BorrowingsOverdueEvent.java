@@ -0,0 +1,17 @@
+package org.jetbrains.conf.bookify.events;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Event published when a chunk of borrowings has been marked as overdue.
+ */
+public record BorrowingsOverdueEvent(List<OverdueBorrowing> borrowings) {
+
+    /**
+     * A borrowing that passed its due date without the book being returned.
+     */
+    public record OverdueBorrowing(UUID borrowingId, UUID bookId, UUID memberId, LocalDateTime borrowDate) {
+    }
+}
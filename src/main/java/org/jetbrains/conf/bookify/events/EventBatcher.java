@@ -0,0 +1,134 @@
+package org.jetbrains.conf.bookify.events;
+
+import org.jspecify.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collects events into batches of up to a maximum size, waiting at most a maximum delay after the first
+ * event of a batch, and hands each batch to a processor on a virtual thread of its own.
+ *
+ * <p>Every submitted event gets a future that completes once its batch was processed, or fails with the
+ * batch. Listeners return that future, so the event publication registry marks each publication completed
+ * only after the batch holding it was committed.</p>
+ *
+ * <p>Closing the batcher processes the events submitted so far and refuses new ones.</p>
+ *
+ * @param <E> the type of the events
+ */
+public final class EventBatcher<E> implements AutoCloseable {
+
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(10);
+
+    private final BlockingQueue<Pending<E>> queue = new LinkedBlockingQueue<>();
+    private final int maxSize;
+    private final Duration maxDelay;
+    private final Consumer<List<E>> processor;
+    private final String name;
+    private final Thread drainer;
+    // Queued after the last event when closing, and never processed
+    private final Pending<E> stop = new Pending<>(null, new CompletableFuture<>());
+    private boolean closed;
+
+    /**
+     * Create a batcher and start draining it.
+     * @param name the name of the draining thread
+     * @param maxSize the maximum number of events in a batch
+     * @param maxDelay the maximum time to wait for more events after the first one of a batch
+     * @param processor processes one batch, in submission order
+     */
+    public EventBatcher(String name, int maxSize, Duration maxDelay, Consumer<List<E>> processor) {
+        this.maxSize = maxSize;
+        this.maxDelay = maxDelay;
+        this.processor = processor;
+        this.name = name;
+        this.drainer = Thread.ofVirtual().name(name).start(this::drain);
+    }
+
+    /**
+     * Add an event to the next batch.
+     * @param event the event
+     * @return a future completing when the batch holding the event was processed
+     */
+    public CompletableFuture<Void> submit(E event) {
+        Pending<E> pending = new Pending<>(event, new CompletableFuture<>());
+        synchronized (queue) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Batcher " + name + " is closed"));
+            }
+            queue.add(pending);
+        }
+        return pending.completion();
+    }
+
+    /**
+     * Process the events submitted so far and stop, waiting a while for the last batches to be processed.
+     * Events still pending when the wait is over fail, and so do events that are submitted afterwards.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Override
+    public void close() throws InterruptedException {
+        synchronized (queue) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(stop);
+        }
+        if (!drainer.join(CLOSE_TIMEOUT)) {
+            drainer.interrupt();
+            drainer.join();
+        }
+    }
+
+    private void drain() {
+        List<Pending<E>> batch = new ArrayList<>(maxSize);
+        boolean stopping = false;
+        try {
+            while (!stopping) {
+                Pending<E> first = queue.take();
+                if (first == stop) {
+                    return;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelay.toNanos();
+                while (batch.size() < maxSize) {
+                    Pending<E> next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == stop) {
+                        stopping = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+                process(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queue.drainTo(batch);
+            batch.forEach(pending -> pending.completion().completeExceptionally(e));
+        }
+    }
+
+    private void process(List<Pending<E>> batch) {
+        try {
+            processor.accept(batch.stream().map(Pending::event).toList());
+            batch.forEach(pending -> pending.completion().complete(null));
+        } catch (RuntimeException e) {
+            batch.forEach(pending -> pending.completion().completeExceptionally(e));
+        }
+    }
+
+    private record Pending<E>(@Nullable E event, CompletableFuture<Void> completion) {
+    }
+}
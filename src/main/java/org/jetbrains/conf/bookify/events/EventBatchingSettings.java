@@ -0,0 +1,18 @@
+package org.jetbrains.conf.bookify.events;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the opt-in batched consumption of book events.
+ * @param enabled whether listeners that support it process their events in batches
+ * @param maxSize the maximum number of events in a batch
+ * @param maxDelay the maximum time to wait for more events after the first one of a batch
+ */
+@ConfigurationProperties(prefix = "bookify.events.batching")
+public record EventBatchingSettings(@DefaultValue("false") boolean enabled,
+                                    @DefaultValue("100") int maxSize,
+                                    @DefaultValue("20ms") Duration maxDelay) {
+}
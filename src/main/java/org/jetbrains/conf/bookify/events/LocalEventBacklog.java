@@ -0,0 +1,21 @@
+package org.jetbrains.conf.bookify.events;
+
+import org.jspecify.annotations.Nullable;
+
+import java.time.Instant;
+
+/**
+ * The events this node has taken on for its listeners but not handled yet.
+ *
+ * <p>Their publications are incomplete while they wait, so a recovery job must not take them for stuck ones and
+ * deliver them a second time.</p>
+ */
+@FunctionalInterface
+public interface LocalEventBacklog {
+
+    /**
+     * When the oldest event still waiting or being handled on this node was taken on.
+     * @return the time, or {@code null} if no event is waiting
+     */
+    @Nullable Instant oldestTakenOnAt();
+}
@@ -0,0 +1,294 @@
+package org.jetbrains.conf.bookify.journal;
+
+import org.jetbrains.conf.bookify.events.BookAvailabilityCheckedEvent;
+import org.jetbrains.conf.bookify.events.BookBorrowRequestEvent;
+import org.jetbrains.conf.bookify.events.BookEvent;
+import org.jetbrains.conf.bookify.events.BookReturnedEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of the borrowing events on local disk.
+ *
+ * <p>The journal is a sequence of segment files of a fixed number of records, each named after the
+ * offset of its first record and memory-mapped while in use. Every record has the same size:</p>
+ * <pre>
+ *  0  appended at, epoch milliseconds (8 bytes)
+ *  8  schema version (1 byte), zero for a slot that was never written
+ *  9  event type tag (1 byte)
+ * 10  availability flag (1 byte)
+ * 11  reserved (1 byte)
+ * 12  reserved (4 bytes)
+ * 16  book id (16 bytes)
+ * 32  borrowing or member id (16 bytes)
+ * </pre>
+ *
+ * <p>The version is written last, so a record becomes visible to recovery only once it is complete.
+ * Records reach the page cache right away and the disk when they are {@link #flush() flushed}, when a
+ * segment is rolled or when the journal is closed; a crash of the machine can lose the tail that was not
+ * flushed yet. Flushing never holds up appends. The directory is locked, so only one journal writes to
+ * it.</p>
+ */
+public final class BorrowingJournal implements Closeable {
+
+    /**
+     * The size of every record, in bytes.
+     */
+    public static final int RECORD_BYTES = 48;
+
+    private static final byte VERSION = 1;
+
+    private static final byte BORROW_REQUEST = 1;
+    private static final byte AVAILABILITY_CHECKED = 2;
+    private static final byte RETURNED = 3;
+
+    private static final int VERSION_POSITION = 8;
+    private static final int TAG_POSITION = 9;
+    private static final int FLAG_POSITION = 10;
+    private static final int FIRST_ID_POSITION = 16;
+    private static final int SECOND_ID_POSITION = 32;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path directory;
+    private final int segmentRecords;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final NavigableMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+    private final Map<Long, MappedByteBuffer> readers = new ConcurrentHashMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    private volatile MappedByteBuffer tail;
+    private long tailOffset;
+    private int tailRecords;
+    private volatile long endOffset;
+
+    /**
+     * Open the journal in a directory, creating it if needed, and continue after its last record.
+     * @param directory the directory holding the segments
+     * @param segmentRecords the number of records in a new segment
+     * @throws IOException if the directory cannot be read or is locked by another journal
+     */
+    public BorrowingJournal(Path directory, int segmentRecords) throws IOException {
+        if (segmentRecords <= 0 || (long) segmentRecords * RECORD_BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segments must hold between 1 and "
+                    + Integer.MAX_VALUE / RECORD_BYTES + " records, not " + segmentRecords);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentRecords = segmentRecords;
+        this.lockChannel = FileChannel.open(directory.resolve("journal.lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock acquired;
+        try {
+            acquired = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            acquired = null;
+        }
+        if (acquired == null) {
+            lockChannel.close();
+            throw new IOException("Journal " + directory + " is in use by another process");
+        }
+        this.lock = acquired;
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> segments.put(Long.parseLong(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())),
+                            directory.resolve(name)));
+        }
+        if (segments.isEmpty()) {
+            openTail(0);
+            this.endOffset = 0;
+        } else {
+            long lastOffset = segments.lastKey();
+            openTail(lastOffset);
+            this.endOffset = lastOffset + writtenRecords(tail, tailRecords);
+        }
+    }
+
+    /**
+     * Append an event.
+     * @param event a borrow request, availability check or return
+     * @return the offset of the appended record
+     */
+    public long append(BookEvent event) {
+        long offset;
+        MappedByteBuffer rolled = null;
+        appendLock.lock();
+        try {
+            offset = endOffset;
+            if (offset - tailOffset == tailRecords) {
+                rolled = tail;
+                openTail(offset);
+            }
+            ByteBuffer record = tail.slice((int) (offset - tailOffset) * RECORD_BYTES, RECORD_BYTES);
+            record.putLong(0, System.currentTimeMillis());
+            switch (event) {
+                case BookBorrowRequestEvent e -> write(record, BORROW_REQUEST, e.bookId(), e.borrowId());
+                case BookAvailabilityCheckedEvent e -> write(record, AVAILABILITY_CHECKED, e.bookId(), e.borrowingId())
+                        .put(FLAG_POSITION, (byte) (e.available() ? 1 : 0));
+                case BookReturnedEvent e -> write(record, RETURNED, e.bookId(), e.memberId());
+                default -> throw new IllegalArgumentException("Unsupported event type " + event.getClass().getName());
+            }
+            record.put(VERSION_POSITION, VERSION);
+            endOffset = offset + 1;
+        } finally {
+            appendLock.unlock();
+        }
+        if (rolled != null) {
+            // The rolled segment is complete, so appends to the next one need not wait for it to reach the disk
+            rolled.force();
+        }
+        return offset;
+    }
+
+    /**
+     * Flush the records appended so far to disk. Appends go on meanwhile; the ones racing the flush may or
+     * may not be included.
+     */
+    public void flush() {
+        tail.force();
+    }
+
+    /**
+     * The offset the next record will be appended at, which is the number of records in the journal.
+     * @return the end offset
+     */
+    public long endOffset() {
+        return endOffset;
+    }
+
+    /**
+     * Read the journal from an offset up to the records appended when the replay started.
+     * @param fromOffset the offset of the first record to read
+     * @return the records, in journal order
+     */
+    public Stream<JournalEntry> replay(long fromOffset) {
+        if (fromOffset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative: " + fromOffset);
+        }
+        return LongStream.range(fromOffset, endOffset).mapToObj(this::read);
+    }
+
+    /**
+     * Flush the records to disk and release the directory.
+     */
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            tail.force();
+            readers.clear();
+            lock.release();
+            lockChannel.close();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private JournalEntry read(long offset) {
+        Map.Entry<Long, Path> segment = segments.floorEntry(offset);
+        if (segment == null) {
+            throw new IllegalStateException("No segment holds offset " + offset + " in " + directory);
+        }
+        MappedByteBuffer buffer = readers.computeIfAbsent(segment.getKey(), key -> map(segment.getValue(),
+                FileChannel.MapMode.READ_ONLY, capacity(segment.getValue()), StandardOpenOption.READ));
+        int position = (int) (offset - segment.getKey()) * RECORD_BYTES;
+        byte version = buffer.get(position + VERSION_POSITION);
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported journal record version " + version + " at offset " + offset);
+        }
+        Instant appendedAt = Instant.ofEpochMilli(buffer.getLong(position));
+        UUID bookId = uuid(buffer, position + FIRST_ID_POSITION);
+        UUID otherId = uuid(buffer, position + SECOND_ID_POSITION);
+        BookEvent event = switch (buffer.get(position + TAG_POSITION)) {
+            case BORROW_REQUEST -> new BookBorrowRequestEvent(bookId, otherId);
+            case AVAILABILITY_CHECKED ->
+                    new BookAvailabilityCheckedEvent(bookId, otherId, buffer.get(position + FLAG_POSITION) != 0);
+            case RETURNED -> new BookReturnedEvent(bookId, otherId);
+            default -> throw new IllegalStateException("Unknown journal record type at offset " + offset);
+        };
+        return new JournalEntry(offset, appendedAt, event);
+    }
+
+    private void openTail(long offset) {
+        Path file = segments.computeIfAbsent(offset,
+                key -> directory.resolve(SEGMENT_PREFIX + "%020d".formatted(key) + SEGMENT_SUFFIX));
+        this.tailRecords = capacity(file);
+        this.tail = map(file, FileChannel.MapMode.READ_WRITE, tailRecords,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.tailOffset = offset;
+    }
+
+    /**
+     * The number of records of a segment: the configured size for new segments, the file size for
+     * segments written with another configuration.
+     */
+    private int capacity(Path segment) {
+        try {
+            long size = Files.exists(segment) ? Files.size(segment) : 0;
+            return size > 0 ? (int) (size / RECORD_BYTES) : segmentRecords;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static MappedByteBuffer map(Path file, FileChannel.MapMode mode, int records, StandardOpenOption... options) {
+        try (FileChannel channel = FileChannel.open(file, options)) {
+            return channel.map(mode, 0, (long) records * RECORD_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Find the number of records written to a segment. Records are written in order, so the written
+     * ones are exactly those before the first slot without a version.
+     */
+    private static long writtenRecords(MappedByteBuffer segment, int records) {
+        int low = 0;
+        int high = records;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (segment.get(middle * RECORD_BYTES + VERSION_POSITION) != 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static ByteBuffer write(ByteBuffer record, byte tag, UUID bookId, UUID otherId) {
+        return record.put(TAG_POSITION, tag)
+                .putLong(FIRST_ID_POSITION, bookId.getMostSignificantBits())
+                .putLong(FIRST_ID_POSITION + 8, bookId.getLeastSignificantBits())
+                .putLong(SECOND_ID_POSITION, otherId.getMostSignificantBits())
+                .putLong(SECOND_ID_POSITION + 8, otherId.getLeastSignificantBits());
+    }
+
+    private static UUID uuid(ByteBuffer buffer, int position) {
+        return new UUID(buffer.getLong(position), buffer.getLong(position + 8));
+    }
+}
@@ -0,0 +1,98 @@
+package org.jetbrains.conf.bookify.journal;
+
+import org.jetbrains.conf.bookify.events.BookAvailabilityCheckedEvent;
+import org.jetbrains.conf.bookify.events.BookBorrowRequestEvent;
+import org.jetbrains.conf.bookify.events.BookReturnedEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+
+@Configuration
+@EnableConfigurationProperties(JournalSettings.class)
+@ConditionalOnProperty(prefix = "bookify.journal", name = "enabled", matchIfMissing = true)
+class JournalConfiguration {
+
+    @Bean
+    BorrowingJournal borrowingJournal(JournalSettings settings) throws IOException {
+        return new BorrowingJournal(settings.directory(), settings.segmentRecords());
+    }
+
+    @Bean
+    BorrowingJournalListener borrowingJournalListener(BorrowingJournal journal) {
+        return new BorrowingJournalListener(journal);
+    }
+
+    @Bean
+    BorrowingJournalFlusher borrowingJournalFlusher(BorrowingJournal journal) {
+        return new BorrowingJournalFlusher(journal);
+    }
+
+    /**
+     * Flushes the journal to disk on a schedule, which bounds the records a crash of the machine can lose
+     * without making any append wait for the disk.
+     */
+    static class BorrowingJournalFlusher {
+
+        private final BorrowingJournal journal;
+
+        BorrowingJournalFlusher(BorrowingJournal journal) {
+            this.journal = journal;
+        }
+
+        @Scheduled(cron = "${bookify.journal.flush.cron}")
+        void flush() {
+            journal.flush();
+        }
+    }
+
+    /**
+     * Appends the borrowing events to the journal once the transaction publishing them committed.
+     *
+     * <p>The listener follows the events as they are published and registers the append with the
+     * transaction itself, as an after-commit {@code @TransactionalEventListener} would get a row in the
+     * event publication registry for every event.</p>
+     */
+    static class BorrowingJournalListener {
+
+        private final BorrowingJournal journal;
+
+        BorrowingJournalListener(BorrowingJournal journal) {
+            this.journal = journal;
+        }
+
+        @EventListener
+        void onBookBorrowRequest(BookBorrowRequestEvent event) {
+            afterCommit(() -> journal.append(event));
+        }
+
+        @EventListener
+        void onBookAvailabilityChecked(BookAvailabilityCheckedEvent event) {
+            afterCommit(() -> journal.append(event));
+        }
+
+        @EventListener
+        void onBookReturned(BookReturnedEvent event) {
+            afterCommit(() -> journal.append(event));
+        }
+
+        private static void afterCommit(Runnable action) {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        action.run();
+                    }
+                });
+            } else {
+                action.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.jetbrains.conf.bookify.journal;
+
+import org.jetbrains.conf.bookify.events.BookEvent;
+
+import java.time.Instant;
+
+/**
+ * An event read back from the {@link BorrowingJournal}.
+ * @param offset the position of the event in the journal, starting at zero
+ * @param appendedAt when the event was appended
+ * @param event the event
+ */
+public record JournalEntry(long offset, Instant appendedAt, BookEvent event) {
+}
@@ -0,0 +1,18 @@
+package org.jetbrains.conf.bookify.journal;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+
+/**
+ * Settings of the borrowing journal.
+ * @param enabled whether the borrowing events are journaled
+ * @param directory the directory holding the journal segments
+ * @param segmentRecords the number of records in one segment file
+ */
+@ConfigurationProperties(prefix = "bookify.journal")
+record JournalSettings(@DefaultValue("true") boolean enabled,
+                       @DefaultValue("journal") Path directory,
+                       @DefaultValue("1048576") int segmentRecords) {
+}
@@ -0,0 +1,14 @@
+/**
+ * This package defines the journal module of the Bookify application.
+ *
+ * <p>The journal module appends the borrowing domain events to an append-only journal on local disk
+ * and replays it from any offset, for rebuilding read models and reproducing incidents without
+ * querying the transactional tables.</p>
+ */
+@org.springframework.modulith.ApplicationModule(
+        displayName = "Bookify Journal"
+)
+@NullMarked
+package org.jetbrains.conf.bookify.journal;
+
+import org.jspecify.annotations.NullMarked;
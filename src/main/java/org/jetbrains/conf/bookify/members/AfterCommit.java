@@ -0,0 +1,33 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Runs in-memory reactions to a change once the transaction making it commits.
+ *
+ * <p>Unlike an after-commit {@code @TransactionalEventListener}, which the event publication registry
+ * records like any other, this adds nothing to the database.</p>
+ */
+final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    /**
+     * Run an action once the current transaction commits, or right away if there is none.
+     * @param action the action
+     */
+    static void run(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
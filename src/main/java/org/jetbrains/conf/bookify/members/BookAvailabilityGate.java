@@ -0,0 +1,80 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jetbrains.conf.bookify.config.BookifySettingsConfig;
+import org.jetbrains.conf.bookify.events.BookAvailabilityCheckedEvent;
+import org.jetbrains.conf.bookify.events.BookHandOverDeclinedEvent;
+import org.jetbrains.conf.bookify.events.BookReturnedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.context.event.EventListener;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Admission gate in front of the borrowing flow, turning away requests for books that are known to be refused.
+ *
+ * <p>A book is remembered as refused when the books module rejects a request for it, which happens for
+ * books that do not exist and for books whose waitlist is full. It is forgotten when the book is
+ * returned or passed on, when a request for it is approved, or after a short time to live. The view is local to this
+ * node and only a hint: a request it lets through is checked by the books module as usual. It follows the
+ * events as they are published and applies them once their transaction commits.</p>
+ */
+@Component
+class BookAvailabilityGate {
+
+    private final Map<UUID, Long> refusedUntil = new ConcurrentHashMap<>();
+    private final BookifySettingsConfig bookifySettingsConfig;
+
+    BookAvailabilityGate(BookifySettingsConfig bookifySettingsConfig) {
+        this.bookifySettingsConfig = bookifySettingsConfig;
+    }
+
+    /**
+     * Check whether a borrowing request for a book should be let through.
+     * @param bookId the ID of the requested book
+     * @return {@code false} if requests for the book were recently refused
+     */
+    boolean admits(UUID bookId) {
+        Long until = refusedUntil.get(bookId);
+        if (until == null) {
+            return true;
+        }
+        if (System.nanoTime() - until >= 0) {
+            refusedUntil.remove(bookId, until);
+            return true;
+        }
+        return false;
+    }
+
+    @EventListener
+    void onBookAvailabilityChecked(BookAvailabilityCheckedEvent event) {
+        AfterCommit.run(() -> applyAvailabilityCheck(event));
+    }
+
+    @EventListener
+    void onBookReturned(BookReturnedEvent event) {
+        AfterCommit.run(() -> refusedUntil.remove(event.bookId()));
+    }
+
+    @EventListener
+    void onBookHandOverDeclined(BookHandOverDeclinedEvent event) {
+        AfterCommit.run(() -> refusedUntil.remove(event.bookId()));
+    }
+
+    private void applyAvailabilityCheck(BookAvailabilityCheckedEvent event) {
+        if (event.available()) {
+            refusedUntil.remove(event.bookId());
+            return;
+        }
+        if (refusedUntil.size() >= bookifySettingsConfig.getAdmissionMaxEntries()) {
+            long now = System.nanoTime();
+            refusedUntil.values().removeIf(until -> now - until >= 0);
+            if (refusedUntil.size() >= bookifySettingsConfig.getAdmissionMaxEntries()) {
+                return;
+            }
+        }
+        refusedUntil.put(event.bookId(),
+                System.nanoTime() + bookifySettingsConfig.getAdmissionRefusedTtlSeconds() * 1_000_000_000L);
+    }
+}
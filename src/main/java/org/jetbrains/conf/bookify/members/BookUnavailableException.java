@@ -0,0 +1,20 @@
+package org.jetbrains.conf.bookify.members;
+
+import java.util.UUID;
+
+/**
+ * Thrown when a borrowing request is turned away because requests for the book are currently refused.
+ */
+class BookUnavailableException extends RuntimeException {
+
+    private final UUID bookId;
+
+    BookUnavailableException(UUID bookId) {
+        super("Book " + bookId + " cannot be borrowed at the moment");
+        this.bookId = bookId;
+    }
+
+    UUID getBookId() {
+        return bookId;
+    }
+}
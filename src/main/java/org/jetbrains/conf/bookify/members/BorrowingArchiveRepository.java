@@ -0,0 +1,26 @@
+package org.jetbrains.conf.bookify.members;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Access to the archive of closed borrowings.
+ */
+interface BorrowingArchiveRepository {
+
+    /**
+     * Move a batch of closed (returned or rejected) borrowings into the archive.
+     * @param closedBefore only borrowings closed before this time are moved
+     * @param limit the maximum number of borrowings to move
+     * @return the number of borrowings moved
+     */
+    int archiveClosedBefore(LocalDateTime closedBefore, int limit);
+
+    /**
+     * Find an archived borrowing by ID.
+     * @param id the ID of the borrowing
+     * @return the archived borrowing, if any
+     */
+    Optional<Borrowing> findArchivedById(UUID id);
+}
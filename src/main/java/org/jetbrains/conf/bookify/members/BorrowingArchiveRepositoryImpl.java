@@ -0,0 +1,88 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.jetbrains.conf.bookify.members.BorrowingSearchRepositoryImpl.BORROWING_COLUMNS;
+import static org.jetbrains.conf.bookify.members.BorrowingSearchRepositoryImpl.BORROWING_ROW_MAPPER;
+
+class BorrowingArchiveRepositoryImpl implements BorrowingArchiveRepository {
+
+    private static final String ARCHIVED_COLUMNS = BORROWING_COLUMNS + ", requested_at, employee_organization, employee_number";
+
+    static final String PARTITION_LOCK = "borrowing-archive-partition:";
+
+    static final String SELECT_CLOSED_FOR_ARCHIVE = """
+            SELECT id, borrow_date FROM borrowing
+            WHERE status IN ('RETURNED', 'REJECTED')
+              AND COALESCE(return_date, borrow_date, '-infinity'::TIMESTAMP) < :closedBefore
+            ORDER BY COALESCE(return_date, borrow_date, '-infinity'::TIMESTAMP)
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    BorrowingArchiveRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int archiveClosedBefore(LocalDateTime closedBefore, int limit) {
+        // Lock the batch first, so that concurrent archivers work on disjoint rows
+        List<Map<String, Object>> batch = jdbcTemplate.queryForList(SELECT_CLOSED_FOR_ARCHIVE, new MapSqlParameterSource()
+                .addValue("closedBefore", closedBefore)
+                .addValue("limit", limit));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        batch.stream()
+                .map(row -> (Timestamp) row.get("borrow_date"))
+                .filter(Objects::nonNull)
+                .map(borrowDate -> borrowDate.toLocalDateTime().getYear())
+                .distinct()
+                .forEach(this::createYearPartition);
+
+        List<UUID> ids = batch.stream().map(row -> (UUID) row.get("id")).toList();
+        return jdbcTemplate.update("""
+                WITH moved AS (
+                    DELETE FROM borrowing WHERE id IN (:ids)
+                    RETURNING %1$s
+                )
+                INSERT INTO borrowing_archive (%1$s)
+                SELECT %1$s FROM moved
+                """.formatted(ARCHIVED_COLUMNS), Map.of("ids", ids));
+    }
+
+    @Override
+    public Optional<Borrowing> findArchivedById(UUID id) {
+        return jdbcTemplate.query("SELECT " + BORROWING_COLUMNS + " FROM borrowing_archive WHERE id = :id",
+                        Map.of("id", id), BORROWING_ROW_MAPPER)
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Create the archive partition for a year unless it exists. Rows must never reach the default
+     * partition for a year that later gets its own partition, so this runs before every move.
+     * {@code IF NOT EXISTS} does not keep two nodes from creating the same partition at once, so
+     * they take turns on a transaction-scoped advisory lock per year.
+     */
+    private void createYearPartition(int year) {
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(hashtextextended(:lock, 0))::TEXT",
+                Map.of("lock", PARTITION_LOCK + year), String.class);
+        jdbcTemplate.getJdbcTemplate().execute(
+                "CREATE TABLE IF NOT EXISTS borrowing_archive_y%d PARTITION OF borrowing_archive FOR VALUES FROM ('%s') TO ('%s')"
+                        .formatted(year, LocalDate.of(year, 1, 1), LocalDate.of(year + 1, 1, 1)));
+    }
+}
@@ -0,0 +1,50 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jetbrains.conf.bookify.config.BookifySettingsConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Background job that moves closed borrowings out of the hot {@code borrowing} table.
+ *
+ * <p>Only open loans and recently closed ones stay in the hot table, which keeps it and its
+ * indexes small. History reads see archived borrowings through the search repository.</p>
+ */
+@Component
+class BorrowingArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(BorrowingArchiver.class);
+
+    private final BorrowingService borrowingService;
+    private final BookifySettingsConfig bookifySettingsConfig;
+
+    BorrowingArchiver(BorrowingService borrowingService, BookifySettingsConfig bookifySettingsConfig) {
+        this.borrowingService = borrowingService;
+        this.bookifySettingsConfig = bookifySettingsConfig;
+    }
+
+    @Scheduled(cron = "${bookify.archive.cron}")
+    void scheduledArchive() {
+        int archived = archive();
+        if (archived > 0) {
+            log.info("Archived {} closed borrowings", archived);
+        }
+    }
+
+    /**
+     * Archive all borrowings closed before the horizon, batch by batch.
+     * @return the number of borrowings archived
+     */
+    int archive() {
+        int batchSize = bookifySettingsConfig.getArchiveBatchSize();
+        int total = 0;
+        int archived;
+        do {
+            archived = borrowingService.archiveClosedBatch(batchSize);
+            total += archived;
+        } while (archived == batchSize);
+        return total;
+    }
+}
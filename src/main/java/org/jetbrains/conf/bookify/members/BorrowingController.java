@@ -1,44 +1,90 @@
 package org.jetbrains.conf.bookify.members;
 
+import org.jspecify.annotations.Nullable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @RestController
 @RequestMapping(value = "/api/borrowings")
 class BorrowingController {
 
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     private final BorrowingService borrowingService;
+    private final IdempotencyKeyStore idempotencyKeyStore;
 
-    BorrowingController(BorrowingService borrowingService) {
+    BorrowingController(BorrowingService borrowingService, IdempotencyKeyStore idempotencyKeyStore) {
         this.borrowingService = borrowingService;
+        this.idempotencyKeyStore = idempotencyKeyStore;
     }
 
     /**
-     * Retrieves a list of all borrowing records.
+     * Retrieves a page of borrowing records, optionally filtered.
      *
-     * @return a ResponseEntity containing a list of all borrowings
+     * @param status only return borrowings with this status
+     * @param memberId only return borrowings of this member
+     * @param bookId only return borrowings of this book
+     * @param from only return borrowings borrowed at or after this time
+     * @param to only return borrowings borrowed before this time
+     * @param after the {@code next} key of the previous page
+     * @param size the page size
+     * @return a ResponseEntity containing a page of borrowings
      */
     @GetMapping(value = "")
-    public ResponseEntity<List<Borrowing>> getAll() {
-        return ResponseEntity.ok(borrowingService.findAll());
+    public ResponseEntity<KeysetPage<Borrowing>> getAll(
+            @RequestParam(required = false) @Nullable BorrowingStatus status,
+            @RequestParam(required = false) @Nullable UUID memberId,
+            @RequestParam(required = false) @Nullable UUID bookId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            @Nullable LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            @Nullable LocalDateTime to,
+            @RequestParam(required = false) @Nullable UUID after,
+            @RequestParam(defaultValue = "" + BorrowingService.DEFAULT_PAGE_SIZE) int size) {
+        var criteria = new BorrowingCriteria(status, memberId, bookId, from, to);
+        return ResponseEntity.ok(borrowingService.findBorrowings(criteria, after, size));
     }
     
     /**
      * Create a borrowing request for a member.
      * @param bookId the ID of the book to borrow
      * @param memberId the ID of the member borrowing the book
-     * @return the borrowing request if successful, 404 otherwise
+     * @param idempotencyKey a client-generated key that makes retries of this request replay its outcome
+     * @return the borrowing request if successful, 409 if requests for the book are currently refused,
+     * 400 if the idempotency key is empty or too long, 404 otherwise
      */
     @PostMapping(value = "/borrow", produces = "application/json")
-    ResponseEntity<Borrowing> borrowBook(@RequestParam UUID bookId, @RequestParam UUID memberId) {
-        return borrowingService.borrowBook(bookId, memberId)
+    ResponseEntity<Borrowing> borrowBook(@RequestParam UUID bookId, @RequestParam UUID memberId,
+                                         @RequestHeader(name = IDEMPOTENCY_KEY, required = false)
+                                         @Nullable String idempotencyKey) {
+        if (!isValidIdempotencyKey(idempotencyKey)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return idempotencyKeyStore.execute(memberId, idempotencyKey, "borrow " + bookId + " " + memberId,
+                        () -> borrowingService.borrowBook(bookId, memberId))
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Get a page of the borrowings that are overdue, as last marked by the overdue scanner.
+     * @param after the {@code next} key of the previous page
+     * @param size the page size
+     * @return a page of overdue borrowings
+     */
+    @GetMapping("/overdue")
+    KeysetPage<Borrowing> getOverdueBorrowings(@RequestParam(required = false) @Nullable UUID after,
+                                               @RequestParam(defaultValue = "" + BorrowingService.DEFAULT_PAGE_SIZE) int size) {
+        return borrowingService.getOverdueBorrowings(after, size);
+    }
+
     /**
      * Get a borrowing request by ID.
      * @param borrowingId the ID of the borrowing request
@@ -56,23 +102,35 @@ class BorrowingController {
      * Return a borrowed book.
      * @param bookId the ID of the book to return
      * @param memberId the ID of the member returning the book
-     * @return the updated borrowing record if successful, 404 otherwise
+     * @param idempotencyKey a client-generated key that makes retries of this request replay its outcome
+     * @return the updated borrowing record if successful, 400 if the idempotency key is empty or too long,
+     * 404 otherwise
      */
     @PostMapping("/return")
-    ResponseEntity<Borrowing> returnBook(@RequestParam UUID bookId, @RequestParam UUID memberId) {
-        return borrowingService.returnBook(bookId, memberId)
+    ResponseEntity<Borrowing> returnBook(@RequestParam UUID bookId, @RequestParam UUID memberId,
+                                         @RequestHeader(name = IDEMPOTENCY_KEY, required = false)
+                                         @Nullable String idempotencyKey) {
+        if (!isValidIdempotencyKey(idempotencyKey)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return idempotencyKeyStore.execute(memberId, idempotencyKey, "return " + bookId + " " + memberId,
+                        () -> borrowingService.returnBook(bookId, memberId))
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
     /**
-     * Get all borrowings for a member.
+     * Get a page of the borrowings of a member.
      * @param memberId the ID of the member
-     * @return a list of borrowings for the member
+     * @param after the {@code next} key of the previous page
+     * @param size the page size
+     * @return a page of borrowings for the member
      */
     @GetMapping("/member/{memberId}")
-    List<Borrowing> getBorrowingsForMember(@PathVariable UUID memberId) {
-        return borrowingService.getBorrowingsForMember(memberId);
+    KeysetPage<Borrowing> getBorrowingsForMember(@PathVariable UUID memberId,
+                                                 @RequestParam(required = false) @Nullable UUID after,
+                                                 @RequestParam(defaultValue = "" + BorrowingService.DEFAULT_PAGE_SIZE) int size) {
+        return borrowingService.getBorrowingsForMember(memberId, after, size);
     }
 
     /**
@@ -84,4 +142,36 @@ class BorrowingController {
     List<Borrowing> getActiveBorrowingsForMember(@PathVariable UUID memberId) {
         return borrowingService.getActiveBorrowingsForMember(memberId);
     }
+
+    private static boolean isValidIdempotencyKey(@Nullable String idempotencyKey) {
+        return idempotencyKey == null
+                || !idempotencyKey.isEmpty() && idempotencyKey.length() <= IdempotencyKeyStore.MAX_KEY_LENGTH;
+    }
+
+    /**
+     * Handle an idempotency key that is sent again with a different request.
+     * Returns HTTP 422 UNPROCESSABLE CONTENT, as replaying the first request would answer the wrong question.
+     */
+    @ExceptionHandler(value = IdempotencyKeyReuseException.class, produces = "application/json")
+    ResponseEntity<Map<String, String>> handleIdempotencyKeyReuse(IdempotencyKeyReuseException ex) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_CONTENT)
+                .body(Map.of(
+                        "error", "Idempotency key reused",
+                        "message", ex.getMessage()
+                ));
+    }
+
+    /**
+     * Handle a borrowing request that is turned away by the admission gate.
+     * Returns HTTP 409 CONFLICT without creating a borrowing.
+     */
+    @ExceptionHandler(value = BookUnavailableException.class, produces = "application/json")
+    ResponseEntity<Map<String, String>> handleBookUnavailable(BookUnavailableException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of(
+                        "error", "Book unavailable",
+                        "message", ex.getMessage(),
+                        "bookId", ex.getBookId().toString()
+                ));
+    }
 }
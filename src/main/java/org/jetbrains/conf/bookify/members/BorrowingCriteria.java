@@ -0,0 +1,30 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jspecify.annotations.Nullable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Filters for listing borrowings. Criteria that are {@code null} are not applied.
+ *
+ * @param status the status of the borrowing
+ * @param memberId the member who requested the borrowing
+ * @param bookId the requested book
+ * @param borrowedFrom inclusive lower bound of the borrow date
+ * @param borrowedTo exclusive upper bound of the borrow date
+ */
+record BorrowingCriteria(@Nullable BorrowingStatus status,
+                         @Nullable UUID memberId,
+                         @Nullable UUID bookId,
+                         @Nullable LocalDateTime borrowedFrom,
+                         @Nullable LocalDateTime borrowedTo) {
+
+    static BorrowingCriteria forMember(UUID memberId) {
+        return new BorrowingCriteria(null, memberId, null, null, null);
+    }
+
+    static BorrowingCriteria withStatus(BorrowingStatus status) {
+        return new BorrowingCriteria(status, null, null, null, null);
+    }
+}
@@ -1,11 +1,25 @@
 package org.jetbrains.conf.bookify.members;
 
+import org.springframework.data.jdbc.repository.query.Modifying;
+import org.springframework.data.jdbc.repository.query.Query;
 import org.springframework.data.repository.CrudRepository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
-interface BorrowingRepository extends CrudRepository<Borrowing, UUID> {
+interface BorrowingRepository extends CrudRepository<Borrowing, UUID>, BorrowingSearchRepository,
+        BorrowingArchiveRepository {
+
+    String FIND_NEWLY_OVERDUE = """
+            SELECT * FROM borrowing
+            WHERE return_date IS NULL AND status = 'APPROVED' AND borrow_date < :borrowedBefore
+            ORDER BY borrow_date
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """;
+
     /**
      * Find all borrowings for a specific member.
      * @param memberId the ID of the member
@@ -26,4 +40,45 @@ interface BorrowingRepository extends CrudRepository<Borrowing, UUID> {
      * @return a list of active borrowings for the book (should be at most one)
      */
     List<Borrowing> findByBookIdAndReturnDateIsNull(UUID bookId);
+
+    /**
+     * Find approved borrowings that are not returned and were borrowed before the given time, oldest first.
+     * Rows locked by a concurrent scan are skipped, so parallel scanners work on disjoint chunks.
+     * @param borrowedBefore the borrow date before which a borrowing is overdue
+     * @param limit the maximum number of borrowings to return
+     * @return the newly overdue borrowings, locked until the end of the transaction
+     */
+    @Query(FIND_NEWLY_OVERDUE)
+    List<Borrowing> findNewlyOverdue(LocalDateTime borrowedBefore, int limit);
+
+    /**
+     * Mark borrowings as overdue.
+     * @param ids the IDs of the borrowings
+     * @return the number of borrowings updated
+     */
+    @Modifying
+    @Query("UPDATE borrowing SET status = 'OVERDUE' WHERE id IN (:ids)")
+    int markOverdue(Collection<UUID> ids);
+
+    /**
+     * Approve borrowings that are still pending or waitlisted, lending them the book they requested.
+     * @param ids the IDs of the borrowings
+     * @param borrowDate the borrow date to set
+     * @return the IDs of the borrowings approved
+     */
+    @Query("""
+            UPDATE borrowing SET status = 'APPROVED', borrow_date = :borrowDate, book_id = requested_book_id
+            WHERE id IN (:ids) AND status IN ('PENDING', 'WAITLISTED')
+            RETURNING id
+            """)
+    List<UUID> approveWaiting(Collection<UUID> ids, LocalDateTime borrowDate);
+
+    /**
+     * Reject borrowings that are still pending or waitlisted.
+     * @param ids the IDs of the borrowings
+     * @return the number of borrowings rejected
+     */
+    @Modifying
+    @Query("UPDATE borrowing SET status = 'REJECTED' WHERE id IN (:ids) AND status IN ('PENDING', 'WAITLISTED')")
+    int rejectWaiting(Collection<UUID> ids);
 }
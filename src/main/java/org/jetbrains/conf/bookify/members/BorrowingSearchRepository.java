@@ -0,0 +1,21 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keyset-paginated, filterable access to borrowings.
+ */
+interface BorrowingSearchRepository {
+
+    /**
+     * Find borrowings matching the criteria, ordered by id.
+     * @param criteria the filters to apply
+     * @param after only return borrowings with an id greater than this one, if set
+     * @param limit the maximum number of borrowings to return
+     * @return the matching borrowings
+     */
+    List<Borrowing> search(BorrowingCriteria criteria, @Nullable UUID after, int limit);
+}
@@ -0,0 +1,76 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.UUID;
+
+/**
+ * Builds the borrowing search query from the criteria that are actually set, so that each
+ * combination is planned against the matching index rather than a catch-all predicate.
+ *
+ * <p>Searches cover the archive of closed borrowings as well. Both tables are indexed alike, so
+ * the filters are pushed into each branch and the branches are merged in id order.</p>
+ */
+class BorrowingSearchRepositoryImpl implements BorrowingSearchRepository {
+
+    static final String BORROWING_COLUMNS = "id, book_id, requested_book_id, member_id, borrow_date, return_date, status";
+
+    static final String SELECT_BORROWING = "SELECT " + BORROWING_COLUMNS + " FROM ("
+            + "SELECT " + BORROWING_COLUMNS + " FROM borrowing"
+            + " UNION ALL SELECT " + BORROWING_COLUMNS + " FROM borrowing_archive) borrowing";
+
+    static final RowMapper<Borrowing> BORROWING_ROW_MAPPER = (rs, rowNum) -> new Borrowing(
+            rs.getObject("id", UUID.class),
+            rs.getObject("book_id", UUID.class),
+            rs.getObject("requested_book_id", UUID.class),
+            rs.getObject("member_id", UUID.class),
+            rs.getObject("borrow_date", LocalDateTime.class),
+            rs.getObject("return_date", LocalDateTime.class),
+            BorrowingStatus.valueOf(rs.getString("status")));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    BorrowingSearchRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<Borrowing> search(BorrowingCriteria criteria, @Nullable UUID after, int limit) {
+        var where = new StringJoiner(" AND ", " WHERE ", "").setEmptyValue("");
+        var params = new MapSqlParameterSource();
+
+        if (criteria.status() != null) {
+            where.add("status = :status");
+            params.addValue("status", criteria.status().name());
+        }
+        if (criteria.memberId() != null) {
+            where.add("member_id = :memberId");
+            params.addValue("memberId", criteria.memberId());
+        }
+        if (criteria.bookId() != null) {
+            where.add("requested_book_id = :bookId");
+            params.addValue("bookId", criteria.bookId());
+        }
+        if (criteria.borrowedFrom() != null) {
+            where.add("borrow_date >= :borrowedFrom");
+            params.addValue("borrowedFrom", criteria.borrowedFrom());
+        }
+        if (criteria.borrowedTo() != null) {
+            where.add("borrow_date < :borrowedTo");
+            params.addValue("borrowedTo", criteria.borrowedTo());
+        }
+        if (after != null) {
+            where.add("id > :after");
+            params.addValue("after", after);
+        }
+        params.addValue("limit", limit);
+
+        return jdbcTemplate.query(SELECT_BORROWING + where + " ORDER BY id LIMIT :limit", params, BORROWING_ROW_MAPPER);
+    }
+}
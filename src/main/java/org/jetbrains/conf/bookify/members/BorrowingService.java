@@ -3,34 +3,64 @@ package org.jetbrains.conf.bookify.members;
 import org.jetbrains.conf.bookify.config.BookifySettingsConfig;
 import org.jetbrains.conf.bookify.events.BookAvailabilityCheckedEvent;
 import org.jetbrains.conf.bookify.events.BookBorrowRequestEvent;
+import org.jetbrains.conf.bookify.events.BookEventListener;
+import org.jetbrains.conf.bookify.events.BookHandOverDeclinedEvent;
 import org.jetbrains.conf.bookify.events.BookReturnedEvent;
+import org.jetbrains.conf.bookify.events.BookWaitlistedEvent;
+import org.jetbrains.conf.bookify.events.BorrowingsOverdueEvent;
+import org.jetbrains.conf.bookify.events.BorrowingsOverdueEvent.OverdueBorrowing;
+import org.jetbrains.conf.bookify.events.EventBatcher;
+import org.jetbrains.conf.bookify.events.EventBatchingSettings;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationEventPublisher;
-import org.springframework.modulith.events.ApplicationModuleListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Service
-class BorrowingService {
+class BorrowingService implements DisposableBean {
+
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 500;
 
     private final BorrowingRepository borrowingRepository;
     private final MemberService memberService;
     private final ApplicationEventPublisher eventPublisher;
     private final BookifySettingsConfig bookifySettingsConfig;
+    private final BookAvailabilityGate availabilityGate;
+    private final TransactionTemplate transactionTemplate;
+    private final @Nullable EventBatcher<BookAvailabilityCheckedEvent> availabilityBatcher;
 
     /**
      * Create a borrowing request for a member.
      * @param bookId the ID of the book to borrow
      * @param memberId the ID of the member borrowing the book
      * @return the borrowing request if successful, empty otherwise
+     * @throws BookUnavailableException if requests for the book are currently refused
      */
     @Transactional
     Optional<Borrowing> borrowBook(UUID bookId, UUID memberId) {
+        // A repeated request for a book the member is already waiting for keeps its place in the queue
+        Optional<Borrowing> waiting = getActiveBorrowingsForMember(memberId).stream()
+                .filter(b -> b.getRequestedBookId().equals(bookId))
+                .filter(b -> b.getStatus() == BorrowingStatus.PENDING || b.getStatus() == BorrowingStatus.WAITLISTED)
+                .findFirst();
+        if (waiting.isPresent()) {
+            return waiting;
+        }
+        // Turn away requests that are bound to be rejected before writing anything
+        if (!availabilityGate.admits(bookId)) {
+            throw new BookUnavailableException(bookId);
+        }
         if (!isMemberEligibleToBorrow(memberId)) {
             return Optional.empty();
         }
@@ -43,21 +73,60 @@ class BorrowingService {
     /**
      * Event listener for when a book's availability is checked.
      * @param event the book availability checked event
+     * @return completes once the check was applied, which is later than the return when batching is enabled
      */
-    @ApplicationModuleListener
-    void handleBookAvailabilityCheckedEvent(BookAvailabilityCheckedEvent event) {
-        Optional<Borrowing> borrowingOpt = borrowingRepository.findById(event.borrowingId());
-        if (borrowingOpt.isEmpty()) {
-            return;
+    @BookEventListener
+    CompletableFuture<Void> handleBookAvailabilityCheckedEvent(BookAvailabilityCheckedEvent event) {
+        if (availabilityBatcher != null) {
+            return availabilityBatcher.submit(event);
         }
+        applyAvailabilityCheck(event);
+        return CompletableFuture.completedFuture(null);
+    }
 
-        Borrowing borrowing = borrowingOpt.get();
+    /**
+     * Apply a batch of availability checks in one transaction, with one update for the approvals and
+     * one for the rejections. Books handed over to requests that no longer wait for them are passed on.
+     * @param events the availability checks
+     */
+    void handleBookAvailabilityCheckedEvents(List<BookAvailabilityCheckedEvent> events) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<UUID> approved = events.stream()
+                    .filter(BookAvailabilityCheckedEvent::available)
+                    .map(BookAvailabilityCheckedEvent::borrowingId)
+                    .toList();
+            List<UUID> rejected = events.stream()
+                    .filter(event -> !event.available())
+                    .map(BookAvailabilityCheckedEvent::borrowingId)
+                    .toList();
+            if (!approved.isEmpty()) {
+                Set<UUID> applied = new HashSet<>(borrowingRepository.approveWaiting(approved, LocalDateTime.now()));
+                events.stream()
+                        .filter(BookAvailabilityCheckedEvent::available)
+                        .filter(event -> !applied.contains(event.borrowingId()))
+                        .forEach(this::declineHandOver);
+            }
+            if (!rejected.isEmpty()) {
+                borrowingRepository.rejectWaiting(rejected);
+            }
+        });
+    }
 
-        // Check if the borrowing is still pending
-        if (borrowing.getStatus() != BorrowingStatus.PENDING) {
+    private void applyAvailabilityCheck(BookAvailabilityCheckedEvent event) {
+        Optional<Borrowing> borrowingOpt = borrowingRepository.findById(event.borrowingId());
+
+        // Check if the borrowing is still pending or waiting for the book
+        if (borrowingOpt.isEmpty()
+                || borrowingOpt.get().getStatus() != BorrowingStatus.PENDING
+                && borrowingOpt.get().getStatus() != BorrowingStatus.WAITLISTED) {
+            if (event.available()) {
+                declineHandOver(event);
+            }
             return;
         }
 
+        Borrowing borrowing = borrowingOpt.get();
+
         if (event.available()) {
             // Book is available, approve the request
             borrowing.setBorrowDate(LocalDateTime.now());
@@ -71,6 +140,38 @@ class BorrowingService {
         borrowingRepository.save(borrowing);
     }
 
+    /**
+     * Pass a book on that was handed over to a borrowing request that no longer waits for it, so that it does
+     * not stay out without a borrower. A hand-over to a request that is out with that very book is a redelivery
+     * and is ignored; a request that returned the book keeps its book id, but no longer holds it. The books
+     * module ignores the decline of a request it did not hand the book to.
+     * @param event the availability check that handed the book over
+     */
+    private void declineHandOver(BookAvailabilityCheckedEvent event) {
+        boolean holdsBook = borrowingRepository.findById(event.borrowingId())
+                .filter(borrowing -> borrowing.getStatus() == BorrowingStatus.APPROVED
+                        || borrowing.getStatus() == BorrowingStatus.OVERDUE)
+                .map(borrowing -> event.bookId().equals(borrowing.getBookId()))
+                .orElse(false);
+        if (!holdsBook) {
+            eventPublisher.publishEvent(new BookHandOverDeclinedEvent(event.bookId(), event.borrowingId()));
+        }
+    }
+
+    /**
+     * Event listener for when a borrowing request is queued for a book that is out.
+     * @param event the book waitlisted event
+     */
+    @BookEventListener
+    void handleBookWaitlistedEvent(BookWaitlistedEvent event) {
+        borrowingRepository.findById(event.borrowingId())
+                .filter(borrowing -> borrowing.getStatus() == BorrowingStatus.PENDING)
+                .ifPresent(borrowing -> {
+                    borrowing.setStatus(BorrowingStatus.WAITLISTED);
+                    borrowingRepository.save(borrowing);
+                });
+    }
+
     /**
      * Get a borrowing request by ID.
      * @param borrowingId the ID of the borrowing request
@@ -78,7 +179,8 @@ class BorrowingService {
      */
     @Transactional(readOnly = true)
     Optional<Borrowing> getBorrowingById(UUID borrowingId) {
-        return borrowingRepository.findById(borrowingId);
+        return borrowingRepository.findById(borrowingId)
+                .or(() -> borrowingRepository.findArchivedById(borrowingId));
     }
 
     /**
@@ -123,6 +225,75 @@ class BorrowingService {
         return borrowingRepository.findByMemberId(memberId);
     }
 
+    /**
+     * Get a page of the borrowings of a member, ordered by id.
+     * @param memberId the ID of the member
+     * @param after the id to continue after, or {@code null} for the first page
+     * @param size the requested page size, capped at {@value #MAX_PAGE_SIZE}
+     * @return a page of borrowings for the member
+     */
+    @Transactional(readOnly = true)
+    KeysetPage<Borrowing> getBorrowingsForMember(UUID memberId, @Nullable UUID after, int size) {
+        return findBorrowings(BorrowingCriteria.forMember(memberId), after, size);
+    }
+
+    /**
+     * Get a page of borrowings matching the criteria, ordered by id.
+     * @param criteria the filters to apply
+     * @param after the id to continue after, or {@code null} for the first page
+     * @param size the requested page size, capped at {@value #MAX_PAGE_SIZE}
+     * @return a page of matching borrowings
+     */
+    @Transactional(readOnly = true)
+    KeysetPage<Borrowing> findBorrowings(BorrowingCriteria criteria, @Nullable UUID after, int size) {
+        int pageSize = Math.clamp(size, 1, MAX_PAGE_SIZE);
+        List<Borrowing> rows = borrowingRepository.search(criteria, after, pageSize + 1);
+        return KeysetPage.of(rows, pageSize, Borrowing::getId);
+    }
+
+    /**
+     * Get a page of the borrowings that have been marked as overdue.
+     * @param after the id to continue after, or {@code null} for the first page
+     * @param size the requested page size, capped at {@value #MAX_PAGE_SIZE}
+     * @return a page of overdue borrowings
+     */
+    @Transactional(readOnly = true)
+    KeysetPage<Borrowing> getOverdueBorrowings(@Nullable UUID after, int size) {
+        return findBorrowings(BorrowingCriteria.withStatus(BorrowingStatus.OVERDUE), after, size);
+    }
+
+    /**
+     * Mark one chunk of newly overdue borrowings as {@link BorrowingStatus#OVERDUE}
+     * and publish a {@link BorrowingsOverdueEvent} for the chunk.
+     * @param chunkSize the maximum number of borrowings to mark
+     * @return the number of borrowings marked
+     */
+    @Transactional
+    int markOverdueChunk(int chunkSize) {
+        LocalDateTime borrowedBefore = LocalDateTime.now().minusDays(bookifySettingsConfig.getOverdueDays());
+        List<Borrowing> overdue = borrowingRepository.findNewlyOverdue(borrowedBefore, chunkSize);
+        if (overdue.isEmpty()) {
+            return 0;
+        }
+
+        borrowingRepository.markOverdue(overdue.stream().map(Borrowing::getId).toList());
+        eventPublisher.publishEvent(new BorrowingsOverdueEvent(overdue.stream()
+                .map(b -> new OverdueBorrowing(b.getId(), b.getRequestedBookId(), b.getMemberId(), b.getBorrowDate()))
+                .toList()));
+        return overdue.size();
+    }
+
+    /**
+     * Move one batch of borrowings closed longer than the archive horizon into the archive.
+     * @param batchSize the maximum number of borrowings to move
+     * @return the number of borrowings moved
+     */
+    @Transactional
+    int archiveClosedBatch(int batchSize) {
+        LocalDateTime closedBefore = LocalDateTime.now().minusDays(bookifySettingsConfig.getArchiveHorizonDays());
+        return borrowingRepository.archiveClosedBefore(closedBefore, batchSize);
+    }
+
     /**
      * Get all active (not returned) borrowings for a member.
      * @param memberId the ID of the member
@@ -141,8 +312,7 @@ class BorrowingService {
     @Transactional(readOnly = true)
     boolean isMemberEligibleToBorrow(UUID memberId) {
         // Check if member exists and is active
-        Optional<Member> memberOpt = memberService.findById(memberId);
-        if (memberOpt.isEmpty() || !memberOpt.get().isEnabled()) {
+        if (!memberService.isEnabled(memberId)) {
             return false;
         }
 
@@ -156,22 +326,30 @@ class BorrowingService {
         // A book is considered overdue if it has been borrowed for more than 14 days
         LocalDateTime twoWeeksAgo = LocalDateTime.now().minusDays(bookifySettingsConfig.getOverdueDays());
         boolean hasOverdueBooks = activeBorrowings.stream()
-                .anyMatch(b -> b.getBorrowDate().isBefore(twoWeeksAgo));
+                .anyMatch(b -> b.getBorrowDate() != null && b.getBorrowDate().isBefore(twoWeeksAgo));
         return !hasOverdueBooks;
     }
 
-    @Transactional(readOnly = true)
-    public List<Borrowing> findAll() {
-        List<Borrowing> all = new ArrayList<>();
-        borrowingRepository.findAll().forEach(all::add);
-        return all;
-    }
-
-    BorrowingService(BorrowingRepository borrowingRepository, MemberService memberService, ApplicationEventPublisher eventPublisher, BookifySettingsConfig bookifySettingsConfig) {
+    BorrowingService(BorrowingRepository borrowingRepository, MemberService memberService, ApplicationEventPublisher eventPublisher, BookifySettingsConfig bookifySettingsConfig,
+                     BookAvailabilityGate availabilityGate, EventBatchingSettings batchingSettings,
+                     TransactionTemplate transactionTemplate) {
         this.borrowingRepository = borrowingRepository;
         this.memberService = memberService;
         this.eventPublisher = eventPublisher;
         this.bookifySettingsConfig = bookifySettingsConfig;
+        this.availabilityGate = availabilityGate;
+        this.transactionTemplate = transactionTemplate;
+        this.availabilityBatcher = batchingSettings.enabled()
+                ? new EventBatcher<>("borrowing-availability-checks", batchingSettings.maxSize(),
+                        batchingSettings.maxDelay(), this::handleBookAvailabilityCheckedEvents)
+                : null;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (availabilityBatcher != null) {
+            availabilityBatcher.close();
+        }
     }
 
 }
@@ -8,6 +8,11 @@ enum BorrowingStatus {
      * The borrowing request is pending approval.
      */
     PENDING,
+
+    /**
+     * The book is out and the request is queued until it is returned.
+     */
+    WAITLISTED,
     
     /**
      * The borrowing request has been approved.
@@ -19,5 +24,10 @@ enum BorrowingStatus {
      */
     REJECTED,
 
-    RETURNED
+    RETURNED,
+
+    /**
+     * The book was not returned within the allowed number of days.
+     */
+    OVERDUE
 }
\ No newline at end of file
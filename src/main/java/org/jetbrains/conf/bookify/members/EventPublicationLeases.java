@@ -0,0 +1,212 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jetbrains.conf.bookify.config.BookifySettingsConfig;
+import org.jetbrains.conf.bookify.events.LocalEventBacklog;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Shares the incomplete event publications among the nodes running {@link PendingBorrowingRecovery}.
+ *
+ * <p>A node claims a batch of publications with {@code FOR UPDATE SKIP LOCKED}, so concurrent claims
+ * never wait on each other and never hand out the same publication twice. A claim is a lease in
+ * {@code event_publication_lease}: it lasts for the lease time or the retry backoff, whichever is longer,
+ * and is taken over early when its owner stops sending heartbeats to {@code event_publication_node}.
+ * The lease also counts the attempts across nodes, so a publication is dead-lettered after the same
+ * number of attempts no matter which nodes made them. Only resubmissions count as attempts, not claims
+ * whose node went away before it resubmitted anything.</p>
+ *
+ * <p>With its heartbeat, a node reports the oldest event waiting on it from its {@link LocalEventBacklog}.
+ * Publications from that time on may still be waiting there, however old they are, so no node claims them
+ * while that node is alive.</p>
+ */
+@Component
+class EventPublicationLeases implements DisposableBean {
+
+    private static final int MAX_BACKOFF_SECONDS = 3600;
+
+    // A lease can be taken over when it expired or when its owner was not seen alive lately
+    private static final String LEASE_ABANDONED = """
+            (%1$s.leased_until <= now() OR NOT EXISTS (
+                SELECT 1 FROM event_publication_node n
+                WHERE n.owner = %1$s.owner AND n.heartbeat_at > now() - make_interval(secs => :nodeTimeout)))
+            """;
+
+    /**
+     * Whether something published at the given time may still wait on a node that is alive; takes the
+     * {@code :nodeTimeout} and {@code :stuckAfter} parameters. The transaction that published it may have
+     * committed up to the recovery threshold after it was published.
+     */
+    static final String MAYBE_WAITING = """
+            EXISTS (
+                SELECT 1 FROM event_publication_node n
+                WHERE n.oldest_taken_on_at IS NOT NULL
+                  AND n.heartbeat_at > now() - make_interval(secs => :nodeTimeout)
+                  AND %s >= n.oldest_taken_on_at - make_interval(secs => :stuckAfter))
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final BookifySettingsConfig bookifySettingsConfig;
+    private final LocalEventBacklog localEventBacklog;
+    private final String owner;
+
+    @Autowired
+    EventPublicationLeases(NamedParameterJdbcTemplate jdbcTemplate, BookifySettingsConfig bookifySettingsConfig,
+                           LocalEventBacklog localEventBacklog) {
+        this(jdbcTemplate, bookifySettingsConfig, localEventBacklog,
+                ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID());
+    }
+
+    EventPublicationLeases(NamedParameterJdbcTemplate jdbcTemplate, BookifySettingsConfig bookifySettingsConfig,
+                           LocalEventBacklog localEventBacklog, String owner) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bookifySettingsConfig = bookifySettingsConfig;
+        this.localEventBacklog = localEventBacklog;
+        this.owner = owner;
+    }
+
+    /**
+     * The name this node holds its leases under.
+     * @return the owner name
+     */
+    String owner() {
+        return owner;
+    }
+
+    /**
+     * Tell the other nodes this one is alive, which keeps its leases from being taken over, and since when
+     * events wait on it.
+     */
+    @Scheduled(cron = "${bookify.recovery.heartbeat.cron}")
+    void heartbeat() {
+        Instant oldestTakenOnAt = localEventBacklog.oldestTakenOnAt();
+        jdbcTemplate.update("""
+                INSERT INTO event_publication_node (owner, heartbeat_at, oldest_taken_on_at)
+                VALUES (:owner, now(), :oldestTakenOnAt)
+                ON CONFLICT (owner) DO UPDATE SET heartbeat_at = now(), oldest_taken_on_at = EXCLUDED.oldest_taken_on_at
+                """, new MapSqlParameterSource("owner", owner)
+                .addValue("oldestTakenOnAt", oldestTakenOnAt != null ? Timestamp.from(oldestTakenOnAt) : null,
+                        Types.TIMESTAMP));
+    }
+
+    /**
+     * Leave the cluster, so the other nodes take over this node's leases right away.
+     */
+    @Override
+    public void destroy() {
+        jdbcTemplate.update("DELETE FROM event_publication_node WHERE owner = :owner",
+                new MapSqlParameterSource("owner", owner));
+    }
+
+    /**
+     * Claim incomplete publications older than the recovery threshold that nobody holds a lease on, and that
+     * no node may still have waiting.
+     * @param limit the maximum number of publications to claim
+     * @return the ids of the claimed publications
+     */
+    Set<UUID> claim(int limit) {
+        return new HashSet<>(jdbcTemplate.queryForList("""
+                WITH candidates AS (
+                    SELECT p.id
+                    FROM event_publication p
+                    LEFT JOIN event_publication_lease l ON l.publication_id = p.id
+                    WHERE p.completion_date IS NULL
+                      AND p.publication_date < now() - make_interval(secs => :stuckAfter)
+                      AND (l.publication_id IS NULL OR (l.attempts < :maxAttempts AND %s))
+                      AND NOT %s
+                    ORDER BY p.publication_date
+                    LIMIT :limit
+                    FOR UPDATE OF p SKIP LOCKED
+                )
+                INSERT INTO event_publication_lease AS l (publication_id, owner, leased_until, attempts)
+                SELECT id, :owner, now() + make_interval(secs => greatest(:lease, least(:maxBackoff, :backoff))), 0
+                FROM candidates
+                ON CONFLICT (publication_id) DO UPDATE
+                    SET owner = EXCLUDED.owner,
+                        leased_until = now() + make_interval(
+                                secs => greatest(:lease, least(:maxBackoff, :backoff * 2 ^ least(l.attempts, 20))))
+                    WHERE %s
+                RETURNING l.publication_id
+                """.formatted(LEASE_ABANDONED.formatted("l"), MAYBE_WAITING.formatted("p.publication_date"),
+                        LEASE_ABANDONED.formatted("l")),
+                parameters()
+                        .addValue("owner", owner)
+                        .addValue("limit", limit)
+                        .addValue("stuckAfter", bookifySettingsConfig.getRecoveryStuckAfterSeconds())
+                        .addValue("maxAttempts", bookifySettingsConfig.getRecoveryMaxAttempts())
+                        .addValue("lease", bookifySettingsConfig.getRecoveryLeaseSeconds())
+                        .addValue("backoff", bookifySettingsConfig.getRecoveryBackoffSeconds())
+                        .addValue("maxBackoff", MAX_BACKOFF_SECONDS),
+                UUID.class));
+    }
+
+    /**
+     * Count an attempt on publications this node claimed and resubmitted. One that does not complete by the end
+     * of its lease failed it.
+     * @param publicationIds the ids of the resubmitted publications
+     */
+    void attempted(Collection<UUID> publicationIds) {
+        if (publicationIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update("""
+                UPDATE event_publication_lease SET attempts = attempts + 1
+                WHERE publication_id IN (:ids) AND owner = :owner
+                """, new MapSqlParameterSource("ids", publicationIds).addValue("owner", owner));
+    }
+
+    /**
+     * Move the publications whose last attempt ran out without completing them to {@code event_dead_letter}.
+     * @return the number of publications dead-lettered
+     */
+    int deadLetterExhausted() {
+        return jdbcTemplate.update("""
+                WITH exhausted AS (
+                    DELETE FROM event_publication_lease l
+                    WHERE l.attempts >= :maxAttempts AND %s
+                    RETURNING l.publication_id, l.attempts
+                ), moved AS (
+                    DELETE FROM event_publication p
+                    USING exhausted e
+                    WHERE p.id = e.publication_id AND p.completion_date IS NULL
+                    RETURNING p.id, p.listener_id, p.event_type, p.serialized_event, p.publication_date, e.attempts
+                )
+                INSERT INTO event_dead_letter (id, listener_id, event_type, serialized_event, publication_date, attempts)
+                SELECT id, listener_id, event_type, serialized_event, publication_date, attempts FROM moved
+                """.formatted(LEASE_ABANDONED.formatted("l")),
+                parameters().addValue("maxAttempts", bookifySettingsConfig.getRecoveryMaxAttempts()));
+    }
+
+    /**
+     * Drop the leases of publications that completed or are gone, and nodes that have long stopped beating.
+     */
+    void releaseFinished() {
+        jdbcTemplate.update("""
+                DELETE FROM event_publication_lease l
+                WHERE NOT EXISTS (
+                    SELECT 1 FROM event_publication p WHERE p.id = l.publication_id AND p.completion_date IS NULL)
+                """, parameters());
+        jdbcTemplate.update("""
+                DELETE FROM event_publication_node n
+                WHERE n.heartbeat_at < now() - make_interval(secs => 10 * :nodeTimeout)
+                  AND NOT EXISTS (SELECT 1 FROM event_publication_lease l WHERE l.owner = n.owner)
+                """, parameters());
+    }
+
+    private MapSqlParameterSource parameters() {
+        return new MapSqlParameterSource("nodeTimeout", bookifySettingsConfig.getRecoveryNodeTimeoutSeconds());
+    }
+}
@@ -0,0 +1,104 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.PayloadApplicationEvent;
+import org.springframework.context.support.AbstractApplicationContext;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.modulith.events.core.EventSerializer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalApplicationListener;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Resubmits event publications by id, each to the listener it is for.
+ *
+ * <p>Spring Modulith's {@code IncompleteEventPublications} picks the publications to resubmit by a predicate,
+ * after loading every incomplete one; this loads just the rows asked for. Like Modulith's own resubmission, it
+ * hands the event to the transactional listener whose id the publication records, and the registry marks the
+ * publication completed once the listener succeeds.</p>
+ */
+@Component
+class EventPublicationResubmitter {
+
+    private static final Logger log = LoggerFactory.getLogger(EventPublicationResubmitter.class);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final EventSerializer eventSerializer;
+    private final ApplicationContext applicationContext;
+
+    EventPublicationResubmitter(NamedParameterJdbcTemplate jdbcTemplate, EventSerializer eventSerializer,
+                                ApplicationContext applicationContext) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventSerializer = eventSerializer;
+        this.applicationContext = applicationContext;
+    }
+
+    /**
+     * Hand incomplete publications to their listeners once more.
+     * @param publicationIds the ids of the publications
+     * @return the ids of the publications attempted, which leaves out those that completed in the meantime
+     */
+    List<UUID> resubmit(Collection<UUID> publicationIds) {
+        if (publicationIds.isEmpty()) {
+            return List.of();
+        }
+        Map<String, TransactionalApplicationListener<ApplicationEvent>> listeners = listeners();
+        List<UUID> attempted = new ArrayList<>();
+        for (Map<String, Object> publication : jdbcTemplate.queryForList("""
+                SELECT id, listener_id, event_type, serialized_event FROM event_publication
+                WHERE id IN (:ids) AND completion_date IS NULL
+                """, Map.of("ids", publicationIds))) {
+            resubmit(listeners, publication);
+            attempted.add((UUID) publication.get("id"));
+        }
+        return attempted;
+    }
+
+    /**
+     * Hand a publication to its listener. A publication that cannot be handed over counts as attempted all the
+     * same, so that one that never gets through ends up dead-lettered.
+     */
+    private void resubmit(Map<String, TransactionalApplicationListener<ApplicationEvent>> listeners,
+                          Map<String, Object> publication) {
+        String listenerId = (String) publication.get("listener_id");
+        TransactionalApplicationListener<ApplicationEvent> listener = listeners.get(listenerId);
+        if (listener == null) {
+            log.warn("No listener {} for event publication {}", listenerId, publication.get("id"));
+            return;
+        }
+        try {
+            Class<?> type = ClassUtils.forName((String) publication.get("event_type"), applicationContext.getClassLoader());
+            Object event = eventSerializer.deserialize(publication.get("serialized_event"), type);
+            listener.processEvent(event instanceof ApplicationEvent applicationEvent
+                    ? applicationEvent
+                    : new PayloadApplicationEvent<>(this, event));
+        } catch (ClassNotFoundException | LinkageError | RuntimeException e) {
+            log.warn("Resubmitting event publication {} failed", publication.get("id"), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, TransactionalApplicationListener<ApplicationEvent>> listeners() {
+        Map<String, TransactionalApplicationListener<ApplicationEvent>> listeners = new HashMap<>();
+        if (applicationContext instanceof AbstractApplicationContext context) {
+            for (ApplicationListener<?> listener : context.getApplicationListeners()) {
+                if (listener instanceof TransactionalApplicationListener<?> transactional) {
+                    listeners.put(transactional.getListenerId(),
+                            (TransactionalApplicationListener<ApplicationEvent>) transactional);
+                }
+            }
+        }
+        return listeners;
+    }
+}
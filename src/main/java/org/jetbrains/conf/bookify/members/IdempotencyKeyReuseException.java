@@ -0,0 +1,11 @@
+package org.jetbrains.conf.bookify.members;
+
+/**
+ * Thrown when an idempotency key is sent again with a different request than the one it was first used for.
+ */
+class IdempotencyKeyReuseException extends RuntimeException {
+
+    IdempotencyKeyReuseException(String idempotencyKey) {
+        super("Idempotency key " + idempotencyKey + " was already used for a different request");
+    }
+}
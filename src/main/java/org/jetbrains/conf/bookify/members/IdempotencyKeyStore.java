@@ -0,0 +1,182 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jetbrains.conf.bookify.config.BookifySettingsConfig;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Makes borrow and return requests sent with an {@code Idempotency-Key} header safe to retry.
+ *
+ * <p>Keys are chosen by clients, so they are scoped by the member the request is for: two members may use
+ * the same key. The key is claimed in the same transaction as the request itself, so either both the
+ * outcome and the key are stored, or neither is. A retry that races the original request
+ * waits on the key's row until the original commits and then replays its outcome. The table is
+ * shared by all nodes; each node keeps a bounded cache of recent outcomes in front of it.</p>
+ *
+ * <p>A replay answers with the current state of the borrowing the original request produced.</p>
+ */
+@Component
+class IdempotencyKeyStore {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyKeyStore.class);
+
+    /**
+     * The longest key that is accepted, as stored in the {@code idempotency_key} table.
+     */
+    static final int MAX_KEY_LENGTH = 255;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final BorrowingService borrowingService;
+    private final BookifySettingsConfig bookifySettingsConfig;
+    private final Map<String, StoredRequest> recent;
+
+    IdempotencyKeyStore(NamedParameterJdbcTemplate jdbcTemplate, BorrowingService borrowingService,
+                        BookifySettingsConfig bookifySettingsConfig) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.borrowingService = borrowingService;
+        this.bookifySettingsConfig = bookifySettingsConfig;
+        int cacheSize = bookifySettingsConfig.getIdempotencyCacheSize();
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredRequest> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Run a request at most once per member and idempotency key.
+     * @param memberId the ID of the member the request is for
+     * @param idempotencyKey the key sent by the client, at most {@value #MAX_KEY_LENGTH} characters long,
+     *                       or {@code null} to simply run the request
+     * @param request a description of the request that tells apart different requests using the same key
+     * @param operation the request to run
+     * @return the outcome of the request, or of the first request sent with the same key
+     * @throws IdempotencyKeyReuseException if the key was first used for a different request
+     */
+    @Transactional
+    Optional<Borrowing> execute(UUID memberId, @Nullable String idempotencyKey, String request,
+                                Supplier<Optional<Borrowing>> operation) {
+        if (idempotencyKey == null) {
+            return operation.get();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiredBefore = now.minusHours(bookifySettingsConfig.getIdempotencyTtlHours());
+        String cacheKey = memberId + " " + idempotencyKey;
+        StoredRequest cached = cached(cacheKey, expiredBefore);
+        if (cached != null) {
+            return replay(idempotencyKey, request, cached);
+        }
+
+        // Claim the key; an expired key is taken over as if it were new
+        int claimed = jdbcTemplate.update("""
+                INSERT INTO idempotency_key (member_id, idempotency_key, request, created_at)
+                VALUES (:memberId, :key, :request, :now)
+                ON CONFLICT (member_id, idempotency_key) DO UPDATE
+                    SET request = EXCLUDED.request, borrowing_id = NULL, created_at = EXCLUDED.created_at
+                    WHERE idempotency_key.created_at < :expiredBefore
+                """, new MapSqlParameterSource()
+                .addValue("memberId", memberId)
+                .addValue("key", idempotencyKey)
+                .addValue("request", request)
+                .addValue("now", now)
+                .addValue("expiredBefore", expiredBefore));
+        if (claimed == 0) {
+            StoredRequest stored = jdbcTemplate.queryForObject(
+                    """
+                    SELECT request, borrowing_id, created_at FROM idempotency_key
+                    WHERE member_id = :memberId AND idempotency_key = :key
+                    """,
+                    Map.of("memberId", memberId, "key", idempotencyKey),
+                    (rs, rowNum) -> new StoredRequest(
+                            rs.getString("request"),
+                            rs.getObject("borrowing_id", UUID.class),
+                            rs.getObject("created_at", LocalDateTime.class)));
+            remember(cacheKey, stored);
+            return replay(idempotencyKey, request, stored);
+        }
+
+        Optional<Borrowing> result = operation.get();
+        UUID borrowingId = result.map(Borrowing::getId).orElse(null);
+        jdbcTemplate.update("""
+                        UPDATE idempotency_key SET borrowing_id = :borrowingId
+                        WHERE member_id = :memberId AND idempotency_key = :key
+                        """,
+                new MapSqlParameterSource()
+                        .addValue("memberId", memberId)
+                        .addValue("key", idempotencyKey)
+                        .addValue("borrowingId", borrowingId));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                remember(cacheKey, new StoredRequest(request, borrowingId, now));
+            }
+        });
+        return result;
+    }
+
+    @Scheduled(cron = "${bookify.idempotency.purge.cron}")
+    void scheduledPurge() {
+        int purged = purgeExpired();
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    /**
+     * Delete the keys that are older than the configured time to live.
+     * @return the number of keys deleted
+     */
+    @Transactional
+    int purgeExpired() {
+        LocalDateTime expiredBefore = LocalDateTime.now().minusHours(bookifySettingsConfig.getIdempotencyTtlHours());
+        synchronized (recent) {
+            recent.values().removeIf(stored -> stored.createdAt().isBefore(expiredBefore));
+        }
+        return jdbcTemplate.update("DELETE FROM idempotency_key WHERE created_at < :expiredBefore",
+                Map.of("expiredBefore", expiredBefore));
+    }
+
+    private Optional<Borrowing> replay(String idempotencyKey, String request, StoredRequest stored) {
+        if (!stored.request().equals(request)) {
+            throw new IdempotencyKeyReuseException(idempotencyKey);
+        }
+        return stored.borrowingId() == null ? Optional.empty() : borrowingService.getBorrowingById(stored.borrowingId());
+    }
+
+    private @Nullable StoredRequest cached(String cacheKey, LocalDateTime expiredBefore) {
+        synchronized (recent) {
+            StoredRequest stored = recent.get(cacheKey);
+            if (stored != null && stored.createdAt().isBefore(expiredBefore)) {
+                recent.remove(cacheKey);
+                return null;
+            }
+            return stored;
+        }
+    }
+
+    private void remember(String cacheKey, StoredRequest stored) {
+        synchronized (recent) {
+            recent.put(cacheKey, stored);
+        }
+    }
+
+    private record StoredRequest(String request, @Nullable UUID borrowingId, LocalDateTime createdAt) {
+    }
+}
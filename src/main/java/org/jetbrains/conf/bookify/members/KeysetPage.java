@@ -0,0 +1,32 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * A page of results ordered by id, with the key to continue from.
+ *
+ * @param items the results on this page
+ * @param next the id to pass as {@code after} to fetch the following page, or {@code null} on the last page
+ * @param <T> the type of the results
+ */
+record KeysetPage<T>(List<T> items, @Nullable UUID next) {
+
+    /**
+     * Build a page from rows fetched with a limit of one more than the page size.
+     * @param rows the fetched rows, at most {@code size + 1}
+     * @param size the page size
+     * @param key extracts the ordering key of a row
+     * @return the page, with {@code next} set if more rows were fetched than fit on the page
+     */
+    static <T> KeysetPage<T> of(List<T> rows, int size, Function<T, UUID> key) {
+        if (rows.size() <= size) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, size);
+        return new KeysetPage<>(items, key.apply(items.getLast()));
+    }
+}
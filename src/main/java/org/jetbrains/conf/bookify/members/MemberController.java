@@ -1,8 +1,12 @@
 package org.jetbrains.conf.bookify.members;
 
+import org.jspecify.annotations.Nullable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.json.JsonMapper;
 
 import java.util.List;
 import java.util.Optional;
@@ -13,29 +17,55 @@ import java.util.UUID;
 class MemberController {
 
     private final MemberService memberService;
+    private final MemberRegistrar memberRegistrar;
+    private final JsonMapper jsonMapper;
 
-    MemberController(MemberService memberService) {
+    MemberController(MemberService memberService, MemberRegistrar memberRegistrar, JsonMapper jsonMapper) {
         this.memberService = memberService;
+        this.memberRegistrar = memberRegistrar;
+        this.jsonMapper = jsonMapper;
     }
 
     /**
-     * Get all members
-     * @return a list of all members
+     * Get a page of all members
+     * @param after the {@code next} key of the previous page
+     * @param size the page size
+     * @return a page of members
      */
     @GetMapping("")
-    ResponseEntity<List<Member>> getAll() {
-        List<Member> memberList = memberService.findAll();
-        return new ResponseEntity<>(memberList, HttpStatus.OK);
+    KeysetPage<Member> getAll(@RequestParam(required = false) @Nullable UUID after,
+                              @RequestParam(defaultValue = "" + MemberService.DEFAULT_PAGE_SIZE) int size) {
+        return memberService.findAll(after, size);
     }
 
     /**
-     * Get all active members
-     * @return a list of all active members
+     * Count all members
+     * @return the number of members
+     */
+    @GetMapping("/count")
+    MemberCount countAll() {
+        return new MemberCount(memberService.count(false));
+    }
+
+    /**
+     * Get a page of all active members
+     * @param after the {@code next} key of the previous page
+     * @param size the page size
+     * @return a page of active members
      */
     @GetMapping("/active")
-    ResponseEntity<List<Member>> getAllActive() {
-        List<Member> memberList = memberService.findAllActive();
-        return new ResponseEntity<>(memberList, HttpStatus.OK);
+    KeysetPage<Member> getAllActive(@RequestParam(required = false) @Nullable UUID after,
+                                    @RequestParam(defaultValue = "" + MemberService.DEFAULT_PAGE_SIZE) int size) {
+        return memberService.findAllActive(after, size);
+    }
+
+    /**
+     * Count all active members
+     * @return the number of active members
+     */
+    @GetMapping("/active/count")
+    MemberCount countActive() {
+        return new MemberCount(memberService.count(true));
     }
 
     /**
@@ -49,6 +79,24 @@ class MemberController {
         return new ResponseEntity<>(savedMember, HttpStatus.CREATED);
     }
 
+    /**
+     * Register many members at once. The results are streamed back as newline-delimited JSON, one line per
+     * member in request order, as each chunk of members is stored.
+     * @param members the members to add
+     * @return the outcome of registering each member
+     */
+    @PostMapping(path = "/bulk", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    ResponseEntity<StreamingResponseBody> addMembers(@RequestBody List<Member> members) {
+        StreamingResponseBody body = out -> memberRegistrar.register(members, results -> {
+            for (MemberRegistrar.RegistrationResult result : results) {
+                out.write(jsonMapper.writeValueAsBytes(result));
+                out.write('\n');
+            }
+            out.flush();
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     /**
      * Disable a member
      * @param id the id of the member to disable
@@ -63,25 +111,35 @@ class MemberController {
     }
 
     /**
-     * Search for members by name
-     * @param name the name to search for
-     * @return a list of members matching the search criteria
+     * Enable or disable many members at once, such as all members whose membership expires at the end of term.
+     * @param change the status to set, and the ids or email domain of the members to change
+     * @return the number of matched and changed members, or 400 if no members are selected
      */
-    @GetMapping("/search")
-    ResponseEntity<List<Member>> searchMembers(
-            @RequestParam(required = false) String name,
-            @RequestParam(required = false) String email) {
-        
-        List<Member> members;
-        if (name != null && !name.isEmpty()) {
-            members = memberService.searchMembersByName(name);
-        } else if (email != null && !email.isEmpty()) {
-            members = memberService.searchMembersByEmail(email);
-        } else {
-            members = memberService.findAll();
+    @PutMapping("/status")
+    ResponseEntity<MemberStatusChange.Result> changeStatus(@RequestBody MemberStatusChange change) {
+        if (!change.hasCriteria()) {
+            return ResponseEntity.badRequest().build();
         }
-        
-        return new ResponseEntity<>(members, HttpStatus.OK);
+        return ResponseEntity.ok(memberService.changeStatus(change));
+    }
+
+    /**
+     * Search for members matching all the given criteria. A full email address is matched exactly,
+     * anything else as a case-insensitive part of the name or email.
+     * @param name only return members whose name contains this text
+     * @param email only return members with this email address, or whose email contains this text
+     * @param enabled only return enabled or disabled members
+     * @param after the {@code next} key of the previous page
+     * @param size the page size
+     * @return a page of members matching the search criteria
+     */
+    @GetMapping("/search")
+    KeysetPage<Member> searchMembers(@RequestParam(required = false) @Nullable String name,
+                                     @RequestParam(required = false) @Nullable String email,
+                                     @RequestParam(required = false) @Nullable Boolean enabled,
+                                     @RequestParam(required = false) @Nullable UUID after,
+                                     @RequestParam(defaultValue = "" + MemberService.DEFAULT_PAGE_SIZE) int size) {
+        return memberService.searchMembers(new MemberCriteria(name, email, enabled), after, size);
     }
 
     /**
@@ -96,4 +154,11 @@ class MemberController {
                 .map(m -> new ResponseEntity<>(m, HttpStatus.OK))
                 .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
-}
\ No newline at end of file
+
+    /**
+     * The number of members, answered without loading them.
+     * @param count the number of members
+     */
+    record MemberCount(long count) {
+    }
+}
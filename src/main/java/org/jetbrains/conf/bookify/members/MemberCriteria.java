@@ -0,0 +1,24 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Filters for searching members. Criteria that are {@code null} or blank are not applied.
+ *
+ * @param name a part of the name, matched case-insensitively
+ * @param email a part of the email address, or a full address, matched case-insensitively
+ * @param enabled whether the member is enabled
+ */
+record MemberCriteria(@Nullable String name,
+                      @Nullable String email,
+                      @Nullable Boolean enabled) {
+
+    /**
+     * Whether the email criterion is a complete address rather than a part of one. A complete address
+     * is matched exactly, which is answered from the email index instead of a trigram search.
+     * @return {@code true} if the email looks like {@code local@domain.tld}
+     */
+    boolean hasFullEmail() {
+        return email != null && email.matches("[^@\\s]+@[^@\\s]+\\.[^@\\s]+");
+    }
+}
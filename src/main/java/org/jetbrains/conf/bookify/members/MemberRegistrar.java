@@ -0,0 +1,168 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jetbrains.conf.bookify.config.BookifySettingsConfig;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registers members in bulk.
+ *
+ * <p>Password hashing is deliberately slow and bound by the CPU, so it runs on a pool with one platform
+ * thread per core, shared by all bulk registrations. All passwords of a registration are queued for
+ * hashing up front; members are then inserted in input order, one JDBC batch and transaction per chunk,
+ * while the pool keeps hashing the following chunks. The results of each chunk are reported as soon as
+ * it is committed.</p>
+ */
+@Component
+class MemberRegistrar implements DisposableBean {
+
+    private static final String INSERT_MEMBER = """
+            INSERT INTO member (id, name, email, password, enabled)
+            VALUES (:id, :name, :email, :password, :enabled)
+            ON CONFLICT (id) DO NOTHING
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final MemberStatusCache memberStatusCache;
+    private final BookifySettingsConfig bookifySettingsConfig;
+    private final ExecutorService hashingPool;
+
+    MemberRegistrar(NamedParameterJdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                    PasswordEncoder passwordEncoder, MemberStatusCache memberStatusCache,
+                    BookifySettingsConfig bookifySettingsConfig) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.passwordEncoder = passwordEncoder;
+        this.memberStatusCache = memberStatusCache;
+        this.bookifySettingsConfig = bookifySettingsConfig;
+        this.hashingPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                Thread.ofPlatform().name("member-hashing-", 0).daemon().factory());
+    }
+
+    /**
+     * Register members, hashing their passwords.
+     * @param members the members to register, with plain-text passwords
+     * @param chunkResults receives the results of each chunk once it is stored, in input order
+     * @throws IOException if the results cannot be reported; the chunks stored so far stay registered
+     */
+    void register(List<Member> members, ChunkResults chunkResults) throws IOException {
+        List<CompletableFuture<Member>> hashed = members.stream()
+                .map(member -> CompletableFuture.supplyAsync(() -> withHashedPassword(member), hashingPool))
+                .toList();
+        int batchSize = Math.max(1, bookifySettingsConfig.getMembersBulkBatchSize());
+        try {
+            for (int from = 0; from < hashed.size(); from += batchSize) {
+                chunkResults.accept(store(hashed, from, Math.min(from + batchSize, hashed.size())));
+            }
+        } finally {
+            // Nobody is waiting for the rest anymore if the results could not be reported
+            hashed.forEach(future -> future.cancel(false));
+        }
+    }
+
+    private List<RegistrationResult> store(List<CompletableFuture<Member>> hashed, int from, int to) {
+        List<RegistrationResult> results = new ArrayList<>(to - from);
+        List<Member> ready = new ArrayList<>(to - from);
+        List<Integer> readyIndexes = new ArrayList<>(to - from);
+        for (int index = from; index < to; index++) {
+            try {
+                ready.add(hashed.get(index).join());
+                readyIndexes.add(index);
+            } catch (CompletionException e) {
+                results.add(RegistrationResult.failed(index, failureMessage(e.getCause())));
+            }
+        }
+
+        int[] inserted = transactionTemplate.execute(status -> {
+            int[] counts = jdbcTemplate.batchUpdate(INSERT_MEMBER, ready.stream()
+                    .map(member -> new MapSqlParameterSource()
+                            .addValue("id", member.getId())
+                            .addValue("name", member.getName())
+                            .addValue("email", member.getEmail())
+                            .addValue("password", member.getPassword())
+                            .addValue("enabled", member.isEnabled()))
+                    .toArray(SqlParameterSource[]::new));
+            memberStatusCache.invalidate(ready.stream().map(Member::getId).toList());
+            return counts;
+        });
+        for (int i = 0; i < ready.size(); i++) {
+            results.add(inserted[i] == 0
+                    ? RegistrationResult.duplicate(readyIndexes.get(i), ready.get(i).getId())
+                    : RegistrationResult.created(readyIndexes.get(i), ready.get(i).getId()));
+        }
+        results.sort((a, b) -> Integer.compare(a.index(), b.index()));
+        return results;
+    }
+
+    /**
+     * Why hashing a password failed, falling back to the type of the failure when it has no message.
+     */
+    private static String failureMessage(@Nullable Throwable failure) {
+        if (failure == null) {
+            return "Registration failed";
+        }
+        return failure.getMessage() != null ? failure.getMessage() : failure.getClass().getName();
+    }
+
+    private Member withHashedPassword(Member member) {
+        if (member.getPassword() != null) {
+            member.setPassword(passwordEncoder.encode(member.getPassword()));
+        }
+        return member;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        hashingPool.shutdownNow();
+        hashingPool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Receives the results of a chunk of a bulk registration.
+     */
+    @FunctionalInterface
+    interface ChunkResults {
+        void accept(List<RegistrationResult> results) throws IOException;
+    }
+
+    /**
+     * The outcome of registering one member of a bulk registration.
+     *
+     * @param index the position of the member in the request
+     * @param id the ID of the member, unless registration failed before it was stored
+     * @param status {@code CREATED}, {@code DUPLICATE} if a member with the same ID exists, or {@code FAILED}
+     * @param error why registration failed
+     */
+    record RegistrationResult(int index, @Nullable UUID id, String status, @Nullable String error) {
+
+        static RegistrationResult created(int index, UUID id) {
+            return new RegistrationResult(index, id, "CREATED", null);
+        }
+
+        static RegistrationResult duplicate(int index, UUID id) {
+            return new RegistrationResult(index, id, "DUPLICATE", null);
+        }
+
+        static RegistrationResult failed(int index, String error) {
+            return new RegistrationResult(index, null, "FAILED", error);
+        }
+    }
+}
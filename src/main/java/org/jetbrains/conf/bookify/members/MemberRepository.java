@@ -1,15 +1,19 @@
 package org.jetbrains.conf.bookify.members;
 
+import org.springframework.data.jdbc.repository.query.Query;
 import org.springframework.data.repository.CrudRepository;
 
-import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
-interface MemberRepository extends CrudRepository<Member, UUID> {
+interface MemberRepository extends CrudRepository<Member, UUID>, MemberSearchRepository,
+        MemberStatusRepository {
 
-    List<Member> findByNameContainingIgnoreCase(String name);
-
-    List<Member> findByEmailContainingIgnoreCase(String email);
-
-    List<Member> findByEnabled(boolean enabled);
-}
\ No newline at end of file
+    /**
+     * Read only whether a member is enabled.
+     * @param id the ID of the member
+     * @return the enabled flag, empty if the member does not exist
+     */
+    @Query("SELECT enabled FROM member WHERE id = :id")
+    Optional<Boolean> findEnabledById(UUID id);
+}
@@ -0,0 +1,28 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keyset-paginated, filterable access to members.
+ */
+interface MemberSearchRepository {
+
+    /**
+     * Find members matching the criteria, ordered by id.
+     * @param criteria the filters to apply
+     * @param after only return members with an id greater than this one, if set
+     * @param limit the maximum number of members to return
+     * @return the matching members
+     */
+    List<Member> search(MemberCriteria criteria, @Nullable UUID after, int limit);
+
+    /**
+     * Count the members matching the criteria, without reading them.
+     * @param criteria the filters to apply
+     * @return the number of matching members
+     */
+    long count(MemberCriteria criteria);
+}
@@ -0,0 +1,97 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.UUID;
+
+/**
+ * Builds the member search query from the criteria that are actually set, so that each combination
+ * is planned against the matching index rather than a catch-all predicate.
+ *
+ * <p>Parts of names and email addresses are matched with {@code LIKE '%...%'} on the lower-cased
+ * column, which the trigram indexes answer for parts of three characters or more. A full email address
+ * is matched by equality instead, which is a single lookup in the lower-cased email index. Listings and
+ * counts of enabled members read the partial index on their ids.</p>
+ */
+class MemberSearchRepositoryImpl implements MemberSearchRepository {
+
+    static final String SELECT_MEMBER = "SELECT id, name, email, password, enabled FROM member";
+
+    static final RowMapper<Member> MEMBER_ROW_MAPPER = (rs, rowNum) -> new Member(
+            rs.getObject("id", UUID.class),
+            rs.getString("name"),
+            rs.getString("email"),
+            rs.getString("password"),
+            rs.getBoolean("enabled"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    MemberSearchRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<Member> search(MemberCriteria criteria, @Nullable UUID after, int limit) {
+        var where = new StringJoiner(" AND ", " WHERE ", "").setEmptyValue("");
+        var params = new MapSqlParameterSource();
+        applyCriteria(criteria, where, params);
+        if (after != null) {
+            where.add("id > :after");
+            params.addValue("after", after);
+        }
+        params.addValue("limit", limit);
+
+        return jdbcTemplate.query(SELECT_MEMBER + where + " ORDER BY id LIMIT :limit", params, MEMBER_ROW_MAPPER);
+    }
+
+    @Override
+    public long count(MemberCriteria criteria) {
+        var where = new StringJoiner(" AND ", " WHERE ", "").setEmptyValue("");
+        var params = new MapSqlParameterSource();
+        applyCriteria(criteria, where, params);
+
+        Long count = jdbcTemplate.queryForObject("SELECT count(*) FROM member" + where, params, Long.class);
+        return count == null ? 0 : count;
+    }
+
+    private static void applyCriteria(MemberCriteria criteria, StringJoiner where, MapSqlParameterSource params) {
+        if (criteria.name() != null && !criteria.name().isBlank()) {
+            where.add("lower(name) LIKE :name ESCAPE '\\'");
+            params.addValue("name", contains(criteria.name()));
+        }
+        if (criteria.hasFullEmail()) {
+            where.add("lower(email) = :email");
+            params.addValue("email", criteria.email().trim().toLowerCase(Locale.ROOT));
+        } else if (criteria.email() != null && !criteria.email().isBlank()) {
+            where.add("lower(email) LIKE :email ESCAPE '\\'");
+            params.addValue("email", contains(criteria.email()));
+        }
+        if (criteria.enabled() != null) {
+            // Inlined rather than bound, so that generic plans of the prepared statement can still prove
+            // the predicate of the partial index on enabled members
+            where.add(criteria.enabled() ? "enabled" : "NOT enabled");
+        }
+    }
+
+    /**
+     * A {@code LIKE} pattern matching the lower-cased text anywhere, with its wildcards taken literally.
+     */
+    static String contains(String text) {
+        return "%" + literal(text.trim().toLowerCase(Locale.ROOT)) + "%";
+    }
+
+    /**
+     * Escape the {@code LIKE} wildcards in a text, for patterns using {@code ESCAPE '\'}.
+     */
+    static String literal(String text) {
+        return text.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+}
@@ -1,9 +1,10 @@
 package org.jetbrains.conf.bookify.members;
 
+import org.jspecify.annotations.Nullable;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -11,20 +12,33 @@ import java.util.UUID;
 @Service
 class MemberService {
 
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 500;
+
     private final MemberRepository memberRepository;
+    private final MemberStatusCache memberStatusCache;
+    private final PasswordEncoder passwordEncoder;
 
-    MemberService(MemberRepository memberRepository) {
+    MemberService(MemberRepository memberRepository, MemberStatusCache memberStatusCache,
+                  PasswordEncoder passwordEncoder) {
         this.memberRepository = memberRepository;
+        this.memberStatusCache = memberStatusCache;
+        this.passwordEncoder = passwordEncoder;
     }
 
     /**
-     * Add a new member
-     * @param member the member to add
+     * Add a new member, storing a hash of its password
+     * @param member the member to add, with a plain-text password
      * @return the saved member
      */
     @Transactional
     Member addMember(Member member) {
-        return memberRepository.save(member);
+        if (member.getPassword() != null) {
+            member.setPassword(passwordEncoder.encode(member.getPassword()));
+        }
+        Member savedMember = memberRepository.save(member);
+        memberStatusCache.invalidate(List.of(savedMember.getId()));
+        return savedMember;
     }
 
     /**
@@ -38,49 +52,80 @@ class MemberService {
         if (memberOpt.isPresent()) {
             Member member = memberOpt.get();
             member.setEnabled(false);
-            return Optional.of(memberRepository.save(member));
+            Member savedMember = memberRepository.save(member);
+            memberStatusCache.invalidate(List.of(id));
+            return Optional.of(savedMember);
         }
         return Optional.empty();
     }
 
     /**
-     * Search for members by name
-     * @param name the name to search for
-     * @return a list of members matching the search criteria
+     * Enable or disable all members matching the criteria at once.
+     * @param change the criteria and the status to set
+     * @return the number of matched and changed members
+     */
+    @Transactional
+    MemberStatusChange.Result changeStatus(MemberStatusChange change) {
+        MemberStatusChange.Result result = memberRepository.changeStatus(change);
+        if (result.changed() > 0) {
+            memberStatusCache.invalidateAll();
+        }
+        return result;
+    }
+
+    /**
+     * Search for members matching all the given criteria.
+     * @param criteria the filters to apply
+     * @param after the {@code next} key of the previous page, if any
+     * @param size the requested page size, capped at {@value #MAX_PAGE_SIZE}
+     * @return a page of matching members ordered by id
      */
     @Transactional(readOnly = true)
-    List<Member> searchMembersByName(String name) {
-        return memberRepository.findByNameContainingIgnoreCase(name);
+    KeysetPage<Member> searchMembers(MemberCriteria criteria, @Nullable UUID after, int size) {
+        int pageSize = Math.clamp(size, 1, MAX_PAGE_SIZE);
+        List<Member> rows = memberRepository.search(criteria, after, pageSize + 1);
+        return KeysetPage.of(rows, pageSize, Member::getId);
     }
 
     /**
-     * Search for members by email
-     * @param email the email to search for
-     * @return a list of members matching the search criteria
+     * Get a page of all members
+     * @param after the {@code next} key of the previous page, if any
+     * @param size the requested page size, capped at {@value #MAX_PAGE_SIZE}
+     * @return a page of members ordered by id
      */
     @Transactional(readOnly = true)
-    List<Member> searchMembersByEmail(String email) {
-        return memberRepository.findByEmailContainingIgnoreCase(email);
+    KeysetPage<Member> findAll(@Nullable UUID after, int size) {
+        return searchMembers(new MemberCriteria(null, null, null), after, size);
     }
 
     /**
-     * Get all members
-     * @return a list of all members
+     * Get a page of all active members
+     * @param after the {@code next} key of the previous page, if any
+     * @param size the requested page size, capped at {@value #MAX_PAGE_SIZE}
+     * @return a page of active members ordered by id
      */
     @Transactional(readOnly = true)
-    List<Member> findAll() {
-        List<Member> members = new ArrayList<>();
-        memberRepository.findAll().forEach(members::add);
-        return members;
+    KeysetPage<Member> findAllActive(@Nullable UUID after, int size) {
+        return searchMembers(new MemberCriteria(null, null, true), after, size);
     }
 
     /**
-     * Get all active members
-     * @return a list of all active members
+     * Count members without loading them
+     * @param activeOnly whether to count only active members
+     * @return the number of members
      */
     @Transactional(readOnly = true)
-    List<Member> findAllActive() {
-        return memberRepository.findByEnabled(true);
+    long count(boolean activeOnly) {
+        return memberRepository.count(new MemberCriteria(null, null, activeOnly ? true : null));
+    }
+
+    /**
+     * Check whether a member exists and is enabled, from the member cache when possible.
+     * @param id the id of the member
+     * @return {@code true} if the member exists and is enabled
+     */
+    boolean isEnabled(UUID id) {
+        return memberStatusCache.isEnabled(id, memberId -> memberRepository.findEnabledById(memberId).orElse(null));
     }
 
     /**
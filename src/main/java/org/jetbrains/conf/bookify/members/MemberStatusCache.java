@@ -0,0 +1,140 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jetbrains.conf.bookify.config.BookifySettingsConfig;
+import org.jspecify.annotations.Nullable;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of whether members are enabled, in front of the member lookup on the borrowing path.
+ *
+ * <p>A change to a member is recorded in {@code member_invalidation} in the transaction that makes it, and
+ * evicted from this node's cache once that transaction commits. Every node polls the table and evicts the
+ * members changed since its last poll, so a change takes effect on all nodes within one poll interval.
+ * Entries also expire after a time to live, which bounds how stale a node can get if it cannot poll.</p>
+ */
+@Component
+class MemberStatusCache {
+
+    // Invalidations are stamped when their transaction starts, so polls look back over the ones that
+    // may have committed since the previous poll
+    private static final int POLL_OVERLAP_SECONDS = 30;
+    private static final int RETENTION_SECONDS = 3600;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final BookifySettingsConfig bookifySettingsConfig;
+    private final Map<UUID, Entry> entries;
+    private long generation;
+    private @Nullable OffsetDateTime lastPoll;
+
+    MemberStatusCache(NamedParameterJdbcTemplate jdbcTemplate, BookifySettingsConfig bookifySettingsConfig) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bookifySettingsConfig = bookifySettingsConfig;
+        int maxEntries = bookifySettingsConfig.getMembersCacheMaxEntries();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Tell whether a member is enabled, looking it up on a miss.
+     * @param memberId the ID of the member
+     * @param lookup reads the enabled flag of a member, empty if the member does not exist
+     * @return whether the member exists and is enabled
+     */
+    boolean isEnabled(UUID memberId, Function<UUID, @Nullable Boolean> lookup) {
+        long loadedAt;
+        synchronized (entries) {
+            Entry entry = entries.get(memberId);
+            if (entry != null && System.nanoTime() - entry.expiresAt() < 0) {
+                return entry.enabled();
+            }
+            loadedAt = generation;
+        }
+        Boolean enabled = lookup.apply(memberId);
+        if (enabled == null) {
+            return false;
+        }
+        synchronized (entries) {
+            // An eviction during the lookup may concern this member, whose value could then be stale
+            if (generation == loadedAt) {
+                entries.put(memberId, new Entry(enabled,
+                        System.nanoTime() + bookifySettingsConfig.getMembersCacheTtlSeconds() * 1_000_000_000L));
+            }
+        }
+        return enabled;
+    }
+
+    /**
+     * Record that members changed in the current transaction, evicting them on every node once it commits.
+     * @param memberIds the IDs of the changed members
+     */
+    void invalidate(List<UUID> memberIds) {
+        if (memberIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO member_invalidation (member_id) VALUES (:memberId)",
+                memberIds.stream()
+                        .map(memberId -> new MapSqlParameterSource("memberId", memberId))
+                        .toArray(SqlParameterSource[]::new));
+        AfterCommit.run(() -> evict(memberIds));
+    }
+
+    /**
+     * Clear this node's cache once the current transaction commits. For changes made by a set-based statement
+     * that records the changed members in {@code member_invalidation} itself, so the other nodes evict them.
+     */
+    void invalidateAll() {
+        AfterCommit.run(() -> {
+            synchronized (entries) {
+                generation++;
+                entries.clear();
+            }
+        });
+    }
+
+    /**
+     * Evict the members that were changed on any node since the previous poll, and forget old invalidations.
+     */
+    @Scheduled(cron = "${bookify.members.cache.poll.cron}")
+    void poll() {
+        OffsetDateTime now = jdbcTemplate.getJdbcTemplate().queryForObject("SELECT clock_timestamp()", OffsetDateTime.class);
+        // The first poll cannot tell what was cached before it, so it goes over every retained invalidation
+        OffsetDateTime since = lastPoll != null
+                ? lastPoll.minusSeconds(POLL_OVERLAP_SECONDS)
+                : now.minusSeconds(RETENTION_SECONDS);
+        List<UUID> changed = jdbcTemplate.queryForList(
+                "SELECT DISTINCT member_id FROM member_invalidation WHERE invalidated_at >= :since",
+                new MapSqlParameterSource("since", since), UUID.class);
+        evict(changed);
+        lastPoll = now;
+        jdbcTemplate.update("DELETE FROM member_invalidation WHERE invalidated_at < :before",
+                new MapSqlParameterSource("before", now.minusSeconds(RETENTION_SECONDS)));
+    }
+
+    private void evict(List<UUID> memberIds) {
+        if (memberIds.isEmpty()) {
+            return;
+        }
+        synchronized (entries) {
+            generation++;
+            memberIds.forEach(entries::remove);
+        }
+    }
+
+    private record Entry(boolean enabled, long expiresAt) {
+    }
+}
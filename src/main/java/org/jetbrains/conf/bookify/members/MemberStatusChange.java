@@ -0,0 +1,52 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * A change of the status of many members at once. The members must match all the criteria that are set.
+ *
+ * @param enabled the status to set
+ * @param ids the IDs of the members to change
+ * @param emailDomain the domain of the email addresses of the members to change, such as {@code example.com}
+ *                    or {@code @example.com}
+ */
+record MemberStatusChange(boolean enabled,
+                          @Nullable List<UUID> ids,
+                          @Nullable String emailDomain) {
+
+    /**
+     * Whether any criterion is set. A change without one would apply to every member, which is refused.
+     * @return {@code true} if the change selects members
+     */
+    boolean hasCriteria() {
+        return ids != null || normalizedEmailDomain() != null;
+    }
+
+    /**
+     * The email domain to match, without a leading {@code @}, in lower case.
+     * @return the domain, {@code null} if none is set
+     */
+    @Nullable String normalizedEmailDomain() {
+        if (emailDomain == null) {
+            return null;
+        }
+        String domain = emailDomain.trim();
+        if (domain.startsWith("@")) {
+            domain = domain.substring(1).trim();
+        }
+        return domain.isEmpty() ? null : domain.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The outcome of a status change.
+     *
+     * @param matched the number of members matching the criteria
+     * @param changed the number of those whose status actually changed
+     */
+    record Result(int matched, int changed) {
+    }
+}
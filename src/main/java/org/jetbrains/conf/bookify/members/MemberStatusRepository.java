@@ -0,0 +1,15 @@
+package org.jetbrains.conf.bookify.members;
+
+/**
+ * Set-based changes of the status of members.
+ */
+interface MemberStatusRepository {
+
+    /**
+     * Set the status of all members matching the criteria in a single statement, and record the members
+     * whose status changed in {@code member_invalidation}.
+     * @param change the criteria and the status to set
+     * @return the number of matched and changed members
+     */
+    MemberStatusChange.Result changeStatus(MemberStatusChange change);
+}
@@ -0,0 +1,55 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.StringJoiner;
+
+/**
+ * Changes the status of members with one {@code UPDATE}. Members that already have the requested status are
+ * left alone, so they are neither rewritten nor evicted from the member caches.
+ */
+class MemberStatusRepositoryImpl implements MemberStatusRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    MemberStatusRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public MemberStatusChange.Result changeStatus(MemberStatusChange change) {
+        if (!change.hasCriteria()) {
+            throw new IllegalArgumentException("A status change needs ids or an email domain");
+        }
+        var where = new StringJoiner(" AND ");
+        var params = new MapSqlParameterSource("enabled", change.enabled());
+
+        if (change.ids() != null) {
+            if (change.ids().isEmpty()) {
+                return new MemberStatusChange.Result(0, 0);
+            }
+            where.add("id IN (:ids)");
+            params.addValue("ids", change.ids());
+        }
+        String emailDomain = change.normalizedEmailDomain();
+        if (emailDomain != null) {
+            where.add("lower(email) LIKE :emailDomain ESCAPE '\\'");
+            params.addValue("emailDomain", "%@" + MemberSearchRepositoryImpl.literal(emailDomain));
+        }
+
+        return jdbcTemplate.queryForObject("""
+                WITH matched AS (
+                    SELECT count(*) AS matched FROM member WHERE %1$s
+                ), changed AS (
+                    UPDATE member SET enabled = :enabled
+                    WHERE %1$s AND enabled IS DISTINCT FROM :enabled
+                    RETURNING id
+                ), invalidated AS (
+                    INSERT INTO member_invalidation (member_id) SELECT id FROM changed
+                )
+                SELECT matched.matched, (SELECT count(*) FROM changed) AS changed FROM matched
+                """.formatted(where), params,
+                (rs, rowNum) -> new MemberStatusChange.Result(rs.getInt("matched"), rs.getInt("changed")));
+    }
+}
@@ -0,0 +1,50 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jetbrains.conf.bookify.config.BookifySettingsConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Background job that materializes the {@link BorrowingStatus#OVERDUE} status.
+ *
+ * <p>Each chunk is marked in its own short transaction, so a large backlog never holds
+ * locks on more than one chunk of borrowings at a time.</p>
+ */
+@Component
+class OverdueBorrowingScanner {
+
+    private static final Logger log = LoggerFactory.getLogger(OverdueBorrowingScanner.class);
+
+    private final BorrowingService borrowingService;
+    private final BookifySettingsConfig bookifySettingsConfig;
+
+    OverdueBorrowingScanner(BorrowingService borrowingService, BookifySettingsConfig bookifySettingsConfig) {
+        this.borrowingService = borrowingService;
+        this.bookifySettingsConfig = bookifySettingsConfig;
+    }
+
+    @Scheduled(cron = "${bookify.overdue.scan.cron}")
+    void scheduledScan() {
+        int marked = scan();
+        if (marked > 0) {
+            log.info("Marked {} borrowings as overdue", marked);
+        }
+    }
+
+    /**
+     * Mark all newly overdue borrowings, chunk by chunk.
+     * @return the number of borrowings marked
+     */
+    int scan() {
+        int chunkSize = bookifySettingsConfig.getOverdueScanChunkSize();
+        int total = 0;
+        int marked;
+        do {
+            marked = borrowingService.markOverdueChunk(chunkSize);
+            total += marked;
+        } while (marked == chunkSize);
+        return total;
+    }
+}
@@ -0,0 +1,187 @@
+package org.jetbrains.conf.bookify.members;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jetbrains.conf.bookify.config.BookifySettingsConfig;
+import org.jetbrains.conf.bookify.events.BookBorrowRequestEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background job that gets borrowings stuck in {@link BorrowingStatus#PENDING} moving again.
+ *
+ * <p>A borrowing stays pending when the application stops between {@code borrowBook} and the two
+ * listener hops that approve or reject it. The event publication registry keeps the unfinished hops
+ * as incomplete publications; this job resubmits those older than a threshold, unless a node that is
+ * alive may still have them waiting. Each run claims at most one batch through the
+ * {@link EventPublicationLeases} and loads only that batch, which bounds the number of listeners it
+ * sets off at once and lets every node of a cluster work on a different batch. A publication that
+ * failed is retried with exponential backoff and, after the last attempt, moved to
+ * {@code event_dead_letter}.</p>
+ *
+ * <p>A borrowing can also stay pending with no publication left to resubmit, such as when the answer
+ * to it was dead-lettered. Borrowings pending for longer than the threshold are requested from the
+ * books module again, at most one batch per run and once per threshold each; the books module answers
+ * a request it already handled with the outcome it got.</p>
+ *
+ * <p>The size and age of the backlog are published as metrics, so that alerts can fire before it
+ * piles up.</p>
+ */
+@Component
+class PendingBorrowingRecovery {
+
+    private static final Logger log = LoggerFactory.getLogger(PendingBorrowingRecovery.class);
+
+    private final EventPublicationLeases leases;
+    private final EventPublicationResubmitter resubmitter;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BookifySettingsConfig bookifySettingsConfig;
+
+    private final AtomicLong backlogSize = new AtomicLong();
+    private final AtomicLong backlogAgeSeconds = new AtomicLong();
+    private final AtomicLong stuckBorrowings = new AtomicLong();
+    private final AtomicLong stuckBorrowingsAgeSeconds = new AtomicLong();
+    private final Counter resubmitted;
+    private final Counter deadLettered;
+    private final Counter borrowingsResubmitted;
+
+    PendingBorrowingRecovery(EventPublicationLeases leases, EventPublicationResubmitter resubmitter,
+                             NamedParameterJdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                             ApplicationEventPublisher eventPublisher, BookifySettingsConfig bookifySettingsConfig,
+                             MeterRegistry meterRegistry) {
+        this.leases = leases;
+        this.resubmitter = resubmitter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.bookifySettingsConfig = bookifySettingsConfig;
+
+        Gauge.builder("bookify.events.backlog.size", backlogSize, AtomicLong::get)
+                .description("Event publications that are not completed yet")
+                .register(meterRegistry);
+        Gauge.builder("bookify.events.backlog.age", backlogAgeSeconds, AtomicLong::get)
+                .description("Age of the oldest event publication that is not completed yet")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("bookify.borrowings.stuck.size", stuckBorrowings, AtomicLong::get)
+                .description("Borrowings pending for longer than the recovery threshold")
+                .register(meterRegistry);
+        Gauge.builder("bookify.borrowings.stuck.age", stuckBorrowingsAgeSeconds, AtomicLong::get)
+                .description("Age of the oldest pending borrowing")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.resubmitted = Counter.builder("bookify.events.resubmitted")
+                .description("Event publications resubmitted by the recovery job")
+                .register(meterRegistry);
+        this.deadLettered = Counter.builder("bookify.events.dead-lettered")
+                .description("Event publications given up on after the last resubmission attempt")
+                .register(meterRegistry);
+        this.borrowingsResubmitted = Counter.builder("bookify.borrowings.resubmitted")
+                .description("Borrowings stuck in PENDING requested from the books module again")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${bookify.recovery.cron}")
+    void scheduledRecover() {
+        int resubmittedNow = recover();
+        if (resubmittedNow > 0) {
+            log.info("Resubmitted {} incomplete event publications", resubmittedNow);
+        }
+        int borrowingsNow = resubmitStuckBorrowings();
+        if (borrowingsNow > 0) {
+            log.info("Requested {} borrowings stuck in PENDING again", borrowingsNow);
+        }
+    }
+
+    /**
+     * Refresh the backlog metrics, dead-letter the publications that ran out of attempts and
+     * resubmit one batch of the stuck ones claimed by this node.
+     * @return the number of publications resubmitted
+     */
+    int recover() {
+        leases.heartbeat();
+        refreshMetrics();
+        leases.releaseFinished();
+        int deadLetteredNow = leases.deadLetterExhausted();
+        if (deadLetteredNow > 0) {
+            deadLettered.increment(deadLetteredNow);
+            log.warn("Gave up on {} event publications after {} attempts", deadLetteredNow,
+                    bookifySettingsConfig.getRecoveryMaxAttempts());
+        }
+
+        Set<UUID> claimed = leases.claim(bookifySettingsConfig.getRecoveryBatchSize());
+        List<UUID> attempted = resubmitter.resubmit(claimed);
+        leases.attempted(attempted);
+        resubmitted.increment(attempted.size());
+        return attempted.size();
+    }
+
+    /**
+     * Request one batch of the borrowings stuck in {@link BorrowingStatus#PENDING} from the books module again.
+     * Rows are locked while they are picked, so that nodes running this at once pick different ones.
+     * @return the number of borrowings requested again
+     */
+    int resubmitStuckBorrowings() {
+        return Objects.requireNonNull(transactionTemplate.execute(status -> {
+            List<Map<String, Object>> stuck = jdbcTemplate.queryForList("""
+                    UPDATE borrowing SET resubmitted_at = now()
+                    WHERE id IN (
+                        SELECT b.id FROM borrowing b
+                        WHERE b.status = 'PENDING'
+                          AND b.requested_at < now() - make_interval(secs => :stuckAfter)
+                          AND (b.resubmitted_at IS NULL OR b.resubmitted_at < now() - make_interval(secs => :stuckAfter))
+                          AND NOT %s
+                        ORDER BY b.requested_at
+                        LIMIT :limit
+                        FOR UPDATE SKIP LOCKED)
+                    RETURNING id, requested_book_id
+                    """.formatted(EventPublicationLeases.MAYBE_WAITING.formatted("b.requested_at")),
+                    new MapSqlParameterSource()
+                            .addValue("stuckAfter", bookifySettingsConfig.getRecoveryStuckAfterSeconds())
+                            .addValue("nodeTimeout", bookifySettingsConfig.getRecoveryNodeTimeoutSeconds())
+                            .addValue("limit", bookifySettingsConfig.getRecoveryBatchSize()));
+            for (Map<String, Object> borrowing : stuck) {
+                eventPublisher.publishEvent(new BookBorrowRequestEvent(
+                        (UUID) borrowing.get("requested_book_id"), (UUID) borrowing.get("id")));
+            }
+            borrowingsResubmitted.increment(stuck.size());
+            return stuck.size();
+        }));
+    }
+
+    private void refreshMetrics() {
+        jdbcTemplate.query("""
+                SELECT count(*) AS size, COALESCE(EXTRACT(EPOCH FROM now() - min(publication_date)), 0) AS age
+                FROM event_publication
+                WHERE completion_date IS NULL
+                """, rs -> {
+            backlogSize.set(rs.getLong("size"));
+            backlogAgeSeconds.set(rs.getLong("age"));
+        });
+        jdbcTemplate.query("""
+                SELECT count(*) FILTER (WHERE requested_at < now() - make_interval(secs => :stuckAfter)) AS size,
+                       COALESCE(EXTRACT(EPOCH FROM now() - min(requested_at)), 0) AS age
+                FROM borrowing
+                WHERE status = 'PENDING'
+                """, Map.of("stuckAfter", bookifySettingsConfig.getRecoveryStuckAfterSeconds()), rs -> {
+            stuckBorrowings.set(rs.getLong("size"));
+            stuckBorrowingsAgeSeconds.set(rs.getLong("age"));
+        });
+    }
+}
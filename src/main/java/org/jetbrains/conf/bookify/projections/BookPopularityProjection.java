@@ -0,0 +1,123 @@
+package org.jetbrains.conf.bookify.projections;
+
+import org.jetbrains.conf.bookify.events.BookAvailabilityCheckedEvent;
+import org.jetbrains.conf.bookify.events.BookEvent;
+import org.jetbrains.conf.bookify.events.BookHandOverDeclinedEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the approved borrowings of every book.
+ *
+ * <p>A borrowing counts once, however often its hand-over is delivered: the borrowings counted are kept in
+ * {@code book_popularity_borrowing}. A hand-over the borrowing declined, because it no longer waited for
+ * the book, is taken back out, and keeps a hand-over that arrives after the decline from counting.</p>
+ */
+@Component
+class BookPopularityProjection implements Projection {
+
+    static final String NAME = "book-popularity";
+
+    private static final String COUNT = """
+            WITH counted AS (
+                INSERT INTO book_popularity_borrowing (borrowing_id, book_id, counted) VALUES (?, ?, true)
+                ON CONFLICT (borrowing_id) DO NOTHING
+                RETURNING book_id)
+            INSERT INTO book_popularity (book_id, borrow_count) SELECT book_id, 1 FROM counted
+            ON CONFLICT (book_id) DO UPDATE SET borrow_count = book_popularity.borrow_count + EXCLUDED.borrow_count
+            """;
+
+    private static final String HANDED_OVER = """
+            SELECT EXISTS (SELECT 1 FROM borrowing
+                           WHERE id = ? AND book_id = ? AND status IN ('APPROVED', 'OVERDUE', 'RETURNED'))
+                OR EXISTS (SELECT 1 FROM borrowing_archive WHERE id = ? AND book_id = ? AND status = 'RETURNED')
+            """;
+
+    private static final String UNCOUNT = """
+            WITH uncounted AS (
+                UPDATE book_popularity_borrowing SET counted = false
+                WHERE borrowing_id = ? AND counted
+                RETURNING book_id)
+            UPDATE book_popularity SET borrow_count = borrow_count - 1
+            WHERE book_id IN (SELECT book_id FROM uncounted)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    BookPopularityProjection(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public void reset() {
+        jdbcTemplate.execute("TRUNCATE book_popularity, book_popularity_borrowing");
+    }
+
+    @Override
+    public void apply(BookEvent event) {
+        switch (event) {
+            case BookAvailabilityCheckedEvent checked when checked.available() ->
+                    jdbcTemplate.update(COUNT, checked.borrowingId(), checked.bookId());
+            case BookHandOverDeclinedEvent declined -> uncount(declined);
+            default -> {
+                // Only hand-overs change the counts
+            }
+        }
+    }
+
+    @Override
+    public void apply(List<BookEvent> events) {
+        // Sorted by book, so concurrent batches lock the rows in the same order
+        List<BookAvailabilityCheckedEvent> handOvers = events.stream()
+                .filter(event -> event instanceof BookAvailabilityCheckedEvent checked && checked.available())
+                .map(BookAvailabilityCheckedEvent.class::cast)
+                .sorted(Comparator.comparing(BookAvailabilityCheckedEvent::bookId)
+                        .thenComparing(BookAvailabilityCheckedEvent::borrowingId))
+                .toList();
+        jdbcTemplate.batchUpdate(COUNT, handOvers.stream()
+                .map(event -> new Object[]{event.borrowingId(), event.bookId()})
+                .toList());
+        events.stream()
+                .filter(BookHandOverDeclinedEvent.class::isInstance)
+                .forEach(this::apply);
+    }
+
+    /**
+     * Take a declined hand-over back out. The borrowing is also declined when a hand-over it took is
+     * delivered again after it gave the book back; that hand-over keeps counting.
+     */
+    private void uncount(BookHandOverDeclinedEvent declined) {
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(HANDED_OVER, Boolean.class,
+                declined.borrowingId(), declined.bookId(), declined.borrowingId(), declined.bookId()))) {
+            return;
+        }
+        // Waits for a hand-over of the borrowing being counted at the same time, then finds its entry
+        int declinedFirst = jdbcTemplate.update("""
+                INSERT INTO book_popularity_borrowing (borrowing_id, book_id, counted) VALUES (?, ?, false)
+                ON CONFLICT (borrowing_id) DO NOTHING
+                """, declined.borrowingId(), declined.bookId());
+        if (declinedFirst == 0) {
+            jdbcTemplate.update(UNCOUNT, declined.borrowingId());
+        }
+    }
+
+    /**
+     * The most borrowed books.
+     * @param limit the maximum number of books
+     * @return book ids and their number of approved borrowings, most borrowed first
+     */
+    List<Map<String, Object>> top(int limit) {
+        return jdbcTemplate.queryForList(
+                "SELECT book_id AS \"bookId\", borrow_count AS \"borrowCount\" FROM book_popularity "
+                        + "ORDER BY borrow_count DESC, book_id LIMIT ?", limit);
+    }
+}
@@ -0,0 +1,46 @@
+package org.jetbrains.conf.bookify.projections;
+
+import org.jetbrains.conf.bookify.events.BookEvent;
+
+import java.util.List;
+
+/**
+ * A read model built from the borrow requests, availability checks, declined hand-overs and returns.
+ *
+ * <p>Live events are applied in the transaction of the listener, one book at a time. A rebuild
+ * replays the borrowing history as synthetic events, several borrowings in parallel, so the events
+ * of one borrowing arrive in order but those of different borrowings may interleave. Projections
+ * whose result depends on the order across borrowings cannot be rebuilt.</p>
+ *
+ * <p>An event may arrive more than once: redelivered after a failure, or replayed by a rebuild and then
+ * applied again from the live events held back during it. Projections apply the events of a borrowing
+ * once only.</p>
+ */
+public interface Projection {
+
+    /**
+     * The name of the projection, which is the key of its checkpoint.
+     * @return the name
+     */
+    String name();
+
+    /**
+     * Drop everything the projection has built, before a rebuild. The reset has to wait for live
+     * events still being applied, as a {@code TRUNCATE} does, so that none of them survives it.
+     */
+    void reset();
+
+    /**
+     * Apply an event.
+     * @param event a borrow request, availability check, declined hand-over or return
+     */
+    void apply(BookEvent event);
+
+    /**
+     * Apply a batch of events, in order. Projections can override this to write a batch at once.
+     * @param events borrow requests, availability checks, declined hand-overs and returns
+     */
+    default void apply(List<BookEvent> events) {
+        events.forEach(this::apply);
+    }
+}
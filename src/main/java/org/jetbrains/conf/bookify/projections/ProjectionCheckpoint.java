@@ -0,0 +1,22 @@
+package org.jetbrains.conf.bookify.projections;
+
+import org.jspecify.annotations.Nullable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Where a projection stands.
+ * @param name the name of the projection
+ * @param status {@code NEW} before the first rebuild, {@code REBUILDING} while a rebuild runs or was
+ *               interrupted, {@code LIVE} after it completed
+ * @param rebuiltBorrowings the number of borrowings replayed by the last rebuild
+ * @param startedAt when the last rebuild started
+ * @param completedAt when the last rebuild completed
+ */
+record ProjectionCheckpoint(String name, String status, long rebuiltBorrowings, @Nullable LocalDateTime startedAt,
+                            @Nullable LocalDateTime completedAt) {
+
+    static final String NEW = "NEW";
+    static final String REBUILDING = "REBUILDING";
+    static final String LIVE = "LIVE";
+}
@@ -0,0 +1,9 @@
+package org.jetbrains.conf.bookify.projections;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ProjectionSettings.class)
+class ProjectionConfiguration {
+}
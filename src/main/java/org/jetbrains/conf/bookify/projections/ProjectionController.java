@@ -0,0 +1,63 @@
+package org.jetbrains.conf.bookify.projections;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping(path = "/api/projections")
+class ProjectionController {
+
+    private final ProjectionRunner projectionRunner;
+    private final BookPopularityProjection bookPopularityProjection;
+
+    ProjectionController(ProjectionRunner projectionRunner, BookPopularityProjection bookPopularityProjection) {
+        this.projectionRunner = projectionRunner;
+        this.bookPopularityProjection = bookPopularityProjection;
+    }
+
+    /**
+     * Get the checkpoints of all projections
+     * @return where every projection stands
+     */
+    @GetMapping("")
+    ResponseEntity<List<ProjectionCheckpoint>> getCheckpoints() {
+        return new ResponseEntity<>(projectionRunner.checkpoints(), HttpStatus.OK);
+    }
+
+    /**
+     * Rebuild a projection from the borrowing history in the background
+     * @param name the name of the projection
+     * @return 202 if the rebuild started, 404 for an unknown projection or 409 if it is being rebuilt already
+     */
+    @PostMapping("/{name}/rebuild")
+    ResponseEntity<Map<String, String>> rebuild(@PathVariable String name) {
+        if (!projectionRunner.exists(name)) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        if (!projectionRunner.startRebuild(name)) {
+            return new ResponseEntity<>(Map.of("name", name, "status", ProjectionCheckpoint.REBUILDING),
+                    HttpStatus.CONFLICT);
+        }
+        return new ResponseEntity<>(Map.of("name", name, "status", ProjectionCheckpoint.REBUILDING),
+                HttpStatus.ACCEPTED);
+    }
+
+    /**
+     * Get the most borrowed books
+     * @param limit the maximum number of books
+     * @return book ids with their number of approved borrowings, most borrowed first
+     */
+    @GetMapping("/book-popularity")
+    ResponseEntity<List<Map<String, Object>>> getBookPopularity(@RequestParam(defaultValue = "10") int limit) {
+        return new ResponseEntity<>(bookPopularityProjection.top(Math.clamp(limit, 1, 100)), HttpStatus.OK);
+    }
+}
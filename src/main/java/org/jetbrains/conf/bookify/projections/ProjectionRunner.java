@@ -0,0 +1,446 @@
+package org.jetbrains.conf.bookify.projections;
+
+import org.jetbrains.conf.bookify.config.BookifySettingsConfig;
+import org.jetbrains.conf.bookify.config.Bulkhead;
+import org.jetbrains.conf.bookify.events.BookAvailabilityCheckedEvent;
+import org.jetbrains.conf.bookify.events.BookBorrowRequestEvent;
+import org.jetbrains.conf.bookify.events.BookEvent;
+import org.jetbrains.conf.bookify.events.BookEventListener;
+import org.jetbrains.conf.bookify.events.BookHandOverDeclinedEvent;
+import org.jetbrains.conf.bookify.events.BookReturnedEvent;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Feeds the {@link Projection}s with live events and rebuilds them from the borrowing history.
+ *
+ * <p>A rebuild replays every borrowing, archived ones included, as the events that led to its current
+ * status. It exports a database snapshot and replays several ranges of borrowing ids in parallel, each
+ * worker reading the same snapshot. Live events arriving meanwhile are held back; once the history is
+ * replayed, they are all applied, and the projection goes live again without losing an event. Those the
+ * snapshot reflected already are skipped by the projection, as a redelivered event is.</p>
+ *
+ * <p>A rebuild works for the {@link Bulkhead#PROJECTIONS}, whose pool has to hold the
+ * {@link ProjectionSettings#rebuildConnections() connections} of a rebuild; the application does not
+ * start otherwise. A rebuild therefore neither starves the listeners nor runs out of connections.</p>
+ *
+ * <p>The checkpoint of a projection is {@code LIVE} once a rebuild completed. Projections without one,
+ * new ones and those whose rebuild was interrupted, are rebuilt when the application starts. A rebuild
+ * holds an advisory lock on the projection for as long as it runs, so only one node at a time resets and
+ * replays it; the others skip it. The database releases the lock should the node die. Live events are
+ * held back on the node running the rebuild only.</p>
+ */
+@Component
+class ProjectionRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ProjectionRunner.class);
+
+    static final String REBUILD_LOCK = "projection-rebuild:";
+
+    private static final String BORROWING_HISTORY = """
+            SELECT id, COALESCE(requested_book_id, book_id) AS requested_book_id, book_id, member_id, status
+            FROM borrowing WHERE %1$s
+            UNION ALL
+            SELECT id, COALESCE(requested_book_id, book_id) AS requested_book_id, book_id, member_id, status
+            FROM borrowing_archive WHERE %1$s
+            """;
+
+    private final Map<String, ProjectionState> projections = new LinkedHashMap<>();
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingTemplate;
+    private final TransactionTemplate snapshotTemplate;
+    private final TransactionTemplate writeTemplate;
+    private final ProjectionSettings settings;
+
+    ProjectionRunner(List<Projection> projections, JdbcTemplate jdbcTemplate,
+                     PlatformTransactionManager transactionManager, ProjectionSettings settings,
+                     BookifySettingsConfig bookifySettingsConfig) {
+        if (settings.rebuildConnections() > bookifySettingsConfig.getBulkheadsProjectionsPoolSize()) {
+            throw new IllegalStateException("A rebuild of %d partitions needs %d connections, but the projections pool has %d"
+                    .formatted(settings.rebuildPartitions(), settings.rebuildConnections(),
+                            bookifySettingsConfig.getBulkheadsProjectionsPoolSize()));
+        }
+        projections.forEach(projection -> this.projections.put(projection.name(), new ProjectionState(projection)));
+        this.jdbcTemplate = jdbcTemplate;
+        this.streamingTemplate = new JdbcTemplate(Objects.requireNonNull(jdbcTemplate.getDataSource()));
+        this.streamingTemplate.setFetchSize(settings.rebuildBatchSize());
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.snapshotTemplate.setReadOnly(true);
+        this.writeTemplate = new TransactionTemplate(transactionManager);
+        this.writeTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.settings = settings;
+    }
+
+    @BookEventListener
+    void on(BookEvent event) {
+        if (!(event instanceof BookBorrowRequestEvent
+                || event instanceof BookAvailabilityCheckedEvent
+                || event instanceof BookHandOverDeclinedEvent
+                || event instanceof BookReturnedEvent)) {
+            return;
+        }
+        projections.values().forEach(state -> state.applyOrHold(event));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void rebuildIncomplete() {
+        if (!settings.rebuildOnStartup()) {
+            return;
+        }
+        for (ProjectionCheckpoint checkpoint : checkpoints()) {
+            if (!ProjectionCheckpoint.LIVE.equals(checkpoint.status())) {
+                startRebuild(checkpoint.name());
+            }
+        }
+    }
+
+    /**
+     * The checkpoints of all projections.
+     * @return one checkpoint per projection, in registration order
+     */
+    List<ProjectionCheckpoint> checkpoints() {
+        Map<String, ProjectionCheckpoint> stored = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT * FROM projection_checkpoint", rs -> {
+            stored.put(rs.getString("name"), new ProjectionCheckpoint(rs.getString("name"), rs.getString("status"),
+                    rs.getLong("rebuilt_borrowings"), rs.getObject("started_at", LocalDateTime.class),
+                    rs.getObject("completed_at", LocalDateTime.class)));
+        });
+        return projections.keySet().stream()
+                .map(name -> Optional.ofNullable(stored.get(name))
+                        .orElseGet(() -> new ProjectionCheckpoint(name, ProjectionCheckpoint.NEW, 0, null, null)))
+                .toList();
+    }
+
+    /**
+     * Check whether a projection exists.
+     * @param name the name of the projection
+     * @return true if a projection of that name is registered
+     */
+    boolean exists(String name) {
+        return projections.containsKey(name);
+    }
+
+    /**
+     * Rebuild a projection in the background.
+     * @param name the name of the projection
+     * @return false if the projection is being rebuilt already
+     */
+    boolean startRebuild(String name) {
+        ProjectionState state = projections.get(name);
+        if (state == null) {
+            throw new IllegalArgumentException("Unknown projection " + name);
+        }
+        if (!state.rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread.ofVirtual().name("projection-rebuild-" + name).start(() -> {
+            try {
+                if (rebuild(state).isEmpty()) {
+                    log.info("Projection {} is being rebuilt on another node", name);
+                }
+            } catch (RuntimeException e) {
+                log.error("Rebuild of projection {} failed", name, e);
+            } finally {
+                state.rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Rebuild a projection on the calling thread.
+     * @param name the name of the projection
+     * @return the number of borrowings replayed
+     * @throws IllegalStateException if the projection is being rebuilt already, here or on another node
+     */
+    long rebuild(String name) {
+        ProjectionState state = Objects.requireNonNull(projections.get(name), () -> "Unknown projection " + name);
+        if (!state.rebuilding.compareAndSet(false, true)) {
+            throw new IllegalStateException("Projection " + name + " is being rebuilt already");
+        }
+        try {
+            return rebuild(state).orElseThrow(
+                    () -> new IllegalStateException("Projection " + name + " is being rebuilt on another node"));
+        } finally {
+            state.rebuilding.set(false);
+        }
+    }
+
+    /**
+     * Rebuild a projection unless another node holds its lock. The lock is taken for the session of a
+     * connection of its own, which is kept for the whole rebuild.
+     * @return the number of borrowings replayed, empty if another node is rebuilding the projection
+     */
+    private OptionalLong rebuild(ProjectionState state) {
+        String name = state.projection.name();
+        try (Bulkhead.Scope ignored = Bulkhead.PROJECTIONS.enter()) {
+            return Objects.requireNonNull(jdbcTemplate.execute((ConnectionCallback<OptionalLong>) connection -> {
+                if (!advisoryLock(connection, "pg_try_advisory_lock", name)) {
+                    return OptionalLong.empty();
+                }
+                try {
+                    return OptionalLong.of(rebuildLocked(state));
+                } finally {
+                    advisoryLock(connection, "pg_advisory_unlock", name);
+                }
+            }));
+        }
+    }
+
+    private static boolean advisoryLock(Connection connection, String function, String name) throws SQLException {
+        try (PreparedStatement statement =
+                     connection.prepareStatement("SELECT " + function + "(hashtextextended(?, 0))")) {
+            statement.setString(1, REBUILD_LOCK + name);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private long rebuildLocked(ProjectionState state) {
+        String name = state.projection.name();
+        long start = System.nanoTime();
+        state.holdLiveEvents();
+        try {
+            jdbcTemplate.update("""
+                    INSERT INTO projection_checkpoint (name, status, rebuilt_borrowings, started_at, completed_at)
+                    VALUES (?, ?, 0, now(), NULL)
+                    ON CONFLICT (name) DO UPDATE
+                        SET status = EXCLUDED.status, rebuilt_borrowings = 0, started_at = now(), completed_at = NULL
+                    """, name, ProjectionCheckpoint.REBUILDING);
+            writeTemplate.executeWithoutResult(status -> state.projection.reset());
+
+            long replayed = Objects.requireNonNull(snapshotTemplate.execute(status -> {
+                String snapshot = jdbcTemplate.queryForObject("SELECT pg_export_snapshot()", String.class);
+                long borrowings = replayHistory(state.projection, Objects.requireNonNull(snapshot));
+                catchUp(state);
+                return borrowings;
+            }));
+
+            jdbcTemplate.update("""
+                    UPDATE projection_checkpoint SET status = ?, rebuilt_borrowings = ?, completed_at = now()
+                    WHERE name = ?
+                    """, ProjectionCheckpoint.LIVE, replayed, name);
+            log.info("Rebuilt projection {} from {} borrowings in {} ms", name, replayed,
+                    (System.nanoTime() - start) / 1_000_000);
+            return replayed;
+        } catch (RuntimeException e) {
+            // The checkpoint stays REBUILDING, so the next start rebuilds the projection again
+            state.releaseLiveEvents();
+            throw e;
+        }
+    }
+
+    /**
+     * Replay the borrowings of the snapshot, split into ranges of ids that are replayed in parallel.
+     */
+    private long replayHistory(Projection projection, String snapshot) {
+        int partitions = Math.max(1, settings.rebuildPartitions());
+        long step = Long.divideUnsigned(-1L, partitions);
+        List<Future<Long>> workers = new ArrayList<>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int partition = 0; partition < partitions; partition++) {
+                @Nullable UUID lower = partition == 0 ? null : new UUID(partition * step, 0);
+                @Nullable UUID upper = partition == partitions - 1 ? null : new UUID((partition + 1) * step, 0);
+                workers.add(executor.submit(() -> {
+                    try (Bulkhead.Scope ignored = Bulkhead.PROJECTIONS.enter()) {
+                        return replayRange(projection, snapshot, lower, upper);
+                    }
+                }));
+            }
+        }
+        long replayed = 0;
+        for (Future<Long> worker : workers) {
+            try {
+                replayed += worker.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while replaying the borrowing history", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Replaying the borrowing history failed", e.getCause());
+            }
+        }
+        return replayed;
+    }
+
+    private long replayRange(Projection projection, String snapshot, @Nullable UUID lower, @Nullable UUID upper) {
+        return Objects.requireNonNull(snapshotTemplate.execute(status -> {
+            // Must be the first statement of the transaction
+            jdbcTemplate.execute("SET TRANSACTION SNAPSHOT '" + snapshot.replace("'", "''") + "'");
+            List<Object> bounds = new ArrayList<>();
+            List<String> conditions = new ArrayList<>();
+            if (lower != null) {
+                conditions.add("id >= ?");
+                bounds.add(lower);
+            }
+            if (upper != null) {
+                conditions.add("id < ?");
+                bounds.add(upper);
+            }
+            String where = conditions.isEmpty() ? "TRUE" : String.join(" AND ", conditions);
+            List<Object> parameters = new ArrayList<>(bounds);
+            parameters.addAll(bounds);
+
+            List<BookEvent> batch = new ArrayList<>();
+            long[] borrowings = {0};
+            streamingTemplate.query(BORROWING_HISTORY.formatted(where), rs -> {
+                batch.addAll(historyOf(rs));
+                if (++borrowings[0] % settings.rebuildBatchSize() == 0) {
+                    applyBatch(projection, batch);
+                }
+            }, parameters.toArray());
+            applyBatch(projection, batch);
+            return borrowings[0];
+        }));
+    }
+
+    private void applyBatch(Projection projection, List<BookEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<BookEvent> events = List.copyOf(batch);
+        writeTemplate.executeWithoutResult(status -> projection.apply(events));
+        batch.clear();
+    }
+
+    /**
+     * Apply the live events held back during the replay, until none are left and the projection is live again.
+     */
+    private void catchUp(ProjectionState state) {
+        List<BookEvent> held;
+        while (!(held = state.drainOrGoLive()).isEmpty()) {
+            List<BookEvent> events = held;
+            writeTemplate.executeWithoutResult(status -> state.projection.apply(events));
+        }
+    }
+
+    /**
+     * The events that led to the current status of a borrowing.
+     */
+    private static List<BookEvent> historyOf(ResultSet rs) throws SQLException {
+        UUID id = rs.getObject("id", UUID.class);
+        UUID requestedBookId = rs.getObject("requested_book_id", UUID.class);
+        if (requestedBookId == null) {
+            return List.of();
+        }
+        UUID bookId = Optional.ofNullable(rs.getObject("book_id", UUID.class)).orElse(requestedBookId);
+        String status = rs.getString("status");
+        List<BookEvent> events = new ArrayList<>(3);
+        events.add(new BookBorrowRequestEvent(requestedBookId, id));
+        switch (status) {
+            case "APPROVED", "OVERDUE" -> events.add(new BookAvailabilityCheckedEvent(bookId, id, true));
+            case "RETURNED" -> {
+                events.add(new BookAvailabilityCheckedEvent(bookId, id, true));
+                events.add(new BookReturnedEvent(bookId, rs.getObject("member_id", UUID.class)));
+            }
+            case "REJECTED" -> events.add(new BookAvailabilityCheckedEvent(requestedBookId, id, false));
+            default -> {
+                // Still waiting for the book
+            }
+        }
+        return events;
+    }
+
+    /**
+     * A projection and the live events held back from it while it is rebuilt.
+     */
+    private static final class ProjectionState {
+
+        private final Projection projection;
+        private final AtomicBoolean rebuilding = new AtomicBoolean();
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Queue<BookEvent> held = new ConcurrentLinkedQueue<>();
+        private boolean holding;
+
+        ProjectionState(Projection projection) {
+            this.projection = projection;
+        }
+
+        /**
+         * Apply a live event, or hold it back during a rebuild. Live events are applied under the read
+         * lock, so once {@link #holdLiveEvents()} returns, every event applied before has been written
+         * and the reset of the projection sees it.
+         */
+        void applyOrHold(BookEvent event) {
+            lock.readLock().lock();
+            try {
+                if (holding) {
+                    held.add(event);
+                } else {
+                    projection.apply(event);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void holdLiveEvents() {
+            lock.writeLock().lock();
+            try {
+                holding = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void releaseLiveEvents() {
+            lock.writeLock().lock();
+            try {
+                holding = false;
+                held.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Take the held back events, or go live if there are none left.
+         */
+        List<BookEvent> drainOrGoLive() {
+            lock.writeLock().lock();
+            try {
+                List<BookEvent> events = new ArrayList<>(held);
+                held.clear();
+                if (events.isEmpty()) {
+                    holding = false;
+                }
+                return events;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.jetbrains.conf.bookify.projections;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of the projections.
+ * @param rebuildOnStartup whether projections without a completed rebuild are rebuilt when the application starts
+ * @param rebuildPartitions the number of borrowing partitions replayed in parallel by a rebuild,
+ *                          each holding two connections of the projections bulkhead while it runs
+ * @param rebuildBatchSize the number of borrowings whose events are applied in one transaction
+ */
+@ConfigurationProperties(prefix = "bookify.projections")
+record ProjectionSettings(@DefaultValue("true") boolean rebuildOnStartup,
+                          @DefaultValue("4") int rebuildPartitions,
+                          @DefaultValue("500") int rebuildBatchSize) {
+
+    /**
+     * The connections a rebuild holds at most: one for its lock, one for the snapshot it exports, and two
+     * per partition.
+     * @return the number of connections
+     */
+    int rebuildConnections() {
+        return 2 + 2 * Math.max(1, rebuildPartitions);
+    }
+}
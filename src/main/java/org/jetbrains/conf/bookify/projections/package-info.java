@@ -0,0 +1,13 @@
+/**
+ * This package defines the projections module of the Bookify application.
+ *
+ * <p>The projections module keeps read models built from the borrowing events up to date, and
+ * rebuilds them from the borrowing history when they are added or have to be recomputed.</p>
+ */
+@org.springframework.modulith.ApplicationModule(
+        displayName = "Bookify Projections"
+)
+@NullMarked
+package org.jetbrains.conf.bookify.projections;
+
+import org.jspecify.annotations.NullMarked;
@@ -0,0 +1,8 @@
+-- Member borrowing history (findByMemberId); id is included so history can be paged by key
+CREATE INDEX ix_borrowing_member ON borrowing (member_id, id);
+
+-- Open loans of a member (findByMemberIdAndReturnDateIsNull), checked on every borrow request
+CREATE INDEX ix_borrowing_member_open ON borrowing (member_id) WHERE return_date IS NULL;
+
+-- Open loan of a book (findByBookIdAndReturnDateIsNull), checked on every return
+CREATE INDEX ix_borrowing_book_open ON borrowing (book_id) WHERE return_date IS NULL;
@@ -0,0 +1,4 @@
+-- Keyset pagination of GET /api/borrowings: every filter is backed by an index that also yields id order
+CREATE INDEX ix_borrowing_requested_book ON borrowing (requested_book_id, id);
+CREATE INDEX ix_borrowing_status ON borrowing (status, id);
+CREATE INDEX ix_borrowing_borrow_date ON borrowing (borrow_date);
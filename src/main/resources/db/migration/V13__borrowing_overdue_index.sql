@@ -0,0 +1,2 @@
+-- Open loans by borrow date, walked in chunks by the overdue scanner
+CREATE INDEX ix_borrowing_open_borrow_date ON borrowing (borrow_date) WHERE return_date IS NULL;
@@ -0,0 +1,10 @@
+-- First-come, first-served queue of borrowing requests for books that are out
+CREATE TABLE book_waitlist (
+    id BIGSERIAL PRIMARY KEY,
+    book_id UUID NOT NULL,
+    borrowing_id UUID NOT NULL UNIQUE,
+    enqueued_at TIMESTAMP NOT NULL DEFAULT now(),
+    FOREIGN KEY (book_id) REFERENCES book(id)
+);
+
+CREATE INDEX ix_book_waitlist_book ON book_waitlist (book_id, id);
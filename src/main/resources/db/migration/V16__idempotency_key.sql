@@ -0,0 +1,9 @@
+-- Outcomes of borrow and return requests sent with an Idempotency-Key header, kept so that retries can be replayed
+CREATE TABLE idempotency_key (
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    request VARCHAR(255) NOT NULL,
+    borrowing_id UUID,
+    created_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX ix_idempotency_key_created_at ON idempotency_key (created_at);
@@ -0,0 +1,15 @@
+-- When a borrowing request was made; PENDING requests older than a threshold are considered stuck
+ALTER TABLE borrowing ADD COLUMN requested_at TIMESTAMP NOT NULL DEFAULT now();
+
+CREATE INDEX ix_borrowing_pending_requested_at ON borrowing (requested_at) WHERE status = 'PENDING';
+
+-- Event publications that kept failing after all resubmission attempts, kept for manual inspection and replay
+CREATE TABLE event_dead_letter (
+    id UUID PRIMARY KEY,
+    listener_id TEXT NOT NULL,
+    event_type TEXT NOT NULL,
+    serialized_event TEXT NOT NULL,
+    publication_date TIMESTAMP WITH TIME ZONE NOT NULL,
+    attempts INT NOT NULL,
+    dead_lettered_at TIMESTAMP NOT NULL DEFAULT now()
+);
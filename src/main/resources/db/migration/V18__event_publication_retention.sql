@@ -0,0 +1,19 @@
+-- Completed event publications kept after the retention period when bookify.events.purge.mode=archive
+CREATE TABLE event_publication_history (
+    id UUID PRIMARY KEY,
+    listener_id TEXT NOT NULL,
+    event_type TEXT NOT NULL,
+    serialized_event TEXT NOT NULL,
+    publication_date TIMESTAMP WITH TIME ZONE NOT NULL,
+    completion_date TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+-- The registry looks up incomplete publications oldest first. The table itself is created by Spring Modulith,
+-- which may happen after this migration on a fresh database; EventPublicationPurge creates the index then.
+DO $$
+BEGIN
+    IF to_regclass('event_publication') IS NOT NULL THEN
+        CREATE INDEX IF NOT EXISTS ix_event_publication_incomplete ON event_publication (publication_date)
+            WHERE completion_date IS NULL;
+    END IF;
+END $$;
@@ -0,0 +1,16 @@
+-- Nodes taking part in event publication recovery, with the time they were last seen alive
+CREATE TABLE event_publication_node (
+    owner TEXT PRIMARY KEY,
+    heartbeat_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+-- Claims of incomplete event publications by recovery nodes. A claim can be taken over once it expires,
+-- or as soon as its owner stops sending heartbeats. The row outlives the claim to count the attempts.
+CREATE TABLE event_publication_lease (
+    publication_id UUID PRIMARY KEY,
+    owner TEXT NOT NULL,
+    leased_until TIMESTAMP WITH TIME ZONE NOT NULL,
+    attempts INT NOT NULL
+);
+
+CREATE INDEX ix_event_publication_lease_owner ON event_publication_lease (owner);
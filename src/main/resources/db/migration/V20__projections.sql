@@ -0,0 +1,16 @@
+-- Progress of every projection; a projection without a LIVE checkpoint is rebuilt from the borrowing history
+CREATE TABLE projection_checkpoint (
+    name TEXT PRIMARY KEY,
+    status TEXT NOT NULL,
+    rebuilt_borrowings BIGINT NOT NULL DEFAULT 0,
+    started_at TIMESTAMP,
+    completed_at TIMESTAMP
+);
+
+-- Number of approved borrowings per book
+CREATE TABLE book_popularity (
+    book_id UUID PRIMARY KEY,
+    borrow_count BIGINT NOT NULL
+);
+
+CREATE INDEX ix_book_popularity_count ON book_popularity (borrow_count DESC, book_id);
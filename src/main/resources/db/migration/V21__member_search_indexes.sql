@@ -0,0 +1,6 @@
+-- Unified member search: substring matches on lower-cased names and emails are answered by trigram
+-- indexes, full email addresses by an exact lookup
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX ix_member_name_trgm ON member USING GIN (lower(name) gin_trgm_ops);
+CREATE INDEX ix_member_email_trgm ON member USING GIN (lower(email) gin_trgm_ops);
+CREATE INDEX ix_member_email_lower ON member (lower(email));
@@ -0,0 +1,8 @@
+-- Members whose cached status is stale, polled by every node to evict them from its member cache
+CREATE TABLE member_invalidation (
+    id BIGSERIAL PRIMARY KEY,
+    member_id UUID NOT NULL,
+    invalidated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX ix_member_invalidation_invalidated_at ON member_invalidation (invalidated_at);
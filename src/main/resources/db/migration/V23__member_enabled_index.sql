@@ -0,0 +1,2 @@
+-- Keyset pages and counts of the active members read only the ids of enabled members
+CREATE INDEX ix_member_enabled_id ON member (id) WHERE enabled;
@@ -0,0 +1,6 @@
+-- Idempotency keys are chosen by clients, so they are only unique per member
+ALTER TABLE idempotency_key ADD COLUMN member_id UUID;
+UPDATE idempotency_key SET member_id = split_part(request, ' ', 3)::uuid;
+ALTER TABLE idempotency_key ALTER COLUMN member_id SET NOT NULL;
+ALTER TABLE idempotency_key DROP CONSTRAINT idempotency_key_pkey;
+ALTER TABLE idempotency_key ADD PRIMARY KEY (member_id, idempotency_key);
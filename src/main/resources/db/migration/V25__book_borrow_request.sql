@@ -0,0 +1,10 @@
+-- Borrowing requests the books module has handled, so that a redelivered request is not handled again, and
+-- which of them holds its book, so that only the request a book was handed over to can pass it on
+CREATE TABLE book_borrow_request (
+    borrowing_id UUID PRIMARY KEY,
+    book_id UUID NOT NULL,
+    holds_book BOOLEAN NOT NULL DEFAULT false,
+    handled_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE UNIQUE INDEX ux_book_borrow_request_holder ON book_borrow_request (book_id) WHERE holds_book;
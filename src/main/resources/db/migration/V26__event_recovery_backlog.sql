@@ -0,0 +1,6 @@
+-- When the oldest event a node has taken on but not handled yet was taken on; publications from around then
+-- may still wait on that node, so they are not stuck
+ALTER TABLE event_publication_node ADD COLUMN oldest_taken_on_at TIMESTAMP WITH TIME ZONE;
+
+-- When the recovery job last resubmitted a borrowing stuck in PENDING
+ALTER TABLE borrowing ADD COLUMN resubmitted_at TIMESTAMP;
@@ -0,0 +1,10 @@
+-- The borrowings the popularity projection has seen a hand-over for, so that a redelivered or replayed one
+-- counts once; counted is false for a hand-over that was declined
+CREATE TABLE book_popularity_borrowing (
+    borrowing_id UUID PRIMARY KEY,
+    book_id UUID NOT NULL,
+    counted BOOLEAN NOT NULL
+);
+
+-- The counts so far may include redeliveries and declined hand-overs; rebuild them on the next start
+UPDATE projection_checkpoint SET status = 'REBUILDING', completed_at = NULL WHERE name = 'book-popularity';
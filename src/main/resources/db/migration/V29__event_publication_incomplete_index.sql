@@ -0,0 +1,4 @@
+-- The registry looks up incomplete publications oldest first. Built without blocking the writes to the table,
+-- which cannot happen in a transaction; see the .conf file next to this one
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_event_publication_incomplete ON event_publication (publication_date)
+    WHERE completion_date IS NULL;
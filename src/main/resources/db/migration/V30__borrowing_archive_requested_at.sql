@@ -0,0 +1,2 @@
+-- When an archived borrowing was requested; unknown for the loans archived before this column was added
+ALTER TABLE borrowing_archive ADD COLUMN requested_at TIMESTAMP;
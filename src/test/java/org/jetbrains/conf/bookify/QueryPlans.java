@@ -0,0 +1,62 @@
+package org.jetbrains.conf.bookify;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Helpers for asserting on PostgreSQL query plans in integration tests.
+ *
+ * <p>Plans depend on table statistics, so callers are expected to seed a realistically sized
+ * dataset and run {@code ANALYZE} before explaining a query.</p>
+ */
+public final class QueryPlans {
+
+    private QueryPlans() {
+    }
+
+    /**
+     * Explain a query and return the plan as text lines.
+     *
+     * @param jdbcTemplate the template to run the statement with
+     * @param sql the query to explain, with all values inlined
+     * @return the lines of the textual plan
+     */
+    public static List<String> explain(JdbcTemplate jdbcTemplate, String sql) {
+        return jdbcTemplate.queryForList("EXPLAIN " + sql, String.class);
+    }
+
+    /**
+     * Assert that the plan of a query does not read the given table sequentially.
+     *
+     * @param jdbcTemplate the template to run the statement with
+     * @param table the table that must be accessed through an index; tables that merely share
+     *              its name as a prefix, such as partitions of a {@code <table>_archive}, do not count
+     * @param sql the query to explain, with all values inlined
+     */
+    public static void assertNoSeqScan(JdbcTemplate jdbcTemplate, String table, String sql) {
+        List<String> plan = explain(jdbcTemplate, sql);
+        Pattern seqScan = Pattern.compile("Seq Scan on " + Pattern.quote(table) + "\\b");
+        assertThat(plan)
+                .as("Plan for [%s]:%n%s", sql, String.join(System.lineSeparator(), plan))
+                .noneMatch(line -> seqScan.matcher(line).find());
+    }
+
+    /**
+     * Assert that the plan of a query reads through the given index, in a plain or bitmap index scan.
+     *
+     * @param jdbcTemplate the template to run the statement with
+     * @param index the name of the index the plan must use
+     * @param sql the query to explain, with all values inlined
+     */
+    public static void assertUsesIndex(JdbcTemplate jdbcTemplate, String index, String sql) {
+        List<String> plan = explain(jdbcTemplate, sql);
+        Pattern indexScan = Pattern.compile("(?: on| using) " + Pattern.quote(index) + "\\b");
+        assertThat(plan)
+                .as("Plan for [%s]:%n%s", sql, String.join(System.lineSeparator(), plan))
+                .anyMatch(line -> indexScan.matcher(line).find());
+    }
+}
@@ -0,0 +1,132 @@
+package org.jetbrains.conf.bookify.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccessTokensTest {
+
+    private static final String OLD_KEY = "2026-07:" + secret('o');
+    private static final String NEW_KEY = "2026-10:" + secret('n');
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final AtomicReference<Instant> now = new AtomicReference<>(Instant.parse("2026-10-19T10:00:00Z"));
+    private final InstantSource clock = now::get;
+
+    @Test
+    void verify_acceptsIssuedTokenWithItsRoles() {
+        // Given: A token issued to a librarian
+        var tokens = new AccessTokens(List.of(NEW_KEY), 600, jsonMapper, clock);
+        String token = tokens.issue(librarian()).token();
+
+        // When: Verifying it
+        AccessTokenAuthentication authentication = tokens.verify(token);
+
+        // Then: It carries the name and the roles of the librarian
+        assertThat(authentication).isNotNull();
+        assertThat(authentication.isAuthenticated()).isTrue();
+        assertThat(authentication.getName()).isEqualTo("librarian");
+        assertThat(AuthorityUtils.authorityListToSet(authentication.getAuthorities())).containsExactly("ROLE_LIBRARIAN");
+    }
+
+    @Test
+    void verify_refusesTamperedToken() {
+        // Given: A token whose claims were changed by the client
+        var tokens = new AccessTokens(List.of(NEW_KEY), 600, jsonMapper, clock);
+        String[] parts = tokens.issue(member()).token().split("\\.");
+        String forgedClaims = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                "{\"sub\":\"member\",\"roles\":[\"ROLE_LIBRARIAN\"],\"iat\":0,\"exp\":9999999999}".getBytes());
+
+        // When / Then: It is refused, as is a token that is not one at all
+        assertThat(tokens.verify(parts[0] + "." + forgedClaims + "." + parts[2])).isNull();
+        assertThat(tokens.verify("not-a-token")).isNull();
+    }
+
+    @Test
+    void verify_refusesExpiredToken() {
+        // Given: A token issued for ten minutes
+        var tokens = new AccessTokens(List.of(NEW_KEY), 600, jsonMapper, clock);
+        String token = tokens.issue(librarian()).token();
+
+        // When: Ten minutes have passed
+        now.set(now.get().plusSeconds(600));
+
+        // Then: It is refused
+        assertThat(tokens.verify(token)).isNull();
+    }
+
+    @Test
+    void verify_acceptsTokensOfPreviousKeyUntilItIsDropped() {
+        // Given: A token signed before the key was rotated
+        String token = new AccessTokens(List.of(OLD_KEY), 600, jsonMapper, clock).issue(librarian()).token();
+
+        // When: A new key signs, while the old one still verifies
+        var rotated = new AccessTokens(List.of(NEW_KEY, OLD_KEY), 600, jsonMapper, clock);
+
+        // Then: Both old and new tokens are accepted, until the old key is dropped
+        assertThat(rotated.verify(token)).isNotNull();
+        assertThat(rotated.verify(rotated.issue(librarian()).token())).isNotNull();
+        assertThat(new AccessTokens(List.of(NEW_KEY), 600, jsonMapper, clock).verify(token)).isNull();
+    }
+
+    @Test
+    void verify_refusesTokensOfAnotherGeneratedKey() {
+        // Given: Two nodes without configured keys
+        var node = new AccessTokens(List.of(), 600, jsonMapper, clock);
+        var otherNode = new AccessTokens(List.of(), 600, jsonMapper, clock);
+
+        // When / Then: Each one only accepts its own tokens
+        assertThat(node.verify(node.issue(librarian()).token())).isNotNull();
+        assertThat(otherNode.verify(node.issue(librarian()).token())).isNull();
+    }
+
+    @Test
+    void accessTokensBean_requiresKeysOutsideDevAndTest() {
+        // Given: No configured keys
+        var bookifySettingsConfig = new BookifySettingsConfig();
+        bookifySettingsConfig.setSecurityTokensKeys(List.of());
+
+        var production = new MockEnvironment();
+        production.setActiveProfiles("prod");
+        var development = new MockEnvironment();
+        development.setActiveProfiles("dev");
+
+        // When / Then: The application does not start in production, but does in development
+        assertThatThrownBy(() -> new SecurityConfig().accessTokens(bookifySettingsConfig, jsonMapper, production))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("bookify.security.tokens.keys");
+        assertThat(new SecurityConfig().accessTokens(bookifySettingsConfig, jsonMapper, development)).isNotNull();
+    }
+
+    @Test
+    void constructor_refusesShortKey() {
+        assertThatThrownBy(() -> new AccessTokens(List.of("short:" + Base64.getEncoder().encodeToString(new byte[16])),
+                600, jsonMapper, clock))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static UsernamePasswordAuthenticationToken librarian() {
+        return UsernamePasswordAuthenticationToken.authenticated("librarian", null,
+                AuthorityUtils.createAuthorityList("ROLE_LIBRARIAN"));
+    }
+
+    private static UsernamePasswordAuthenticationToken member() {
+        return UsernamePasswordAuthenticationToken.authenticated("member", null,
+                AuthorityUtils.createAuthorityList("ROLE_MEMBER"));
+    }
+
+    private static String secret(char fill) {
+        return Base64.getEncoder().encodeToString(String.valueOf(fill).repeat(32).getBytes());
+    }
+}
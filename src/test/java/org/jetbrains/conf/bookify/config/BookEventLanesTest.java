@@ -0,0 +1,149 @@
+package org.jetbrains.conf.bookify.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookEventLanesTest {
+
+    @Test
+    void dispatch_runsTasksForTheSameBookInOrder() throws Exception {
+        // Given: Lanes and many tasks for one book
+        BookEventLanes lanes = new BookEventLanes(4, new SimpleMeterRegistry());
+        UUID bookId = UUID.randomUUID();
+        List<Integer> seen = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1_000);
+
+        try {
+            // When: The tasks are dispatched
+            for (int i = 0; i < 1_000; i++) {
+                int task = i;
+                lanes.dispatch(bookId, () -> {
+                    seen.add(task);
+                    done.countDown();
+                });
+            }
+
+            // Then: They ran one after the other, in dispatch order
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(seen).containsExactlyElementsOf(IntStream.range(0, 1_000).boxed().toList());
+        } finally {
+            lanes.destroy();
+        }
+    }
+
+    @Test
+    void dispatch_doesNotBlockOtherBooksBehindABusyLane() throws Exception {
+        // Given: Lanes where one book's listener is stuck
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BookEventLanes lanes = new BookEventLanes(2, meterRegistry);
+        UUID busyBook = UUID.randomUUID();
+        UUID otherBook = IntStream.range(0, 100)
+                .mapToObj(i -> UUID.randomUUID())
+                .filter(id -> Math.floorMod(id.hashCode(), 2) != Math.floorMod(busyBook.hashCode(), 2))
+                .findFirst()
+                .orElseThrow();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherDone = new CountDownLatch(1);
+
+        try {
+            lanes.dispatch(busyBook, () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            lanes.dispatch(busyBook, () -> { });
+
+            // When: An event for a book on another lane comes in
+            lanes.dispatch(otherBook, otherDone::countDown);
+
+            // Then: It is handled right away, while the busy lane reports its backlog
+            assertThat(otherDone.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(meterRegistry.get("bookify.events.lane.queue").gauges())
+                    .anyMatch(gauge -> gauge.value() == 1);
+        } finally {
+            release.countDown();
+            lanes.destroy();
+        }
+    }
+
+    @Test
+    void dispatchAsync_holdsBackTheBooksNextTaskUntilTheWorkOfThePreviousIsDone() throws Exception {
+        // Given: A single lane, and a task for a book that hands its work to a batch still pending
+        BookEventLanes lanes = new BookEventLanes(1, new SimpleMeterRegistry());
+        UUID book = UUID.randomUUID();
+        UUID otherBook = UUID.randomUUID();
+        CompletableFuture<Void> batch = new CompletableFuture<>();
+        List<String> seen = new CopyOnWriteArrayList<>();
+        CountDownLatch otherDone = new CountDownLatch(1);
+        CountDownLatch bookDone = new CountDownLatch(1);
+
+        try {
+            lanes.dispatchAsync(book, () -> {
+                seen.add("first");
+                return batch;
+            });
+
+            // When: Another task for the book and one for another book on the same lane come in
+            lanes.dispatch(book, () -> {
+                seen.add("second");
+                bookDone.countDown();
+            });
+            lanes.dispatch(otherBook, () -> {
+                seen.add("other");
+                otherDone.countDown();
+            });
+
+            // Then: The other book is handled, while the book's next task waits for the batch
+            assertThat(otherDone.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(bookDone.await(100, TimeUnit.MILLISECONDS)).isFalse();
+            assertThat(seen).containsExactly("first", "other");
+
+            // And: Runs once the batch is done
+            batch.complete(null);
+            assertThat(bookDone.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(seen).containsExactly("first", "other", "second");
+        } finally {
+            lanes.destroy();
+        }
+    }
+
+    @Test
+    void oldestTakenOnAt_reportsATaskUntilItsWorkIsDone() throws Exception {
+        // Given: Idle lanes
+        BookEventLanes lanes = new BookEventLanes(2, new SimpleMeterRegistry());
+        CompletableFuture<Void> batch = new CompletableFuture<>();
+        CountDownLatch started = new CountDownLatch(1);
+
+        try {
+            assertThat(lanes.oldestTakenOnAt()).isNull();
+
+            // When: A task hands its work to a batch still pending
+            Instant before = Instant.now();
+            lanes.dispatchAsync(UUID.randomUUID(), () -> {
+                started.countDown();
+                return batch;
+            });
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // Then: The lanes report it as taken on, until the batch is done
+            assertThat(lanes.oldestTakenOnAt()).isNotNull().isAfterOrEqualTo(before);
+            batch.complete(null);
+            assertThat(lanes.oldestTakenOnAt()).isNull();
+        } finally {
+            lanes.destroy();
+        }
+    }
+}
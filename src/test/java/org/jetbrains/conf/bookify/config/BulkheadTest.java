@@ -0,0 +1,128 @@
+package org.jetbrains.conf.bookify.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jetbrains.conf.bookify.DbConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.assertj.MockMvcTester;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(DbConfiguration.class)
+@TestPropertySource(properties = {
+        "bookify.bulkheads.listeners.pool-size=2",
+        "bookify.bulkheads.listeners.timeout-millis=250",
+        "bookify.bulkheads.read-api.timeout-millis=250"
+})
+@ActiveProfiles("test")
+class BulkheadTest {
+
+    @Autowired
+    private MockMvcTester mockMvc;
+
+    @Autowired
+    private BulkheadDataSource dataSource;
+
+    @Autowired
+    private JdbcConcurrencyLimits jdbcConcurrencyLimits;
+
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private AsyncTaskExecutor applicationTaskExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void connections_comeFromThePoolOfTheCurrentBulkhead() throws Exception {
+        // Given: A thread working for the read API
+        try (Bulkhead.Scope ignored = Bulkhead.READ_API.enter()) {
+            // When: It gets a connection
+            try (Connection connection = dataSource.getConnection()) {
+                // Then: The connection is one of the read pool's
+                assertThat(connection.isValid(1)).isTrue();
+                assertThat(dataSource.pool(Bulkhead.READ_API).getHikariPoolMXBean().getActiveConnections())
+                        .isEqualTo(1);
+            }
+        }
+
+        // And: The pool's metrics are tagged with its name
+        assertThat(meterRegistry.get("hikaricp.connections.acquire").tag("pool", "bookify-read-api").timer().count())
+                .isPositive();
+    }
+
+    @Test
+    void reads_areServed_whileTheListenersPoolIsExhausted() throws Exception {
+        // Given: All connections of the listeners taken
+        List<Connection> taken = new ArrayList<>();
+        try {
+            for (int i = 0; i < 2; i++) {
+                taken.add(dataSource.getConnection());
+            }
+            assertThatThrownBy(dataSource::getConnection).hasMessageContaining("bookify-listeners");
+
+            // When: A client lists the books
+            var result = mockMvc.get().uri("/api/books").exchange();
+
+            // Then: It is served from its own pool
+            assertThat(result).hasStatus(HttpStatus.OK);
+        } finally {
+            for (Connection connection : taken) {
+                connection.close();
+            }
+        }
+    }
+
+    @Test
+    void reads_areRefusedWithRetryAfter_whileAllPermitsOfTheirBulkheadAreTaken() throws Exception {
+        // Given: All permits of the read API taken
+        JdbcConcurrencyLimit limit = jdbcConcurrencyLimits.get(Bulkhead.READ_API);
+        int permits = dataSource.pool(Bulkhead.READ_API).getMaximumPoolSize();
+        int taken = 0;
+        try {
+            for (; taken < permits; taken++) {
+                assertThat(limit.tryAcquire()).isTrue();
+            }
+
+            // When: A client lists the books
+            var result = mockMvc.get().uri("/api/books").exchange();
+
+            // Then: It is told to come back later instead of failing in the pool
+            assertThat(result).hasStatus(HttpStatus.SERVICE_UNAVAILABLE);
+            assertThat(result).headers().hasValue("Retry-After", "5");
+        } finally {
+            for (int i = 0; i < taken; i++) {
+                limit.release();
+            }
+        }
+
+        // And: It is served once a permit is free
+        assertThat(mockMvc.get().uri("/api/books").exchange()).hasStatus(HttpStatus.OK);
+    }
+
+    @Test
+    void listenerTasks_runOnVirtualThreadsForTheListeners() throws Exception {
+        // When: The application task executor runs a task
+        var ranOn = applicationTaskExecutor.submit(
+                () -> Thread.currentThread().isVirtual() + " " + Bulkhead.current());
+
+        // Then: It runs on a virtual thread, working for the listeners
+        assertThat(ranOn.get(10, TimeUnit.SECONDS)).isEqualTo("true " + Bulkhead.LISTENERS);
+    }
+}
@@ -0,0 +1,124 @@
+package org.jetbrains.conf.bookify.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachingAuthenticationProviderTest {
+
+    private final AtomicInteger verifications = new AtomicInteger();
+
+    // Stands in for the password hash verification: "secret" is the only valid password
+    private final AuthenticationProvider verifier = new AuthenticationProvider() {
+        @Override
+        public Authentication authenticate(Authentication authentication) {
+            verifications.incrementAndGet();
+            if (!"secret".equals(authentication.getCredentials())) {
+                throw new BadCredentialsException("Bad credentials");
+            }
+            return UsernamePasswordAuthenticationToken.authenticated(authentication.getName(), null,
+                    AuthorityUtils.createAuthorityList("ROLE_LIBRARIAN"));
+        }
+
+        @Override
+        public boolean supports(Class<?> authentication) {
+            return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
+        }
+    };
+
+    @Test
+    void authenticate_verifiesRepeatedCredentialsOnce() {
+        // Given: A user that authenticated once
+        var provider = new CachingAuthenticationProvider(verifier, new AuthenticationCache(30, 100));
+        provider.authenticate(login("librarian", "secret"));
+
+        // When: The same credentials are presented again
+        Authentication result = provider.authenticate(login("librarian", "secret"));
+
+        // Then: They are not verified again, and the result carries the same roles
+        assertThat(verifications).hasValue(1);
+        assertThat(result).isNotNull();
+        assertThat(result.isAuthenticated()).isTrue();
+        assertThat(result.getName()).isEqualTo("librarian");
+        assertThat(AuthorityUtils.authorityListToSet(result.getAuthorities())).containsExactly("ROLE_LIBRARIAN");
+    }
+
+    @Test
+    void authenticate_alwaysVerifiesOtherPasswords() {
+        // Given: A user that authenticated once
+        var provider = new CachingAuthenticationProvider(verifier, new AuthenticationCache(30, 100));
+        provider.authenticate(login("librarian", "secret"));
+
+        // When: A wrong password is presented twice
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> provider.authenticate(login("librarian", "guess")))
+                    .isInstanceOf(BadCredentialsException.class);
+        }
+
+        // Then: Each attempt is verified
+        assertThat(verifications).hasValue(3);
+    }
+
+    @Test
+    void authenticate_verifiesAgainAfterEviction() {
+        // Given: A user that authenticated once
+        var cache = new AuthenticationCache(30, 100);
+        var provider = new CachingAuthenticationProvider(verifier, cache);
+        provider.authenticate(login("librarian", "secret"));
+
+        // When: The user is evicted, as on a password change
+        cache.evict("librarian");
+        provider.authenticate(login("librarian", "secret"));
+
+        // Then: The credentials are verified again
+        assertThat(verifications).hasValue(2);
+    }
+
+    @Test
+    void authenticate_doesNotCacheWithoutTimeToLive() {
+        // Given: A cache that is turned off
+        var provider = new CachingAuthenticationProvider(verifier, new AuthenticationCache(0, 100));
+
+        // When: The same credentials are presented twice
+        provider.authenticate(login("librarian", "secret"));
+        provider.authenticate(login("librarian", "secret"));
+
+        // Then: Both are verified
+        assertThat(verifications).hasValue(2);
+    }
+    @Test
+    void authenticate_answersConcurrentRepeatsFromTheCache() {
+        // Given: A user that authenticated once
+        var provider = new CachingAuthenticationProvider(verifier, new AuthenticationCache(30, 100));
+        provider.authenticate(login("librarian", "secret"));
+        AtomicInteger authenticated = new AtomicInteger();
+
+        // When: Many requests present the same credentials at once
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 1_000; i++) {
+                executor.submit(() -> {
+                    if (provider.authenticate(login("librarian", "secret")).isAuthenticated()) {
+                        authenticated.incrementAndGet();
+                    }
+                });
+            }
+        }
+
+        // Then: All of them are authenticated without verifying the password again
+        assertThat(authenticated).hasValue(1_000);
+        assertThat(verifications).hasValue(1);
+    }
+
+    private static Authentication login(String username, String password) {
+        return UsernamePasswordAuthenticationToken.unauthenticated(username, password);
+    }
+}
@@ -0,0 +1,80 @@
+package org.jetbrains.conf.bookify.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClientRateLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private final AtomicLong now = new AtomicLong(42 * SECOND);
+
+    @Test
+    void tryAcquire_allowsBurstThenRefusesUntilRefilled() {
+        // Given: 10 requests per second with a burst of 5
+        var limiter = new ClientRateLimiter(10, 5, 1024, now::get);
+
+        // When: A client sends 6 requests at once
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire("user:greedy")).isZero();
+        }
+        long wait = limiter.tryAcquire("user:greedy");
+
+        // Then: The sixth has to wait for one token, and gets it once that time has passed
+        assertThat(wait).isEqualTo(SECOND / 10);
+        now.addAndGet(wait);
+        assertThat(limiter.tryAcquire("user:greedy")).isZero();
+        assertThat(limiter.tryAcquire("user:greedy")).isPositive();
+    }
+
+    @Test
+    void tryAcquire_keepsClientsApart() {
+        // Given: A client that used its whole burst
+        var limiter = new ClientRateLimiter(1, 2, 65_536, now::get);
+        limiter.tryAcquire("address:192.0.2.1");
+        limiter.tryAcquire("address:192.0.2.1");
+        assertThat(limiter.tryAcquire("address:192.0.2.1")).isPositive();
+
+        // When / Then: Another client still has its own
+        assertThat(limiter.tryAcquire("address:192.0.2.2")).isZero();
+    }
+
+    @Test
+    void tryAcquire_neverAllowsMoreThanBurstUnderContention() throws Exception {
+        // Given: A burst of 100 and a clock that stands still
+        var limiter = new ClientRateLimiter(1, 100, 16, now::get);
+        var allowed = new AtomicInteger();
+        var start = new CountDownLatch(1);
+
+        // When: 16 threads race for 1000 tokens each
+        try (var executor = Executors.newFixedThreadPool(16)) {
+            for (int thread = 0; thread < 16; thread++) {
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 1000; i++) {
+                        if (limiter.tryAcquire("user:shared") == 0) {
+                            allowed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+
+        // Then: Exactly the burst got through
+        assertThat(allowed).hasValue(100);
+    }
+
+    @Test
+    void isEnabled_isFalseWithoutRate() {
+        assertThat(new ClientRateLimiter(0, 40, 16, now::get).isEnabled()).isFalse();
+        assertThat(new ClientRateLimiter(20, 40, 16, now::get).isEnabled()).isTrue();
+    }
+}
@@ -0,0 +1,79 @@
+package org.jetbrains.conf.bookify.config;
+
+import org.jetbrains.conf.bookify.DbConfiguration;
+import org.jetbrains.conf.bookify.events.BookAvailabilityCheckedEvent;
+import org.jetbrains.conf.bookify.events.BookBorrowRequestEvent;
+import org.jetbrains.conf.bookify.events.BookEvent;
+import org.jetbrains.conf.bookify.events.BookReturnedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.modulith.events.core.EventSerializer;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Switching back to JSON after book events were stored in the compact form.
+ */
+@SpringBootTest
+@Import(DbConfiguration.class)
+@TestPropertySource(properties = CompactEventSerializationConfiguration.SERIALIZATION + "=json")
+@ActiveProfiles("test")
+class CompactEventSerializationConfigurationTest {
+
+    @Autowired
+    private EventSerializer eventSerializer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void compactPublications_canBeReadAfterSwitchingToJson() {
+        // Given: Publications stored while the compact form was written
+        List<BookEvent> events = List.of(
+                new BookBorrowRequestEvent(UUID.randomUUID(), UUID.randomUUID()),
+                new BookAvailabilityCheckedEvent(UUID.randomUUID(), UUID.randomUUID(), true),
+                new BookReturnedEvent(UUID.randomUUID(), UUID.randomUUID()));
+        var compact = new CompactEventSerializationConfiguration.CompactEventSerializer(eventSerializer, true);
+        List<UUID> ids = new ArrayList<>();
+        for (BookEvent event : events) {
+            UUID id = UUID.randomUUID();
+            jdbcTemplate.update("""
+                    INSERT INTO event_publication (id, listener_id, event_type, serialized_event, publication_date)
+                    VALUES (?, 'serialization.test.listener', ?, ?, now())
+                    """, id, event.getClass().getName(), compact.serialize(event));
+            ids.add(id);
+        }
+
+        try {
+            // When: The application writes JSON now
+            // Then: New book events are stored as JSON
+            assertThat(eventSerializer.serialize(events.getFirst()).toString()).startsWith("{");
+
+            // And: The compact rows are read back as the events they were written for
+            for (int i = 0; i < events.size(); i++) {
+                BookEvent event = events.get(i);
+                String stored = jdbcTemplate.queryForObject(
+                        "SELECT serialized_event FROM event_publication WHERE id = ?", String.class, ids.get(i));
+                assertThat(stored).doesNotStartWith("{");
+                assertThat(eventSerializer.deserialize(stored, event.getClass())).isEqualTo(event);
+            }
+
+            // And: JSON rows are read as before
+            Object json = eventSerializer.serialize(events.getLast());
+            assertThat(eventSerializer.deserialize(json, BookReturnedEvent.class)).isEqualTo(events.getLast());
+        } finally {
+            for (UUID id : ids) {
+                jdbcTemplate.update("DELETE FROM event_publication WHERE id = ?", id);
+            }
+        }
+    }
+}
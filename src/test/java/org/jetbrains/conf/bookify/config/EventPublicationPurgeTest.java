@@ -0,0 +1,110 @@
+package org.jetbrains.conf.bookify.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jetbrains.conf.bookify.DbConfiguration;
+import org.jetbrains.conf.bookify.events.BookEventCodec;
+import org.jetbrains.conf.bookify.events.BookReturnedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Import(DbConfiguration.class)
+@TestPropertySource(properties = {
+        "bookify.events.retention-hours=0",
+        "bookify.events.purge.batch-size=2"
+})
+@ActiveProfiles("test")
+class EventPublicationPurgeTest {
+
+    @Autowired
+    private EventPublicationPurge purge;
+
+    @Autowired
+    private BookifySettingsConfig bookifySettingsConfig;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void purge_deletesCompletedPublications() throws Exception {
+        // Given: A publication that has been handled by all listeners
+        String serializedEvent = publishAndAwaitCompletion();
+
+        // When: The retention job runs
+        int purged = purge.purge();
+
+        // Then: The publication is gone, and the job reported its work
+        assertThat(purged).isPositive();
+        assertThat(countPublications(serializedEvent)).isZero();
+        assertThat(meterRegistry.get("bookify.events.purged").counter().count()).isPositive();
+        assertThat(meterRegistry.get("bookify.events.publications.size").gauge().value()).isPositive();
+    }
+
+    @Test
+    void purge_movesCompletedPublicationsToHistoryInArchiveMode() throws Exception {
+        // Given: Archive mode and a publication that has been handled by all listeners
+        bookifySettingsConfig.setEventsPurgeMode("archive");
+        String serializedEvent = publishAndAwaitCompletion();
+
+        try {
+            // When: The retention job runs
+            purge.purge();
+
+            // Then: The publication moved to the history table
+            assertThat(countPublications(serializedEvent)).isZero();
+            Integer archived = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM event_publication_history WHERE serialized_event = ?",
+                    Integer.class, serializedEvent);
+            assertThat(archived).isPositive();
+        } finally {
+            bookifySettingsConfig.setEventsPurgeMode("delete");
+            jdbcTemplate.update("DELETE FROM event_publication_history WHERE serialized_event = ?", serializedEvent);
+        }
+    }
+
+    private String publishAndAwaitCompletion() throws InterruptedException {
+        // A return of a book nobody knows completes without side effects
+        BookReturnedEvent event = new BookReturnedEvent(UUID.randomUUID(), UUID.randomUUID());
+        String serializedEvent = BookEventCodec.encode(event);
+        transactionTemplate.executeWithoutResult(status -> eventPublisher.publishEvent(event));
+
+        long startTime = System.currentTimeMillis();
+        while (countIncompletePublications(serializedEvent) > 0 && System.currentTimeMillis() - startTime < 5000) {
+            Thread.sleep(100);
+        }
+        assertThat(countIncompletePublications(serializedEvent)).isZero();
+        assertThat(countPublications(serializedEvent)).isPositive();
+        return serializedEvent;
+    }
+
+    private int countPublications(String serializedEvent) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM event_publication WHERE serialized_event = ?",
+                Integer.class, serializedEvent);
+    }
+
+    private int countIncompletePublications(String serializedEvent) {
+        return jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM event_publication WHERE completion_date IS NULL AND serialized_event = ?",
+                Integer.class, serializedEvent);
+    }
+}
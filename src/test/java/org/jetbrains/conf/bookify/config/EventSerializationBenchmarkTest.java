@@ -0,0 +1,85 @@
+package org.jetbrains.conf.bookify.config;
+
+import org.jetbrains.conf.bookify.DbConfiguration;
+import org.jetbrains.conf.bookify.events.BookAvailabilityCheckedEvent;
+import org.jetbrains.conf.bookify.events.BookBorrowRequestEvent;
+import org.jetbrains.conf.bookify.events.BookEvent;
+import org.jetbrains.conf.bookify.events.BookEventCodec;
+import org.jetbrains.conf.bookify.events.BookReturnedEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.modulith.events.core.EventSerializer;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bytes and time per publication of the compact event records against the JSON Spring Modulith writes.
+ *
+ * <p>Run with {@code -Dbookify.benchmarks=true}.</p>
+ */
+@SpringBootTest
+@Import(DbConfiguration.class)
+@TestPropertySource(properties = "bookify.events.serialization=json")
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "bookify.benchmarks", matches = "true")
+class EventSerializationBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(EventSerializationBenchmarkTest.class);
+
+    private static final int ROUNDS = 200_000;
+
+    @Autowired
+    private EventSerializer jsonSerializer;
+
+    @Test
+    void compactAgainstJson() {
+        // Given: The events written for every borrowing
+        List<BookEvent> events = List.of(
+                new BookBorrowRequestEvent(UUID.randomUUID(), UUID.randomUUID()),
+                new BookAvailabilityCheckedEvent(UUID.randomUUID(), UUID.randomUUID(), true),
+                new BookReturnedEvent(UUID.randomUUID(), UUID.randomUUID()));
+
+        for (BookEvent event : events) {
+            // When: Each is serialized and read back many times by both serializers
+            Result json = measure(event, e -> jsonSerializer.serialize(e).toString(),
+                    s -> jsonSerializer.deserialize(s, event.getClass()));
+            Result compact = measure(event, BookEventCodec::encode, s -> BookEventCodec.decode(s, event.getClass()));
+
+            log.info("{}: JSON {} bytes, {} ns per round trip; compact {} bytes, {} ns per round trip",
+                    event.getClass().getSimpleName(), json.bytes(), json.nanos(), compact.bytes(), compact.nanos());
+
+            // Then: The compact records are smaller
+            assertThat(compact.bytes()).isLessThan(json.bytes());
+        }
+    }
+
+    private static Result measure(BookEvent event, Function<BookEvent, String> serialize,
+                                  Function<String, Object> deserialize) {
+        String serialized = serialize.apply(event);
+        assertThat(deserialize.apply(serialized)).isEqualTo(event);
+        // Warm up before timing
+        for (int i = 0; i < ROUNDS; i++) {
+            deserialize.apply(serialize.apply(event));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            deserialize.apply(serialize.apply(event));
+        }
+        return new Result(serialized.getBytes(StandardCharsets.UTF_8).length, (System.nanoTime() - start) / ROUNDS);
+    }
+
+    private record Result(int bytes, long nanos) {
+    }
+}
@@ -0,0 +1,58 @@
+package org.jetbrains.conf.bookify.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JdbcConcurrencyLimitTest {
+
+    @Test
+    void tryAcquire_givesUpAfterTheTimeoutWhenAllPermitsAreTaken() throws Exception {
+        // Given: A limit of two, both taken
+        var limit = new JdbcConcurrencyLimit(Bulkhead.READ_API, 2, 50, new SimpleMeterRegistry());
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isTrue();
+
+        // When / Then: A third request gives up, and gets through once a permit is released
+        assertThat(limit.tryAcquire()).isFalse();
+        limit.release();
+        assertThat(limit.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void limit_neverRunsMoreTasksAtOnceThanPermits() throws Exception {
+        // Given: A limit of four, and a thousand virtual threads that want to work with the database
+        var meterRegistry = new SimpleMeterRegistry();
+        var limit = new JdbcConcurrencyLimit(Bulkhead.LISTENERS, 4, 50, meterRegistry);
+        var running = new AtomicInteger();
+        var mostRunning = new AtomicInteger();
+        var done = new CountDownLatch(1000);
+
+        // When: They all run at once
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 1000; i++) {
+                executor.execute(limit.limit(() -> {
+                    mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                    done.countDown();
+                }));
+            }
+        }
+
+        // Then: No more than four ran at the same time, and every one of them ran
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(mostRunning.get()).isLessThanOrEqualTo(4);
+        assertThat(meterRegistry.get("bookify.jdbc.permits.wait").timer().count()).isEqualTo(1000);
+    }
+}
@@ -0,0 +1,133 @@
+package org.jetbrains.conf.bookify.config;
+
+import org.jetbrains.conf.bookify.DbConfiguration;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput and p99 latency of blocking JDBC reads under many concurrent clients, with requests handled on
+ * Tomcat's platform thread pool as before, and on virtual threads under the {@link JdbcConcurrencyLimit}.
+ * Compare the two logged lines.
+ *
+ * <p>Run with {@code -Dbookify.benchmarks=true}.</p>
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(DbConfiguration.class)
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "bookify.benchmarks", matches = "true")
+class RequestThreadingBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestThreadingBenchmarkTest.class);
+
+    private static final int CLIENTS = 1_000;
+    private static final long WARMUP_MILLIS = 3_000;
+    private static final long DURATION_MILLIS = 10_000;
+    private static final String[] PATHS = {
+            "/api/books/search?name=Lord",
+            "/api/members/b0eebc99-9c0b-4ef8-bb6d-6bb9bd380a13",
+            "/api/members/search?name=bob"
+    };
+
+    @Nested
+    @TestPropertySource(properties = "spring.threads.virtual.enabled=false")
+    class PlatformThreads {
+
+        @Value("${local.server.port}")
+        private int port;
+
+        @Test
+        void load() {
+            report("platform threads", drive(port));
+        }
+    }
+
+    @Nested
+    @TestPropertySource(properties = "spring.threads.virtual.enabled=true")
+    class VirtualThreads {
+
+        @Value("${local.server.port}")
+        private int port;
+
+        @Test
+        void load() {
+            report("virtual threads", drive(port));
+        }
+    }
+
+    private static void report(String model, Load load) {
+        log.info("{}: {} clients, {} requests/s, p50 {} ms, p99 {} ms, {} failed", model, CLIENTS,
+                "%.0f".formatted(load.requests() * 1000.0 / DURATION_MILLIS),
+                "%.1f".formatted(load.percentile(0.50) / 1e6), "%.1f".formatted(load.percentile(0.99) / 1e6),
+                load.failed());
+        assertThat(load.requests()).isPositive();
+    }
+
+    private static Load drive(int port) {
+        // Given: Clients that each send one request after the other
+        var latencies = new ConcurrentLinkedQueue<Long>();
+        var failed = new AtomicInteger();
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.MILLISECONDS.toNanos(WARMUP_MILLIS);
+        long until = measureFrom + TimeUnit.MILLISECONDS.toNanos(DURATION_MILLIS);
+
+        // When: They all hammer the read endpoints for a while
+        try (var http = HttpClient.newHttpClient()) {
+            try (var clients = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int client = 0; client < CLIENTS; client++) {
+                    int first = client;
+                    clients.submit(() -> {
+                        for (int i = first; System.nanoTime() - until < 0; i++) {
+                            var request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + PATHS[i % PATHS.length]))
+                                    .GET()
+                                    .build();
+                            long sent = System.nanoTime();
+                            int status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                            long received = System.nanoTime();
+                            if (sent - measureFrom >= 0) {
+                                latencies.add(received - sent);
+                                if (status != 200) {
+                                    failed.incrementAndGet();
+                                }
+                            }
+                        }
+                        return null;
+                    });
+                }
+            }
+        }
+
+        // Then: Everything received in the measured window counts
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new Load(sorted, failed.get());
+    }
+
+    private record Load(long[] latencies, int failed) {
+
+        int requests() {
+            return latencies.length;
+        }
+
+        long percentile(double percentile) {
+            return latencies.length == 0 ? 0 : latencies[(int) Math.min(latencies.length - 1, latencies.length * percentile)];
+        }
+    }
+}
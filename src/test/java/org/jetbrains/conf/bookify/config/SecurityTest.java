@@ -1,5 +1,6 @@
 package org.jetbrains.conf.bookify.config;
 
+import com.jayway.jsonpath.JsonPath;
 import org.jetbrains.conf.bookify.DbConfiguration;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -9,6 +10,9 @@ import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.UserDetailsManager;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.assertj.MockMvcTester;
 
@@ -28,6 +32,12 @@ class SecurityTest {
     @Autowired
     private MockMvcTester mockMvc;
 
+    @Autowired
+    private UserDetailsManager userDetailsManager;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
     @Nested
     class UnauthorizedAccess {
 
@@ -205,4 +215,113 @@ class SecurityTest {
             assertThat(result).hasStatus(HttpStatus.OK);
         }
     }
+
+    @Nested
+    class CachedAuthentication {
+
+        private static final String CACHED_AUTH =
+                "Basic " + Base64.getEncoder().encodeToString("cachedlibrarian:password".getBytes());
+
+        @Test
+        void authorityChange_takesEffectOnNextRequest() {
+            // Given: A librarian whose credentials are cached after a first request
+            userDetailsManager.createUser(User.withUsername("cachedlibrarian")
+                    .password(passwordEncoder.encode("password"))
+                    .roles("LIBRARIAN")
+                    .build());
+
+            try {
+                assertThat(mockMvc.get().uri("/api/members/active").header("Authorization", CACHED_AUTH))
+                        .hasStatus(HttpStatus.OK);
+
+                // When: The user loses the librarian role
+                userDetailsManager.updateUser(User.withUsername("cachedlibrarian")
+                        .password(passwordEncoder.encode("password"))
+                        .roles("MEMBER")
+                        .build());
+
+                // Then: The cached authentication is not used anymore
+                assertThat(mockMvc.get().uri("/api/members/active").header("Authorization", CACHED_AUTH))
+                        .hasStatus(HttpStatus.FORBIDDEN);
+            } finally {
+                userDetailsManager.deleteUser("cachedlibrarian");
+            }
+        }
+
+        @Test
+        void deletedUser_isRejectedOnNextRequest() {
+            // Given: A librarian whose credentials are cached after a first request
+            userDetailsManager.createUser(User.withUsername("cachedlibrarian")
+                    .password(passwordEncoder.encode("password"))
+                    .roles("LIBRARIAN")
+                    .build());
+            assertThat(mockMvc.get().uri("/api/members/active").header("Authorization", CACHED_AUTH))
+                    .hasStatus(HttpStatus.OK);
+
+            // When: The user is deleted
+            userDetailsManager.deleteUser("cachedlibrarian");
+
+            // Then: The credentials are refused
+            assertThat(mockMvc.get().uri("/api/members/active").header("Authorization", CACHED_AUTH))
+                    .hasStatus(HttpStatus.UNAUTHORIZED);
+        }
+    }
+
+    @Nested
+    class AccessTokenAccess {
+
+        @Test
+        void bearerToken_grantsTheRolesOfTheLibrarian() {
+            // Given: A token issued for the librarian's credentials
+            String token = issueToken(LIBRARIAN_AUTH);
+
+            // When: Calling a librarian endpoint with the token only
+            var result = mockMvc.get()
+                    .uri("/api/members/active")
+                    .header("Authorization", "Bearer " + token);
+
+            // Then: The request is authorized
+            assertThat(result).hasStatus(HttpStatus.OK);
+        }
+
+        @Test
+        void issueToken_withInvalidCredentials_returnsUnauthorized() {
+            assertThat(mockMvc.post().uri("/api/auth/token").header("Authorization", INVALID_AUTH))
+                    .hasStatus(HttpStatus.UNAUTHORIZED);
+            assertThat(mockMvc.post().uri("/api/auth/token")).hasStatus(HttpStatus.UNAUTHORIZED);
+        }
+
+        @Test
+        void issueToken_withBearerToken_returnsForbidden() {
+            // Given: A valid token
+            String token = issueToken(LIBRARIAN_AUTH);
+
+            // When: Trying to renew it with itself
+            var result = mockMvc.post()
+                    .uri("/api/auth/token")
+                    .header("Authorization", "Bearer " + token);
+
+            // Then: Only passwords are exchanged for tokens
+            assertThat(result).hasStatus(HttpStatus.FORBIDDEN);
+        }
+
+        @Test
+        void invalidBearerToken_returnsUnauthorized() {
+            var result = mockMvc.get()
+                    .uri("/api/members/active")
+                    .header("Authorization", "Bearer " + issueToken(LIBRARIAN_AUTH) + "x");
+
+            assertThat(result).hasStatus(HttpStatus.UNAUTHORIZED);
+        }
+
+        private String issueToken(String basicAuth) {
+            var result = mockMvc.post()
+                    .uri("/api/auth/token")
+                    .header("Authorization", basicAuth)
+                    .exchange();
+            assertThat(result).hasStatus(HttpStatus.OK);
+            assertThat(result).bodyJson().extractingPath("$.token_type").isEqualTo("Bearer");
+            return JsonPath.read(result.getResponse().getContentAsString(), "$.access_token");
+        }
+    }
 }
@@ -0,0 +1,220 @@
+package org.jetbrains.conf.bookify.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jetbrains.conf.bookify.DbConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.UserDetailsManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.assertj.MockMvcTester;
+import org.springframework.test.web.servlet.assertj.MvcTestResult;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(DbConfiguration.class)
+@TestPropertySource(properties = {
+        "bookify.rate-limit.requests-per-second=1",
+        "bookify.rate-limit.burst=2",
+        "bookify.load-shedding.max-event-backlog=1000",
+        "server.forward-headers-strategy=framework"
+})
+@ActiveProfiles("test")
+class WriteThrottlingTest {
+
+    private static final String LIBRARIAN_AUTH = "Basic " + Base64.getEncoder().encodeToString("testlibrarian:password".getBytes());
+
+    @Autowired
+    private MockMvcTester mockMvc;
+
+    @Autowired
+    private LoadMonitor loadMonitor;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserDetailsManager userDetailsManager;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Test
+    void writes_beyondTheClientsBurst_areRefusedWithRetryAfter() {
+        // Given: An anonymous client that used up its burst of borrow requests
+        String borrow = "/api/borrowings/borrow?bookId=" + UUID.randomUUID() + "&memberId=" + UUID.randomUUID();
+        for (int i = 0; i < 2; i++) {
+            assertThat(status(mockMvc.post().uri(borrow).with(from("203.0.113.7")).exchange()))
+                    .isNotEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        }
+
+        // When: It sends one more
+        var result = mockMvc.post().uri(borrow).with(from("203.0.113.7")).exchange();
+
+        // Then: It is told to come back in a second, while other clients and reads are not affected
+        assertThat(result).hasStatus(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(result).headers().hasValue("Retry-After", "1");
+        assertThat(status(mockMvc.post().uri(borrow).with(from("203.0.113.8")).exchange()))
+                .isNotEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(mockMvc.get().uri("/api/books").with(from("203.0.113.7"))).hasStatus(HttpStatus.OK);
+        assertThat(meterRegistry.get("bookify.requests.shed").tag("reason", "rate-limit").counter().count())
+                .isPositive();
+    }
+
+    @Test
+    void writes_behindAProxy_areLimitedPerForwardedClient() {
+        // Given: A client behind a proxy that used up its burst of borrow requests
+        String borrow = "/api/borrowings/borrow?bookId=" + UUID.randomUUID() + "&memberId=" + UUID.randomUUID();
+        for (int i = 0; i < 2; i++) {
+            mockMvc.post().uri(borrow).with(from("10.0.0.1")).header("X-Forwarded-For", "198.51.100.1").exchange();
+        }
+        assertThat(mockMvc.post().uri(borrow).with(from("10.0.0.1")).header("X-Forwarded-For", "198.51.100.1"))
+                .hasStatus(HttpStatus.TOO_MANY_REQUESTS);
+
+        // When: Another client sends a write through the same proxy
+        var result = mockMvc.post().uri(borrow).with(from("10.0.0.1")).header("X-Forwarded-For", "198.51.100.2")
+                .exchange();
+
+        // Then: It has a bucket of its own
+        assertThat(status(result)).isNotEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+    }
+
+    @Test
+    void failedPasswordAttempts_areThrottled() {
+        // Given: A client that used up its burst guessing passwords, claiming another user name each time
+        for (int i = 0; i < 2; i++) {
+            assertThat(mockMvc.post().uri("/api/auth/token").header("Authorization", basic("guessed" + i, "wrong"))
+                    .with(from("203.0.113.9")))
+                    .hasStatus(HttpStatus.UNAUTHORIZED);
+        }
+
+        // When: It guesses once more, as yet another user
+        var result = mockMvc.post().uri("/api/auth/token").header("Authorization", basic("guessed2", "wrong"))
+                .with(from("203.0.113.9"))
+                .exchange();
+
+        // Then: The guess is refused before the password is checked
+        assertThat(result).hasStatus(HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    @Test
+    void failedPasswordAttempts_doNotUseUpTheBucketOfTheUser() {
+        // Given: A client that used up its burst guessing the password of a librarian
+        String username = librarian();
+        try {
+            for (int i = 0; i < 3; i++) {
+                mockMvc.post().uri("/api/auth/token").header("Authorization", basic(username, "wrong"))
+                        .with(from("203.0.113.11")).exchange();
+            }
+
+            // When: The librarian writes from their own address
+            var result = mockMvc.post().uri("/api/auth/token").header("Authorization", basic(username, "password"))
+                    .with(from("203.0.113.12"))
+                    .exchange();
+
+            // Then: The write is served
+            assertThat(result).hasStatus(HttpStatus.OK);
+        } finally {
+            userDetailsManager.deleteUser(username);
+        }
+    }
+
+    @Test
+    void writes_ofAnAuthenticatedUser_areLimitedAcrossAddresses() {
+        // Given: A librarian that used up their burst, writing from another address each time
+        String username = librarian();
+        try {
+            for (int i = 0; i < 2; i++) {
+                assertThat(mockMvc.post().uri("/api/auth/token").header("Authorization", basic(username, "password"))
+                        .with(from("203.0.113." + (20 + i))))
+                        .hasStatus(HttpStatus.OK);
+            }
+
+            // When: They write once more, from yet another address
+            var result = mockMvc.post().uri("/api/auth/token").header("Authorization", basic(username, "password"))
+                    .with(from("203.0.113.22"))
+                    .exchange();
+
+            // Then: The write is refused, as theirs
+            assertThat(result).hasStatus(HttpStatus.TOO_MANY_REQUESTS);
+        } finally {
+            userDetailsManager.deleteUser(username);
+        }
+    }
+
+    @Test
+    void writes_whileTheEventBacklogIsTooLong_areShed() {
+        // Given: More incomplete event publications than the threshold
+        jdbcTemplate.update("""
+                INSERT INTO event_publication (id, listener_id, event_type, serialized_event, publication_date)
+                SELECT gen_random_uuid(), 'shedding.test.listener', 'shedding.test.Event', '{}', now()
+                FROM generate_series(1, 1001)
+                """);
+
+        try {
+            loadMonitor.sample();
+
+            // When: A librarian adds a book
+            var result = mockMvc.post()
+                    .uri("/api/books")
+                    .header("Authorization", LIBRARIAN_AUTH)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"name\":\"Shed Book\",\"isbn\":\"9780000000011\"}")
+                    .exchange();
+
+            // Then: The write is shed, but reads are still served
+            assertThat(result).hasStatus(HttpStatus.SERVICE_UNAVAILABLE);
+            assertThat(result).headers().hasValue("Retry-After", "5");
+            assertThat(mockMvc.get().uri("/api/books")).hasStatus(HttpStatus.OK);
+            assertThat(meterRegistry.get("bookify.requests.shed").tag("reason", "event-backlog").counter().count())
+                    .isPositive();
+        } finally {
+            jdbcTemplate.update("DELETE FROM event_publication WHERE listener_id = 'shedding.test.listener'");
+            loadMonitor.sample();
+        }
+
+        // And: Writes are accepted again once the backlog is worked off
+        assertThat(loadMonitor.overload()).isNull();
+    }
+
+    private String librarian() {
+        String username = "throttled-" + UUID.randomUUID();
+        userDetailsManager.createUser(User.withUsername(username)
+                .password(passwordEncoder.encode("password"))
+                .roles("LIBRARIAN")
+                .build());
+        return username;
+    }
+
+    private static String basic(String username, String password) {
+        return "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes());
+    }
+
+    private static int status(MvcTestResult result) {
+        return result.getResponse().getStatus();
+    }
+
+    private static RequestPostProcessor from(String address) {
+        return request -> {
+            request.setRemoteAddr(address);
+            return request;
+        };
+    }
+}
@@ -0,0 +1,106 @@
+package org.jetbrains.conf.bookify.events;
+
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class BookEventCodecTest {
+
+    @Test
+    void encode_roundTripsEveryBookEvent() {
+        // Given: One event of every supported type
+        List<BookEvent> events = List.of(
+                new BookBorrowRequestEvent(UUID.randomUUID(), UUID.randomUUID()),
+                new BookAvailabilityCheckedEvent(UUID.randomUUID(), UUID.randomUUID(), true),
+                new BookAvailabilityCheckedEvent(UUID.randomUUID(), UUID.randomUUID(), false),
+                new BookReturnedEvent(UUID.randomUUID(), UUID.randomUUID()),
+                new BookWaitlistedEvent(UUID.randomUUID(), UUID.randomUUID(), 42),
+                new BookHandOverDeclinedEvent(UUID.randomUUID(), UUID.randomUUID()));
+
+        for (BookEvent event : events) {
+            // When: The event is encoded and decoded again
+            String encoded = BookEventCodec.encode(event);
+
+            // Then: The same event comes back
+            assertThat(BookEventCodec.supports(event.getClass())).isTrue();
+            assertThat(BookEventCodec.decode(encoded, event.getClass())).isEqualTo(event);
+        }
+    }
+
+    @Test
+    void encode_writesFixedWidthRecords() {
+        // When: A borrow request is encoded
+        String encoded = BookEventCodec.encode(new BookBorrowRequestEvent(UUID.randomUUID(), UUID.randomUUID()));
+
+        // Then: It is a version byte, a type tag and two UUIDs
+        byte[] bytes = Base64.getDecoder().decode(encoded);
+        assertThat(bytes).hasSize(2 + 2 * 16);
+        assertThat(bytes[0]).isEqualTo(BookEventCodec.VERSION);
+    }
+
+    @Test
+    void encode_writesLessThanJson() {
+        // Given: The events written for every borrowing
+        JsonMapper jsonMapper = JsonMapper.builder().build();
+        List<BookEvent> events = List.of(
+                new BookBorrowRequestEvent(UUID.randomUUID(), UUID.randomUUID()),
+                new BookAvailabilityCheckedEvent(UUID.randomUUID(), UUID.randomUUID(), true),
+                new BookReturnedEvent(UUID.randomUUID(), UUID.randomUUID()));
+
+        for (BookEvent event : events) {
+            // When: The event is encoded
+            String encoded = BookEventCodec.encode(event);
+
+            // Then: The record is smaller than the JSON the registry would store otherwise
+            assertThat(encoded.getBytes(StandardCharsets.UTF_8))
+                    .hasSizeLessThan(jsonMapper.writeValueAsString(event).getBytes(StandardCharsets.UTF_8).length);
+        }
+    }
+
+    @Test
+    void isRecord_tellsRecordsFromJson() {
+        // Given: The same event as a record and as JSON
+        BookEvent event = new BookHandOverDeclinedEvent(UUID.randomUUID(), UUID.randomUUID());
+        String json = JsonMapper.builder().build().writeValueAsString(event);
+
+        // When/Then: Only the record is taken for one
+        assertThat(BookEventCodec.isRecord(BookEventCodec.encode(event))).isTrue();
+        assertThat(BookEventCodec.isRecord(json)).isFalse();
+        assertThat(BookEventCodec.isRecord("")).isFalse();
+    }
+
+    @Test
+    void decode_rejectsRecordsOfAnotherType() {
+        // Given: An encoded return
+        String encoded = BookEventCodec.encode(new BookReturnedEvent(UUID.randomUUID(), UUID.randomUUID()));
+
+        // When/Then: It cannot be read as a borrow request
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> BookEventCodec.decode(encoded, BookBorrowRequestEvent.class));
+    }
+
+    @Test
+    void decode_rejectsUnknownVersionsAndTruncatedRecords() {
+        // Given: A record of a future schema version, and a record cut short
+        byte[] bytes = Base64.getDecoder().decode(
+                BookEventCodec.encode(new BookReturnedEvent(UUID.randomUUID(), UUID.randomUUID())));
+        String truncated = Base64.getEncoder().encodeToString(Arrays.copyOf(bytes, bytes.length - 1));
+        bytes[0] = BookEventCodec.VERSION + 1;
+        String futureVersion = Base64.getEncoder().encodeToString(bytes);
+
+        // When/Then: Neither is decoded
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> BookEventCodec.decode(futureVersion, BookReturnedEvent.class))
+                .withMessageContaining("version");
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> BookEventCodec.decode(truncated, BookReturnedEvent.class));
+    }
+}
@@ -0,0 +1,81 @@
+package org.jetbrains.conf.bookify.events;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EventBatcherTest {
+
+    @Test
+    void submit_groupsEventsIntoBatchesOfAtMostTheMaximumSize() throws Exception {
+        // Given: A batcher with a long delay, so only the size closes a batch
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        EventBatcher<Integer> batcher = new EventBatcher<>("test-batcher", 10, Duration.ofSeconds(1), batches::add);
+
+        // When: More events than fit into two batches are submitted
+        List<CompletableFuture<Void>> futures = IntStream.range(0, 25).mapToObj(batcher::submit).toList();
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        // Then: Every event was processed once, in order, in batches no bigger than the maximum
+        assertThat(batches).allMatch(batch -> batch.size() <= 10);
+        assertThat(batches.stream().flatMap(List::stream).toList())
+                .containsExactlyElementsOf(IntStream.range(0, 25).boxed().toList());
+    }
+
+    @Test
+    void submit_processesAPartialBatchOnceTheDelayIsOver() throws Exception {
+        // Given: A batcher that would wait for many events
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        EventBatcher<Integer> batcher = new EventBatcher<>("test-batcher", 1_000, Duration.ofMillis(50), batches::add);
+
+        // When: A single event is submitted
+        batcher.submit(42).get(5, TimeUnit.SECONDS);
+
+        // Then: It was processed on its own after the delay
+        assertThat(batches).containsExactly(List.of(42));
+    }
+
+    @Test
+    void submit_failsEveryEventOfAFailedBatch() throws Exception {
+        // Given: A batcher whose processor fails
+        EventBatcher<Integer> batcher = new EventBatcher<>("test-batcher", 10, Duration.ofMillis(50), batch -> {
+            throw new IllegalStateException("boom");
+        });
+
+        // When: Events are submitted
+        CompletableFuture<Void> first = batcher.submit(1);
+        CompletableFuture<Void> second = batcher.submit(2);
+
+        // Then: All of them fail with the processor's exception
+        assertThat(first).failsWithin(Duration.ofSeconds(5)).withThrowableThat().withMessageContaining("boom");
+        assertThat(second).failsWithin(Duration.ofSeconds(5)).withThrowableThat().withMessageContaining("boom");
+    }
+
+    @Test
+    void close_processesThePendingEventsAndRefusesNewOnes() throws Exception {
+        // Given: A batcher holding events for a long delay
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        EventBatcher<Integer> batcher = new EventBatcher<>("test-batcher", 1_000, Duration.ofMinutes(1), batches::add);
+        CompletableFuture<Void> first = batcher.submit(1);
+        CompletableFuture<Void> second = batcher.submit(2);
+
+        // When: It is closed
+        batcher.close();
+
+        // Then: The pending events were processed without waiting for the delay
+        assertThat(first).isCompleted();
+        assertThat(second).isCompleted();
+        assertThat(batches).containsExactly(List.of(1, 2));
+
+        // And: Later events fail right away
+        assertThatThrownBy(() -> batcher.submit(3).join()).hasCauseInstanceOf(IllegalStateException.class);
+    }
+}
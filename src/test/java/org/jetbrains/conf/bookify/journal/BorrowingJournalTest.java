@@ -0,0 +1,113 @@
+package org.jetbrains.conf.bookify.journal;
+
+import org.jetbrains.conf.bookify.events.BookAvailabilityCheckedEvent;
+import org.jetbrains.conf.bookify.events.BookBorrowRequestEvent;
+import org.jetbrains.conf.bookify.events.BookEvent;
+import org.jetbrains.conf.bookify.events.BookReturnedEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+
+class BorrowingJournalTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void replay_returnsTheAppendedEventsFromAnyOffset() throws IOException {
+        // Given: A journal with one event of every type
+        List<BookEvent> events = List.of(
+                new BookBorrowRequestEvent(UUID.randomUUID(), UUID.randomUUID()),
+                new BookAvailabilityCheckedEvent(UUID.randomUUID(), UUID.randomUUID(), true),
+                new BookAvailabilityCheckedEvent(UUID.randomUUID(), UUID.randomUUID(), false),
+                new BookReturnedEvent(UUID.randomUUID(), UUID.randomUUID()));
+
+        try (BorrowingJournal journal = new BorrowingJournal(directory, 16)) {
+            // When: The events are appended
+            for (BookEvent event : events) {
+                journal.append(event);
+            }
+
+            // Then: They are read back in order, from the start or from the middle
+            assertThat(journal.replay(0).map(JournalEntry::event)).containsExactlyElementsOf(events);
+            assertThat(journal.replay(2).map(JournalEntry::offset)).containsExactly(2L, 3L);
+            assertThat(journal.replay(4)).isEmpty();
+        }
+    }
+
+    @Test
+    void append_rollsOverToNewSegmentsAndIsRecoveredOnReopen() throws IOException {
+        // Given: A journal with small segments, filled past several of them
+        List<BookEvent> events = IntStream.range(0, 10)
+                .mapToObj(i -> (BookEvent) new BookReturnedEvent(UUID.randomUUID(), UUID.randomUUID()))
+                .toList();
+        try (BorrowingJournal journal = new BorrowingJournal(directory, 4)) {
+            events.forEach(journal::append);
+        }
+
+        // Then: The records are spread over fixed-size segment files
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.filter(file -> file.getFileName().toString().endsWith(".journal")))
+                    .hasSize(3)
+                    .allSatisfy(file -> assertThat(Files.size(file)).isEqualTo(4L * BorrowingJournal.RECORD_BYTES));
+        }
+
+        // When: The journal is opened again
+        try (BorrowingJournal journal = new BorrowingJournal(directory, 4)) {
+            BookEvent next = new BookBorrowRequestEvent(UUID.randomUUID(), UUID.randomUUID());
+
+            // Then: Appending continues after the last record
+            assertThat(journal.endOffset()).isEqualTo(10);
+            assertThat(journal.append(next)).isEqualTo(10);
+            assertThat(journal.replay(3).map(JournalEntry::event))
+                    .containsExactlyElementsOf(Stream.concat(events.stream().skip(3), Stream.of(next)).toList());
+        }
+    }
+
+    @Test
+    void append_fromManyThreadsWhileFlushing_keepsEveryRecord() throws IOException {
+        // Given: A journal with small segments, so that appends keep rolling over
+        try (BorrowingJournal journal = new BorrowingJournal(directory, 64)) {
+            Set<Long> offsets = ConcurrentHashMap.newKeySet();
+
+            // When: A thousand virtual threads append at once while the journal is flushed
+            try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < 1000; i++) {
+                    executor.execute(() -> offsets.add(
+                            journal.append(new BookReturnedEvent(UUID.randomUUID(), UUID.randomUUID()))));
+                    if (i % 100 == 0) {
+                        executor.execute(journal::flush);
+                    }
+                }
+            }
+
+            // Then: Every append got an offset of its own, and all of them are read back
+            assertThat(offsets).hasSize(1000);
+            assertThat(journal.endOffset()).isEqualTo(1000);
+            assertThat(journal.replay(0).map(JournalEntry::offset).collect(Collectors.toSet())).isEqualTo(offsets);
+        }
+    }
+
+    @Test
+    void open_refusesADirectoryInUse() throws IOException {
+        // Given: An open journal
+        try (BorrowingJournal ignored = new BorrowingJournal(directory, 4)) {
+            // When/Then: A second journal cannot write to the same directory
+            assertThatIOException().isThrownBy(() -> new BorrowingJournal(directory, 4));
+        }
+    }
+}
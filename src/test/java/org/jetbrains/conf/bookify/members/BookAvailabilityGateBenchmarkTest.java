@@ -0,0 +1,104 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jetbrains.conf.bookify.DbConfiguration;
+import org.jetbrains.conf.bookify.events.BookAvailabilityCheckedEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Thundering herd of members asking for a book whose requests are refused, once with the gate still
+ * unaware of it and once after it has learned about the refusal.
+ *
+ * <p>Run with {@code -Dbookify.benchmarks=true}.</p>
+ */
+@SpringBootTest
+@Import(DbConfiguration.class)
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "bookify.benchmarks", matches = "true")
+class BookAvailabilityGateBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(BookAvailabilityGateBenchmarkTest.class);
+
+    private static final int HERD = 500;
+
+    @Autowired
+    private BorrowingService borrowingService;
+
+    @Autowired
+    private BookAvailabilityGate availabilityGate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void thunderingHerd() throws Exception {
+        // Given: A herd of members, and two books that do not exist
+        List<UUID> members = new ArrayList<>();
+        for (int i = 0; i < HERD; i++) {
+            UUID memberId = UUID.randomUUID();
+            jdbcTemplate.update("INSERT INTO member (id, name, email, password, enabled) VALUES (?, ?, ?, 'secret', true)",
+                    memberId, "Herd Member " + i, "herd" + i + "@test.com");
+            members.add(memberId);
+        }
+        UUID unknownBook = UUID.randomUUID();
+        UUID refusedBook = UUID.randomUUID();
+        availabilityGate.onBookAvailabilityChecked(new BookAvailabilityCheckedEvent(refusedBook, UUID.randomUUID(), false));
+
+        try {
+            // When: The herd asks for each book
+            Herd cold = stampede(unknownBook, members);
+            Herd warm = stampede(refusedBook, members);
+
+            log.info("Herd of {} without gate knowledge: {} ms, {} borrowings written", HERD, cold.millis(), cold.written());
+            log.info("Herd of {} turned away by the gate: {} ms, {} borrowings written", HERD, warm.millis(), warm.written());
+
+            // Then: Once the gate knows, nothing is written; without it, every request admitted before the
+            // first rejection lands is written. The timings are logged only, as they vary from run to run
+            assertThat(cold.written()).isPositive();
+            assertThat(warm.written()).isZero();
+        } finally {
+            // Wait for the rejections of the cold herd before cleaning up
+            Thread.sleep(2000);
+            jdbcTemplate.update("DELETE FROM book_borrow_request WHERE book_id IN (?, ?)", unknownBook, refusedBook);
+            jdbcTemplate.update("DELETE FROM borrowing WHERE requested_book_id IN (?, ?)", unknownBook, refusedBook);
+            for (UUID memberId : members) {
+                jdbcTemplate.update("DELETE FROM member WHERE id = ?", memberId);
+            }
+        }
+    }
+
+    private Herd stampede(UUID bookId, List<UUID> members) throws InterruptedException {
+        AtomicInteger written = new AtomicInteger();
+        long start = System.nanoTime();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (UUID memberId : members) {
+                executor.submit(() -> {
+                    try {
+                        borrowingService.borrowBook(bookId, memberId).ifPresent(b -> written.incrementAndGet());
+                    } catch (BookUnavailableException e) {
+                        // turned away
+                    }
+                });
+            }
+        }
+        return new Herd((System.nanoTime() - start) / 1_000_000, written.get());
+    }
+
+    private record Herd(long millis, int written) {
+    }
+}
@@ -0,0 +1,106 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jetbrains.conf.bookify.DbConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Archiving also moves the shared test data, so every test runs in a transaction that is rolled back.
+ */
+@SpringBootTest
+@Import(DbConfiguration.class)
+@TestPropertySource(properties = {
+        "bookify.archive.horizon-days=30",
+        "bookify.archive.batch-size=2"
+})
+@ActiveProfiles("test")
+@Transactional
+class BorrowingArchiverTest {
+
+    private static final UUID TEST_BOOK_1 = UUID.fromString("a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11");
+    private static final UUID TEST_BOOK_2 = UUID.fromString("a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a12");
+
+    @Autowired
+    private BorrowingArchiver archiver;
+
+    @Autowired
+    private BorrowingService borrowingService;
+
+    @Autowired
+    private BorrowingRepository borrowingRepository;
+
+    @Autowired
+    private MemberRepository memberRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void archive_movesOnlyLoansClosedBeforeHorizon() {
+        // Given: A member with an old returned loan, a recently returned loan and an open loan
+        Member member = new Member();
+        member.setName("Archive Member");
+        member.setEmail("archive@test.com");
+        member.setEnabled(true);
+        Member savedMember = memberRepository.save(member);
+
+        Borrowing old = borrowingRepository.save(new Borrowing(null, TEST_BOOK_1, TEST_BOOK_1, savedMember.getId(),
+                LocalDateTime.now().minusDays(100), LocalDateTime.now().minusDays(90), BorrowingStatus.RETURNED));
+        Borrowing recent = borrowingRepository.save(new Borrowing(null, TEST_BOOK_2, TEST_BOOK_2, savedMember.getId(),
+                LocalDateTime.now().minusDays(10), LocalDateTime.now().minusDays(5), BorrowingStatus.RETURNED));
+        Borrowing open = borrowingRepository.save(new Borrowing(null, TEST_BOOK_1, TEST_BOOK_1, savedMember.getId(),
+                LocalDateTime.now().minusDays(100), null, BorrowingStatus.APPROVED));
+        LocalDateTime requestedAt = LocalDateTime.now().minusDays(101).withNano(0);
+        jdbcTemplate.update("UPDATE borrowing SET requested_at = ? WHERE id = ?", requestedAt, old.getId());
+
+        // When: The archiver runs
+        int archived = archiver.archive();
+
+        // Then: Only the loan closed before the horizon left the hot table
+        assertThat(archived).isPositive();
+        assertThat(borrowingRepository.findById(old.getId())).isEmpty();
+        assertThat(borrowingRepository.findById(recent.getId())).isPresent();
+        assertThat(borrowingRepository.findById(open.getId())).isPresent();
+
+        // And: It kept the time it was requested
+        assertThat(jdbcTemplate.queryForObject("SELECT requested_at FROM borrowing_archive WHERE id = ?",
+                LocalDateTime.class, old.getId())).isEqualTo(requestedAt);
+
+        // And: The archived loan is still part of the member history
+        assertThat(borrowingService.getBorrowingById(old.getId()))
+                .get()
+                .extracting(Borrowing::getStatus)
+                .isEqualTo(BorrowingStatus.RETURNED);
+        assertThat(borrowingService.getBorrowingsForMember(savedMember.getId(), null, 50).items())
+                .extracting(Borrowing::getId)
+                .containsExactlyInAnyOrder(old.getId(), recent.getId(), open.getId());
+
+        // And: A second run has nothing left to move
+        assertThat(archiver.archive()).isZero();
+    }
+
+    @Test
+    void archive_keepsRejectedRequestsWithoutDatesReadable() {
+        // Given: A request that was rejected before it was ever approved
+        Borrowing rejected = borrowingRepository.save(new Borrowing(null, null, TEST_BOOK_1,
+                memberRepository.findAll().iterator().next().getId(), null, null, BorrowingStatus.REJECTED));
+
+        // When: The archiver runs
+        archiver.archive();
+
+        // Then: The request moved to the archive and can still be looked up
+        assertThat(borrowingRepository.findById(rejected.getId())).isEmpty();
+        assertThat(borrowingService.getBorrowingById(rejected.getId())).isPresent();
+    }
+}
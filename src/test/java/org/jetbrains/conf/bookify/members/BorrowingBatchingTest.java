@@ -0,0 +1,103 @@
+package org.jetbrains.conf.bookify.members;
+
+import com.jayway.jsonpath.JsonPath;
+import org.jetbrains.conf.bookify.DbConfiguration;
+import org.jetbrains.conf.bookify.events.BookAvailabilityCheckedEvent;
+import org.jetbrains.conf.bookify.events.BookBorrowRequestEvent;
+import org.jetbrains.conf.bookify.events.BookEventCodec;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.assertj.MockMvcTester;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(DbConfiguration.class)
+@TestPropertySource(properties = {
+        "bookify.events.batching.enabled=true",
+        "bookify.events.batching.max-size=10",
+        "bookify.events.batching.max-delay=10ms"
+})
+@ActiveProfiles("test")
+class BorrowingBatchingTest {
+
+    private static final UUID TEST_BOOK_ID = UUID.fromString("a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a14");
+
+    @Autowired
+    private MockMvcTester mockMvc;
+
+    @Autowired
+    private MemberRepository memberRepository;
+
+    @Autowired
+    private BorrowingRepository borrowingRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void borrowAndReturn_goThroughTheBatchedListeners() throws Exception {
+        // Given: A member
+        Member member = new Member();
+        member.setName("Batching Member");
+        member.setEmail("batching@test.com");
+        member.setEnabled(true);
+        UUID memberId = memberRepository.save(member).getId();
+
+        try {
+            // When: The member borrows a book
+            var borrowResult = mockMvc.post()
+                    .uri("/api/borrowings/borrow?bookId=" + TEST_BOOK_ID + "&memberId=" + memberId)
+                    .exchange();
+            UUID borrowingId = UUID.fromString(JsonPath.read(borrowResult.getResponse().getContentAsString(), "$.id"));
+
+            // Then: The batched listeners approve the request
+            assertThat(awaitStatusChange(borrowingId, BorrowingStatus.PENDING)).isEqualTo(BorrowingStatus.APPROVED);
+            assertThat(borrowingRepository.findById(borrowingId).orElseThrow().getBookId()).isEqualTo(TEST_BOOK_ID);
+
+            // And: Every publication is completed once its batch was committed
+            assertThat(awaitIncompletePublications(borrowingId)).isZero();
+
+            // Cleanup: The book goes back to the shelf
+            mockMvc.post().uri("/api/borrowings/return?bookId=" + TEST_BOOK_ID + "&memberId=" + memberId).exchange();
+        } finally {
+            for (Borrowing b : borrowingRepository.findByMemberId(memberId)) {
+                borrowingRepository.deleteById(b.getId());
+            }
+            memberRepository.deleteById(memberId);
+        }
+    }
+
+    private BorrowingStatus awaitStatusChange(UUID borrowingId, BorrowingStatus from) throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        BorrowingStatus status = from;
+        while (status == from && System.currentTimeMillis() - startTime < 5000) {
+            Thread.sleep(100);
+            status = borrowingRepository.findById(borrowingId).orElseThrow().getStatus();
+        }
+        return status;
+    }
+
+    private int awaitIncompletePublications(UUID borrowingId) throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        Integer incomplete = Integer.MAX_VALUE;
+        while (incomplete != null && incomplete > 0 && System.currentTimeMillis() - startTime < 5000) {
+            Thread.sleep(100);
+            incomplete = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM event_publication WHERE completion_date IS NULL AND serialized_event IN (?, ?)",
+                    Integer.class,
+                    BookEventCodec.encode(new BookBorrowRequestEvent(TEST_BOOK_ID, borrowingId)),
+                    BookEventCodec.encode(new BookAvailabilityCheckedEvent(TEST_BOOK_ID, borrowingId, true)));
+        }
+        return incomplete == null ? 0 : incomplete;
+    }
+}
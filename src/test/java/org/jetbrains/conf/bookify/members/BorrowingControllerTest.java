@@ -1,15 +1,22 @@
 package org.jetbrains.conf.bookify.members;
 
+import com.jayway.jsonpath.JsonPath;
 import org.jetbrains.conf.bookify.DbConfiguration;
+import org.jetbrains.conf.bookify.events.BookAvailabilityCheckedEvent;
+import org.jetbrains.conf.bookify.events.BookBorrowRequestEvent;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.assertj.MockMvcTester;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.Timestamp;
 import java.util.List;
 import java.util.UUID;
 
@@ -30,6 +37,15 @@ class BorrowingControllerTest {
     @Autowired
     private BorrowingRepository borrowingRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     // Test UUID for a book that exists in the initial data
     private static final UUID TEST_BOOK_ID = UUID.fromString("a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a14");
 
@@ -192,6 +208,50 @@ class BorrowingControllerTest {
                 .bodyJson();
     }
 
+    @Test
+    void testGetAllBorrowingsIsPagedByKey() throws Exception {
+        // The test data holds more borrowings than fit on a page of five
+        var firstPage = mockMvc.get()
+                .uri("/api/borrowings?size=5")
+                .exchange();
+
+        assertThat(firstPage)
+                .hasStatus(HttpStatus.OK)
+                .bodyJson()
+                .extractingPath("$.items")
+                .asArray()
+                .hasSize(5);
+
+        String next = JsonPath.read(firstPage.getResponse().getContentAsString(), "$.next");
+        assertThat(next).isNotNull();
+
+        // The next page continues strictly after the last id of the first page
+        var secondPage = mockMvc.get()
+                .uri("/api/borrowings?size=5&after=" + next)
+                .exchange();
+
+        List<String> secondPageIds = JsonPath.read(secondPage.getResponse().getContentAsString(), "$.items[*].id");
+        assertThat(secondPageIds)
+                .isNotEmpty()
+                .allMatch(id -> UUID.fromString(id).compareTo(UUID.fromString(next)) > 0);
+    }
+
+    @Test
+    void testGetAllBorrowingsFiltersByStatusAndMember() throws Exception {
+        UUID memberId = UUID.fromString("b0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11");
+
+        var result = mockMvc.get()
+                .uri("/api/borrowings?status=RETURNED&memberId=" + memberId);
+
+        assertThat(result)
+                .hasStatus(HttpStatus.OK)
+                .bodyJson()
+                .extractingPath("$.items[*].status")
+                .asArray()
+                .isNotEmpty()
+                .containsOnly("RETURNED");
+    }
+
     @Test
     void testIneligibleMemberCannotBorrow() throws Exception {
         // 1. Create a disabled member
@@ -219,4 +279,315 @@ class BorrowingControllerTest {
             memberRepository.deleteById(memberId);
         }
     }
+
+    @Test
+    void testUnavailableBookIsHandedToWaitlist() throws Exception {
+        // Given: Two members and a book that nobody else borrows in the tests
+        UUID bookId = UUID.fromString("a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a15");
+        UUID holderId = createMember("Waitlist Holder", "waitlist.holder@test.com");
+        UUID waiterId = createMember("Waitlist Waiter", "waitlist.waiter@test.com");
+
+        try {
+            // When: The first member borrows the book
+            mockMvc.post().uri("/api/borrowings/borrow?bookId=" + bookId + "&memberId=" + holderId).exchange();
+            UUID holding = borrowingRepository.findByMemberId(holderId).getFirst().getId();
+            assertThat(awaitStatusChange(holding, BorrowingStatus.PENDING)).isEqualTo(BorrowingStatus.APPROVED);
+
+            // And: The second member asks for it while it is out
+            mockMvc.post().uri("/api/borrowings/borrow?bookId=" + bookId + "&memberId=" + waiterId).exchange();
+            UUID waiting = borrowingRepository.findByMemberId(waiterId).getFirst().getId();
+
+            // Then: The request is queued instead of rejected
+            assertThat(awaitStatusChange(waiting, BorrowingStatus.PENDING)).isEqualTo(BorrowingStatus.WAITLISTED);
+
+            // And: Asking again keeps the same request instead of creating a new one
+            var retryResult = mockMvc.post().uri("/api/borrowings/borrow?bookId=" + bookId + "&memberId=" + waiterId);
+            assertThat(retryResult)
+                    .hasStatus(HttpStatus.OK)
+                    .bodyJson()
+                    .extractingPath("$.id")
+                    .isEqualTo(waiting.toString());
+            assertThat(borrowingRepository.findByMemberId(waiterId)).hasSize(1);
+
+            // When: The first member returns the book
+            mockMvc.post().uri("/api/borrowings/return?bookId=" + bookId + "&memberId=" + holderId).exchange();
+
+            // Then: The book goes straight to the waiting member
+            assertThat(awaitStatusChange(waiting, BorrowingStatus.WAITLISTED)).isEqualTo(BorrowingStatus.APPROVED);
+            assertThat(borrowingRepository.findById(waiting).orElseThrow().getBookId()).isEqualTo(bookId);
+
+            // Cleanup: The book goes back to the shelf
+            mockMvc.post().uri("/api/borrowings/return?bookId=" + bookId + "&memberId=" + waiterId).exchange();
+        } finally {
+            for (UUID memberId : List.of(holderId, waiterId)) {
+                for (Borrowing b : borrowingRepository.findByMemberId(memberId)) {
+                    borrowingRepository.deleteById(b.getId());
+                }
+                memberRepository.deleteById(memberId);
+            }
+        }
+    }
+
+    @Test
+    void testBookIsPassedOnWhenTheWaitlistHeadNoLongerWaits() throws Exception {
+        // Given: A book of its own, lent out, with two requests queued for it
+        UUID bookId = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO book (id, name, isbn, available) VALUES (?, 'Hand-over Book', '9780000000301', true)",
+                bookId);
+        UUID holderId = createMember("Hand-over Holder", "handover.holder@test.com");
+        UUID firstWaiterId = createMember("Hand-over First", "handover.first@test.com");
+        UUID secondWaiterId = createMember("Hand-over Second", "handover.second@test.com");
+
+        try {
+            mockMvc.post().uri("/api/borrowings/borrow?bookId=" + bookId + "&memberId=" + holderId).exchange();
+            UUID holding = borrowingRepository.findByMemberId(holderId).getFirst().getId();
+            assertThat(awaitStatusChange(holding, BorrowingStatus.PENDING)).isEqualTo(BorrowingStatus.APPROVED);
+            UUID first = waitlist(bookId, firstWaiterId);
+            UUID second = waitlist(bookId, secondWaiterId);
+
+            // And: The request at the head of the queue is closed while it waits
+            assertThat(borrowingRepository.rejectWaiting(List.of(first))).isEqualTo(1);
+
+            // When: The book is returned
+            mockMvc.post().uri("/api/borrowings/return?bookId=" + bookId + "&memberId=" + holderId).exchange();
+
+            // Then: It is passed on to the next request instead of staying out without a borrower
+            assertThat(awaitStatusChange(second, BorrowingStatus.WAITLISTED)).isEqualTo(BorrowingStatus.APPROVED);
+            assertThat(borrowingRepository.findById(second).orElseThrow().getBookId()).isEqualTo(bookId);
+            assertThat(borrowingRepository.findById(first).orElseThrow().getStatus()).isEqualTo(BorrowingStatus.REJECTED);
+        } finally {
+            jdbcTemplate.update("DELETE FROM book_waitlist WHERE book_id = ?", bookId);
+            jdbcTemplate.update("DELETE FROM book_borrow_request WHERE book_id = ?", bookId);
+            for (UUID memberId : List.of(holderId, firstWaiterId, secondWaiterId)) {
+                for (Borrowing b : borrowingRepository.findByMemberId(memberId)) {
+                    borrowingRepository.deleteById(b.getId());
+                }
+                memberRepository.deleteById(memberId);
+            }
+            jdbcTemplate.update("DELETE FROM book WHERE id = ?", bookId);
+        }
+    }
+
+    @Test
+    void testRedeliveredEventsDoNotKeepAReturnedBookOut() throws Exception {
+        // Given: A book of its own, lent out
+        UUID bookId = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO book (id, name, isbn, available) VALUES (?, 'Redelivered Book', '9780000000302', true)",
+                bookId);
+        UUID holderId = createMember("Redelivery Holder", "redelivery.holder@test.com");
+
+        try {
+            mockMvc.post().uri("/api/borrowings/borrow?bookId=" + bookId + "&memberId=" + holderId).exchange();
+            UUID holding = borrowingRepository.findByMemberId(holderId).getFirst().getId();
+            assertThat(awaitStatusChange(holding, BorrowingStatus.PENDING)).isEqualTo(BorrowingStatus.APPROVED);
+
+            // When: The request and its hand-over are delivered once more
+            redeliver(new BookBorrowRequestEvent(bookId, holding), new BookAvailabilityCheckedEvent(bookId, holding, true));
+
+            // Then: The request is not queued for the book it already has
+            assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM book_waitlist WHERE borrowing_id = ?",
+                    Integer.class, holding)).isZero();
+
+            // And: The book is back on the shelf once it is returned, even if the hand-over is delivered again
+            mockMvc.post().uri("/api/borrowings/return?bookId=" + bookId + "&memberId=" + holderId).exchange();
+            assertThat(awaitAvailable(bookId)).isTrue();
+            redeliver(new BookAvailabilityCheckedEvent(bookId, holding, true));
+            assertThat(awaitAvailable(bookId)).isTrue();
+            assertThat(borrowingRepository.findById(holding).orElseThrow().getStatus()).isEqualTo(BorrowingStatus.RETURNED);
+        } finally {
+            jdbcTemplate.update("DELETE FROM book_waitlist WHERE book_id = ?", bookId);
+            jdbcTemplate.update("DELETE FROM book_borrow_request WHERE book_id = ?", bookId);
+            for (Borrowing b : borrowingRepository.findByMemberId(holderId)) {
+                borrowingRepository.deleteById(b.getId());
+            }
+            memberRepository.deleteById(holderId);
+            jdbcTemplate.update("DELETE FROM book WHERE id = ?", bookId);
+        }
+    }
+
+    @Test
+    void testRetriedRequestsWithIdempotencyKeyAreReplayed() throws Exception {
+        // Given: A member and a book that nobody else borrows in the tests
+        UUID bookId = UUID.fromString("a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a13");
+        UUID memberId = createMember("Idempotent Member", "idempotent@test.com");
+        String borrowKey = UUID.randomUUID().toString();
+        String returnKey = UUID.randomUUID().toString();
+
+        try {
+            // When: The member borrows the book and the request goes through
+            var borrowResult = mockMvc.post()
+                    .uri("/api/borrowings/borrow?bookId=" + bookId + "&memberId=" + memberId)
+                    .header(BorrowingController.IDEMPOTENCY_KEY, borrowKey)
+                    .exchange();
+            String borrowingId = JsonPath.read(borrowResult.getResponse().getContentAsString(), "$.id");
+            assertThat(awaitStatusChange(UUID.fromString(borrowingId), BorrowingStatus.PENDING))
+                    .isEqualTo(BorrowingStatus.APPROVED);
+
+            // And: The client retries because it never saw the response
+            var retryResult = mockMvc.post()
+                    .uri("/api/borrowings/borrow?bookId=" + bookId + "&memberId=" + memberId)
+                    .header(BorrowingController.IDEMPOTENCY_KEY, borrowKey);
+
+            // Then: The original borrowing is replayed and no new one is created
+            assertThat(retryResult)
+                    .hasStatus(HttpStatus.OK)
+                    .bodyJson()
+                    .extractingPath("$.id")
+                    .isEqualTo(borrowingId);
+            assertThat(borrowingRepository.findByMemberId(memberId)).hasSize(1);
+
+            // And: Reusing the key for another request is refused
+            var reuseResult = mockMvc.post()
+                    .uri("/api/borrowings/borrow?bookId=" + TEST_BOOK_ID + "&memberId=" + memberId)
+                    .header(BorrowingController.IDEMPOTENCY_KEY, borrowKey);
+            assertThat(reuseResult).hasStatus(HttpStatus.UNPROCESSABLE_CONTENT);
+
+            // When: The return is retried as well
+            for (int attempt = 0; attempt < 2; attempt++) {
+                var returnResult = mockMvc.post()
+                        .uri("/api/borrowings/return?bookId=" + bookId + "&memberId=" + memberId)
+                        .header(BorrowingController.IDEMPOTENCY_KEY, returnKey);
+
+                // Then: Both attempts see the returned borrowing, not a 404 for the second one
+                assertThat(returnResult)
+                        .hasStatus(HttpStatus.OK)
+                        .bodyJson()
+                        .extractingPath("$.status")
+                        .isEqualTo(BorrowingStatus.RETURNED.name());
+            }
+        } finally {
+            for (Borrowing b : borrowingRepository.findByMemberId(memberId)) {
+                borrowingRepository.deleteById(b.getId());
+            }
+            memberRepository.deleteById(memberId);
+        }
+    }
+
+    @Test
+    void testIdempotencyKeysAreScopedByMemberAndLimitedInLength() throws Exception {
+        // Given: Two members, asking for books that do not exist so that no book is lent out
+        UUID firstBookId = UUID.randomUUID();
+        UUID secondBookId = UUID.randomUUID();
+        UUID firstMemberId = createMember("Key Owner", "key.owner@test.com");
+        UUID secondMemberId = createMember("Key Sharer", "key.sharer@test.com");
+        String sharedKey = "retry-1";
+
+        try {
+            // When: A key longer than the store accepts is sent
+            var tooLongResult = mockMvc.post()
+                    .uri("/api/borrowings/borrow?bookId=" + firstBookId + "&memberId=" + firstMemberId)
+                    .header(BorrowingController.IDEMPOTENCY_KEY, "k".repeat(IdempotencyKeyStore.MAX_KEY_LENGTH + 1));
+
+            // Then: The request is refused as malformed, without creating a borrowing
+            assertThat(tooLongResult).hasStatus(HttpStatus.BAD_REQUEST);
+            assertThat(borrowingRepository.findByMemberId(firstMemberId)).isEmpty();
+
+            // When: Two members happen to pick the same key for different requests
+            var firstResult = mockMvc.post()
+                    .uri("/api/borrowings/borrow?bookId=" + firstBookId + "&memberId=" + firstMemberId)
+                    .header(BorrowingController.IDEMPOTENCY_KEY, sharedKey);
+            var secondResult = mockMvc.post()
+                    .uri("/api/borrowings/borrow?bookId=" + secondBookId + "&memberId=" + secondMemberId)
+                    .header(BorrowingController.IDEMPOTENCY_KEY, sharedKey);
+
+            // Then: Both requests go through on their own
+            assertThat(firstResult).hasStatus(HttpStatus.OK);
+            assertThat(secondResult)
+                    .hasStatus(HttpStatus.OK)
+                    .bodyJson()
+                    .extractingPath("$.memberId")
+                    .isEqualTo(secondMemberId.toString());
+        } finally {
+            for (UUID memberId : List.of(firstMemberId, secondMemberId)) {
+                for (Borrowing b : borrowingRepository.findByMemberId(memberId)) {
+                    borrowingRepository.deleteById(b.getId());
+                }
+                memberRepository.deleteById(memberId);
+            }
+        }
+    }
+
+    @Test
+    void testRequestsForRefusedBookAreTurnedAway() throws Exception {
+        // Given: A request for a book that does not exist has been rejected
+        UUID nonExistentBookId = UUID.randomUUID();
+        UUID firstMemberId = createMember("Gate Member 1", "gate1@test.com");
+        UUID secondMemberId = createMember("Gate Member 2", "gate2@test.com");
+
+        try {
+            mockMvc.post().uri("/api/borrowings/borrow?bookId=" + nonExistentBookId + "&memberId=" + firstMemberId).exchange();
+            UUID rejected = borrowingRepository.findByMemberId(firstMemberId).getFirst().getId();
+            assertThat(awaitStatusChange(rejected, BorrowingStatus.PENDING)).isEqualTo(BorrowingStatus.REJECTED);
+
+            // When: Another member asks for the same book
+            var borrowResult = mockMvc.post()
+                    .uri("/api/borrowings/borrow?bookId=" + nonExistentBookId + "&memberId=" + secondMemberId);
+
+            // Then: The request is turned away at once, without creating a borrowing
+            assertThat(borrowResult)
+                    .hasStatus(HttpStatus.CONFLICT)
+                    .bodyJson()
+                    .extractingPath("$.bookId")
+                    .isEqualTo(nonExistentBookId.toString());
+            assertThat(borrowingRepository.findByMemberId(secondMemberId)).isEmpty();
+        } finally {
+            for (UUID memberId : List.of(firstMemberId, secondMemberId)) {
+                for (Borrowing b : borrowingRepository.findByMemberId(memberId)) {
+                    borrowingRepository.deleteById(b.getId());
+                }
+                memberRepository.deleteById(memberId);
+            }
+        }
+    }
+
+    private UUID createMember(String name, String email) {
+        Member member = new Member();
+        member.setName(name);
+        member.setEmail(email);
+        member.setEnabled(true);
+        return memberRepository.save(member).getId();
+    }
+
+    private UUID waitlist(UUID bookId, UUID memberId) throws InterruptedException {
+        mockMvc.post().uri("/api/borrowings/borrow?bookId=" + bookId + "&memberId=" + memberId).exchange();
+        UUID borrowingId = borrowingRepository.findByMemberId(memberId).getFirst().getId();
+        assertThat(awaitStatusChange(borrowingId, BorrowingStatus.PENDING)).isEqualTo(BorrowingStatus.WAITLISTED);
+        return borrowingId;
+    }
+
+    private void redeliver(Object... events) throws InterruptedException {
+        Timestamp publishedFrom = jdbcTemplate.queryForObject("SELECT now() - interval '1 second'", Timestamp.class);
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Object event : events) {
+                eventPublisher.publishEvent(event);
+            }
+        });
+        long startTime = System.currentTimeMillis();
+        while (System.currentTimeMillis() - startTime < 5000 && jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM event_publication WHERE completion_date IS NULL AND publication_date >= ?",
+                Integer.class, publishedFrom) > 0) {
+            Thread.sleep(100);
+        }
+    }
+
+    private boolean awaitAvailable(UUID bookId) throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        boolean available = false;
+        while (!available && System.currentTimeMillis() - startTime < 5000) {
+            Thread.sleep(100);
+            available = Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT available FROM book WHERE id = ?", Boolean.class, bookId));
+        }
+        return available;
+    }
+
+    private BorrowingStatus awaitStatusChange(UUID borrowingId, BorrowingStatus from) throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        BorrowingStatus status = from;
+        while (status == from && System.currentTimeMillis() - startTime < 5000) {
+            Thread.sleep(100);
+            status = borrowingRepository.findById(borrowingId).orElseThrow().getStatus();
+        }
+        return status;
+    }
 }
@@ -0,0 +1,125 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jetbrains.conf.bookify.DbConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.jetbrains.conf.bookify.QueryPlans.assertNoSeqScan;
+
+/**
+ * Guards the plans of the borrowing repository queries against regressions to sequential scans.
+ *
+ * <p>Every test seeds a large borrowing history inside the test transaction, so the data and the
+ * collected statistics are rolled back afterwards.</p>
+ */
+@SpringBootTest
+@Import(DbConfiguration.class)
+@ActiveProfiles("test")
+@Transactional
+class BorrowingQueryPlanTest {
+
+    private static final int MEMBERS = 20_000;
+    private static final int BOOKS = 5_000;
+    private static final int BORROWINGS = 200_000;
+
+    private static final String MEMBER_ID = "md5('plan-member-42')::uuid";
+    private static final String BOOK_ID = "md5('plan-book-42')::uuid";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seedLargeDataset() {
+        jdbcTemplate.update("""
+                INSERT INTO member (id, name, email, password, enabled)
+                SELECT md5('plan-member-' || g)::uuid, 'Plan Member ' || g, 'plan.member' || g || '@test.com', 'secret', true
+                FROM generate_series(1, ?) g
+                """, MEMBERS);
+        jdbcTemplate.update("""
+                INSERT INTO book (id, name, isbn, available)
+                SELECT md5('plan-book-' || g)::uuid, 'Plan Book ' || g, lpad(g::text, 13, '0'), true
+                FROM generate_series(1, ?) g
+                """, BOOKS);
+        // Roughly one loan in fifty is still open, the rest is returned history
+        jdbcTemplate.update("""
+                INSERT INTO borrowing (id, book_id, requested_book_id, member_id, borrow_date, return_date, status)
+                SELECT gen_random_uuid(),
+                       md5('plan-book-' || (g % ? + 1))::uuid,
+                       md5('plan-book-' || (g % ? + 1))::uuid,
+                       md5('plan-member-' || (g % ? + 1))::uuid,
+                       now() - (g % 3650) * interval '1 day',
+                       CASE WHEN g % 50 = 0 THEN NULL ELSE now() - (g % 3650) * interval '1 day' + interval '7 days' END,
+                       CASE WHEN g % 50 = 0 THEN 'APPROVED' ELSE 'RETURNED' END
+                FROM generate_series(1, ?) g
+                """, BOOKS, BOOKS, MEMBERS, BORROWINGS);
+        jdbcTemplate.execute("ANALYZE member");
+        jdbcTemplate.execute("ANALYZE book");
+        jdbcTemplate.execute("ANALYZE borrowing");
+        jdbcTemplate.execute("ANALYZE borrowing_archive");
+    }
+
+    @Test
+    void findByMemberId_usesIndex() {
+        assertNoSeqScan(jdbcTemplate, "borrowing",
+                "SELECT * FROM borrowing WHERE member_id = " + MEMBER_ID);
+    }
+
+    @Test
+    void findByMemberIdAndReturnDateIsNull_usesIndex() {
+        assertNoSeqScan(jdbcTemplate, "borrowing",
+                "SELECT * FROM borrowing WHERE member_id = " + MEMBER_ID + " AND return_date IS NULL");
+    }
+
+    @Test
+    void findByBookIdAndReturnDateIsNull_usesIndex() {
+        assertNoSeqScan(jdbcTemplate, "borrowing",
+                "SELECT * FROM borrowing WHERE book_id = " + BOOK_ID + " AND return_date IS NULL");
+    }
+
+    @Test
+    void searchByMember_usesIndex() {
+        assertNoSeqScan(jdbcTemplate, "borrowing",
+                BorrowingSearchRepositoryImpl.SELECT_BORROWING
+                        + " WHERE member_id = " + MEMBER_ID + " ORDER BY id LIMIT 51");
+    }
+
+    @Test
+    void searchByBookAndStatus_usesIndex() {
+        assertNoSeqScan(jdbcTemplate, "borrowing",
+                BorrowingSearchRepositoryImpl.SELECT_BORROWING
+                        + " WHERE status = 'APPROVED' AND requested_book_id = " + BOOK_ID + " ORDER BY id LIMIT 51");
+    }
+
+    @Test
+    void searchByBorrowDateRange_usesIndex() {
+        assertNoSeqScan(jdbcTemplate, "borrowing",
+                BorrowingSearchRepositoryImpl.SELECT_BORROWING
+                        + " WHERE borrow_date >= now() - interval '2 days' AND borrow_date < now() ORDER BY id LIMIT 51");
+    }
+
+    @Test
+    void findNewlyOverdue_usesIndex() {
+        assertNoSeqScan(jdbcTemplate, "borrowing", BorrowingRepository.FIND_NEWLY_OVERDUE
+                .replace(":borrowedBefore", "now() - interval '14 days'")
+                .replace(":limit", "500"));
+    }
+
+    @Test
+    void findClosedForArchive_usesIndex() {
+        assertNoSeqScan(jdbcTemplate, "borrowing", BorrowingArchiveRepositoryImpl.SELECT_CLOSED_FOR_ARCHIVE
+                .replace(":closedBefore", "now() - interval '3640 days'")
+                .replace(":limit", "1000"));
+    }
+
+    @Test
+    void searchOverdue_usesIndex() {
+        assertNoSeqScan(jdbcTemplate, "borrowing",
+                BorrowingSearchRepositoryImpl.SELECT_BORROWING + " WHERE status = 'OVERDUE' ORDER BY id LIMIT 51");
+    }
+}
@@ -3,6 +3,7 @@ package org.jetbrains.conf.bookify.members;
 import org.jetbrains.conf.bookify.DbConfiguration;
 import org.jetbrains.conf.bookify.config.BookifySettingsConfig;
 import org.jetbrains.conf.bookify.events.BookAvailabilityCheckedEvent;
+import org.jetbrains.conf.bookify.events.BookReturnedEvent;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,6 +19,7 @@ import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @SpringBootTest
 @Import(DbConfiguration.class)
@@ -40,6 +42,9 @@ class BorrowingServiceTest {
     @Autowired
     private BookifySettingsConfig bookifySettingsConfig;
 
+    @Autowired
+    private BookAvailabilityGate availabilityGate;
+
     // Test data UUIDs from migrations
     private static final UUID TEST_MEMBER_1 = UUID.fromString("b0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11");
     private static final UUID TEST_MEMBER_2 = UUID.fromString("b0eebc99-9c0b-4ef8-bb6d-6bb9bd380a12");
@@ -52,8 +57,7 @@ class BorrowingServiceTest {
     @AfterEach
     void cleanup() {
         // Clean up any test borrowings created during tests
-        List<Borrowing> allBorrowings = borrowingService.findAll();
-        for (Borrowing borrowing : allBorrowings) {
+        for (Borrowing borrowing : borrowingRepository.findAll()) {
             // Only delete test borrowings (those created during tests, identified by specific patterns)
             if (borrowing.getStatus() == BorrowingStatus.PENDING && borrowing.getBookId() == null) {
                 borrowingRepository.deleteById(borrowing.getId());
@@ -63,6 +67,27 @@ class BorrowingServiceTest {
 
     // ==================== Tests for borrowBook() ====================
 
+    @Test
+    void borrowBook_turnsAwayRequestsForABookKnownToBeRefused() {
+        // Given: A book whose requests the books module refused
+        UUID refusedBook = UUID.randomUUID();
+        availabilityGate.onBookAvailabilityChecked(new BookAvailabilityCheckedEvent(refusedBook, UUID.randomUUID(), false));
+
+        // When: Members ask for it
+        // Then: They are turned away without a borrowing being written
+        for (UUID memberId : List.of(TEST_MEMBER_1, TEST_MEMBER_2, TEST_MEMBER_3)) {
+            assertThatThrownBy(() -> borrowingService.borrowBook(refusedBook, memberId))
+                    .isInstanceOf(BookUnavailableException.class);
+        }
+        assertThat(borrowingRepository.findAll()).noneMatch(b -> refusedBook.equals(b.getRequestedBookId()));
+
+        // When: The book is returned
+        availabilityGate.onBookReturned(new BookReturnedEvent(refusedBook, TEST_MEMBER_1));
+
+        // Then: Requests for it are let through again
+        assertThat(availabilityGate.admits(refusedBook)).isTrue();
+    }
+
     @Test
     void borrowBook_successfulBorrowing_forEligibleMember() {
         // Given: Create a new eligible member (without overdue books)
@@ -577,16 +602,6 @@ class BorrowingServiceTest {
         assertThat(activeBorrowings).allMatch(b -> b.getReturnDate() == null);
     }
 
-    @Test
-    void findAll_returnsAllBorrowings() {
-        // When: Getting all borrowings
-        List<Borrowing> allBorrowings = borrowingService.findAll();
-
-        // Then: Returns all borrowings from test data
-        assertThat(allBorrowings).isNotEmpty();
-        assertThat(allBorrowings.size()).isGreaterThanOrEqualTo(15); // From V5 test data
-    }
-
     // ==================== Tests for isMemberEligibleToBorrow() ====================
 
     @Test
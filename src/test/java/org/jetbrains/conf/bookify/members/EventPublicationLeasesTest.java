@@ -0,0 +1,195 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jetbrains.conf.bookify.DbConfiguration;
+import org.jetbrains.conf.bookify.config.BookifySettingsConfig;
+import org.jetbrains.conf.bookify.events.LocalEventBacklog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Several recovery nodes sharing the stuck publications of one database. Every node is an
+ * {@link EventPublicationLeases} of its own, as it would be in the application context of each node.
+ */
+@SpringBootTest
+@Import(DbConfiguration.class)
+@ActiveProfiles("test")
+class EventPublicationLeasesTest {
+
+    private static final int PUBLICATIONS = 50;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BookifySettingsConfig bookifySettingsConfig;
+
+    private final List<UUID> publications = new ArrayList<>();
+
+    @BeforeEach
+    void insertStuckPublications() {
+        for (int i = 0; i < PUBLICATIONS; i++) {
+            UUID id = UUID.randomUUID();
+            jdbcTemplate.update("""
+                    INSERT INTO event_publication (id, listener_id, event_type, serialized_event, publication_date)
+                    VALUES (?, 'lease.test.listener', 'lease.test.Event', '{}', now() - interval '1 hour')
+                    """, id);
+            publications.add(id);
+        }
+    }
+
+    @AfterEach
+    void deletePublications() {
+        namedJdbcTemplate.update("DELETE FROM event_publication_lease WHERE publication_id IN (:ids)",
+                Map.of("ids", publications));
+        namedJdbcTemplate.update("DELETE FROM event_publication WHERE id IN (:ids)", Map.of("ids", publications));
+        publications.clear();
+    }
+
+    @Test
+    void claim_handsEveryPublicationToOneNodeOnly() throws Exception {
+        // Given: Two nodes that are alive
+        EventPublicationLeases first = node("node-1");
+        EventPublicationLeases second = node("node-2");
+
+        try (var executor = Executors.newFixedThreadPool(2)) {
+            // When: Both claim at the same time
+            CompletableFuture<Set<UUID>> firstClaim = CompletableFuture.supplyAsync(() -> ours(first.claim(1000)), executor);
+            CompletableFuture<Set<UUID>> secondClaim = CompletableFuture.supplyAsync(() -> ours(second.claim(1000)), executor);
+
+            // Then: Every publication went to exactly one of them
+            Set<UUID> both = new HashSet<>(firstClaim.get());
+            both.retainAll(secondClaim.get());
+            assertThat(both).isEmpty();
+            Set<UUID> all = new HashSet<>(firstClaim.get());
+            all.addAll(secondClaim.get());
+            assertThat(all).containsExactlyInAnyOrderElementsOf(publications);
+        } finally {
+            first.destroy();
+            second.destroy();
+        }
+    }
+
+    @Test
+    void claim_takesOverTheLeasesOfANodeThatLeft() {
+        // Given: A node holding leases on all publications
+        EventPublicationLeases crashing = node("node-crashing");
+        EventPublicationLeases survivor = node("node-survivor");
+        assertThat(ours(crashing.claim(1000))).containsExactlyInAnyOrderElementsOf(publications);
+
+        try {
+            // When: Another node claims while the first one is alive
+            // Then: It gets none of them
+            assertThat(ours(survivor.claim(1000))).isEmpty();
+
+            // When: The first node stops sending heartbeats
+            crashing.destroy();
+
+            // Then: Its leases are taken over, without counting an attempt for a claim that was never acted on
+            assertThat(ours(survivor.claim(1000))).containsExactlyInAnyOrderElementsOf(publications);
+            assertThat(attempts()).containsExactly(0);
+
+            // When: The survivor resubmits them
+            survivor.attempted(publications);
+
+            // Then: That counts as an attempt
+            assertThat(attempts()).containsExactly(1);
+        } finally {
+            survivor.destroy();
+        }
+    }
+
+    @Test
+    void claim_leavesPublicationsThatMayStillWaitOnALiveNode() {
+        // Given: A live node with events waiting on it since before the publications were made
+        AtomicReference<Instant> oldestTakenOnAt = new AtomicReference<>(Instant.now().minus(2, ChronoUnit.HOURS));
+        EventPublicationLeases busy = node("node-busy", oldestTakenOnAt::get);
+        EventPublicationLeases idle = node("node-idle");
+
+        try {
+            // When: Another node claims
+            // Then: It leaves the publications alone
+            assertThat(ours(idle.claim(1000))).isEmpty();
+
+            // When: The busy node worked through its queue
+            oldestTakenOnAt.set(null);
+            busy.heartbeat();
+
+            // Then: The publications are stuck, and get claimed
+            assertThat(ours(idle.claim(1000))).containsExactlyInAnyOrderElementsOf(publications);
+        } finally {
+            busy.destroy();
+            idle.destroy();
+        }
+    }
+
+    @Test
+    void deadLetterExhausted_movesPublicationsOutOfAttempts() {
+        // Given: Publications that used up their attempts and whose last lease ran out
+        namedJdbcTemplate.update("""
+                INSERT INTO event_publication_lease (publication_id, owner, leased_until, attempts)
+                SELECT id, 'node-gone', now() - interval '1 minute', :attempts FROM event_publication WHERE id IN (:ids)
+                """, Map.of("ids", publications, "attempts", bookifySettingsConfig.getRecoveryMaxAttempts()));
+        EventPublicationLeases node = node("node-cleaning");
+
+        try {
+            // When: A node dead-letters exhausted publications
+            int deadLettered = node.deadLetterExhausted();
+
+            // Then: They moved to the dead letters and are not claimed any more
+            assertThat(deadLettered).isGreaterThanOrEqualTo(PUBLICATIONS);
+            assertThat(ours(node.claim(1000))).isEmpty();
+            assertThat(namedJdbcTemplate.queryForObject("SELECT count(*) FROM event_dead_letter WHERE id IN (:ids)",
+                    Map.of("ids", publications), Integer.class)).isEqualTo(PUBLICATIONS);
+        } finally {
+            node.destroy();
+            namedJdbcTemplate.update("DELETE FROM event_dead_letter WHERE id IN (:ids)", Map.of("ids", publications));
+        }
+    }
+
+    private EventPublicationLeases node(String name) {
+        return node(name, () -> null);
+    }
+
+    private EventPublicationLeases node(String name, LocalEventBacklog backlog) {
+        EventPublicationLeases leases = new EventPublicationLeases(namedJdbcTemplate, bookifySettingsConfig,
+                backlog, name + "/" + UUID.randomUUID());
+        leases.heartbeat();
+        return leases;
+    }
+
+    private List<Integer> attempts() {
+        return namedJdbcTemplate.queryForList(
+                "SELECT DISTINCT attempts FROM event_publication_lease WHERE publication_id IN (:ids)",
+                Map.of("ids", publications), Integer.class);
+    }
+
+    private Set<UUID> ours(Set<UUID> claimed) {
+        Set<UUID> ours = new HashSet<>(claimed);
+        ours.retainAll(publications);
+        return ours;
+    }
+}
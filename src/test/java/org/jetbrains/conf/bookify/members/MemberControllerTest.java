@@ -1,5 +1,6 @@
 package org.jetbrains.conf.bookify.members;
 
+import com.jayway.jsonpath.JsonPath;
 import org.jetbrains.conf.bookify.DbConfiguration;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,16 +9,22 @@ import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.assertj.MockMvcTester;
 
 import java.util.Base64;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest
 @AutoConfigureMockMvc
 @Import(DbConfiguration.class)
+@TestPropertySource(properties = "bookify.members.bulk.batch-size=2")
 @ActiveProfiles("test")
 class MemberControllerTest {
 
@@ -26,6 +33,18 @@ class MemberControllerTest {
     @Autowired
     private MockMvcTester mockMvc;
 
+    @Autowired
+    private MemberRepository memberRepository;
+
+    @Autowired
+    private MemberService memberService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private MemberRegistrar memberRegistrar;
+
     @Test
     void testFetchAll() throws Exception {
         var membersRequestResult = mockMvc.get().uri("/api/members");
@@ -44,6 +63,58 @@ class MemberControllerTest {
                 .bodyJson();
     }
 
+    @Test
+    void testFetchAllActiveIsPagedByKey() throws Exception {
+        // Given: At least two active members
+        Member first = memberRepository.save(termMember("first.active@paging.test", true));
+        Member second = memberRepository.save(termMember("second.active@paging.test", true));
+
+        try {
+            // When: Fetching the first page of one active member
+            var firstPage = mockMvc.get()
+                    .uri("/api/members/active?size=1")
+                    .header("Authorization", LIBRARIAN_AUTH)
+                    .exchange();
+
+            // Then: The page holds one member, and there are more to fetch
+            assertThat(firstPage)
+                    .hasStatus(HttpStatus.OK)
+                    .bodyJson()
+                    .extractingPath("$.items")
+                    .asArray()
+                    .hasSize(1);
+            String next = JsonPath.read(firstPage.getResponse().getContentAsString(), "$.next");
+            assertThat(next).isNotNull();
+        } finally {
+            memberRepository.deleteAllById(List.of(first.getId(), second.getId()));
+        }
+    }
+
+    @Test
+    void testCountMembers() throws Exception {
+        // When: Counting all and active members
+        var allCount = mockMvc.get().uri("/api/members/count").exchange();
+        var activeCount = mockMvc.get()
+                .uri("/api/members/active/count")
+                .header("Authorization", LIBRARIAN_AUTH)
+                .exchange();
+
+        // Then: The counts include the test data, and no more members are active than exist
+        assertThat(allCount).hasStatus(HttpStatus.OK);
+        assertThat(activeCount).hasStatus(HttpStatus.OK);
+        Integer all = JsonPath.read(allCount.getResponse().getContentAsString(), "$.count");
+        Integer active = JsonPath.read(activeCount.getResponse().getContentAsString(), "$.count");
+        assertThat(all).isGreaterThanOrEqualTo(3);
+        assertThat(active).isPositive().isLessThanOrEqualTo(all);
+    }
+
+    @Test
+    void testCountActiveMembersRequiresLibrarian() {
+        var result = mockMvc.get().uri("/api/members/active/count");
+
+        assertThat(result).hasStatus(HttpStatus.UNAUTHORIZED);
+    }
+
     @Test
     void testAddMember() throws Exception {
         // Add a member
@@ -57,6 +128,142 @@ class MemberControllerTest {
                 .hasStatus(HttpStatus.CREATED);
     }
 
+    @Test
+    void testAddMemberStoresPasswordHash() throws Exception {
+        // When: A member is added with a plain-text password
+        var addMemberResult = mockMvc.post()
+                .uri("/api/members")
+                .header("Authorization", LIBRARIAN_AUTH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Hashed Member\",\"email\":\"hashed@example.com\",\"password\":\"password123\"}")
+                .exchange();
+
+        // Then: Only a hash of the password is stored
+        String id = JsonPath.read(addMemberResult.getResponse().getContentAsString(), "$.id");
+        try {
+            String stored = memberRepository.findById(UUID.fromString(id)).orElseThrow().getPassword();
+            assertThat(stored).isNotEqualTo("password123");
+            assertThat(passwordEncoder.matches("password123", stored)).isTrue();
+        } finally {
+            memberRepository.deleteById(UUID.fromString(id));
+        }
+    }
+
+    @Test
+    void testAddMembersInBulk() throws Exception {
+        // Given: Two new members and one that already exists
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        String members = """
+                [{"id":"%s","name":"Bulk One","email":"bulk.one@example.com","password":"secret1"},
+                 {"id":"b0eebc99-9c0b-4ef8-bb6d-6bb9bd380a12","name":"Jane Again","email":"jane@example.com","password":"secret2"},
+                 {"id":"%s","name":"Bulk Two","email":"bulk.two@example.com","password":"secret3"}]
+                """.formatted(first, second);
+
+        try {
+            // When: A librarian registers them in bulk
+            var result = mockMvc.post()
+                    .uri("/api/members/bulk")
+                    .header("Authorization", LIBRARIAN_AUTH)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(members)
+                    .exchange();
+
+            // Then: One result line per member comes back, in request order
+            assertThat(result).hasStatus(HttpStatus.OK);
+            List<String> lines = result.getResponse().getContentAsString().lines().toList();
+            assertThat(lines).hasSize(3);
+            assertThat(lines).extracting(line -> JsonPath.<String>read(line, "$.status"))
+                    .containsExactly("CREATED", "DUPLICATE", "CREATED");
+            assertThat(lines).extracting(line -> JsonPath.<Integer>read(line, "$.index"))
+                    .containsExactly(0, 1, 2);
+
+            // And: The new members are stored with hashed passwords, the existing one is untouched
+            assertThat(passwordEncoder.matches("secret1",
+                    memberRepository.findById(first).orElseThrow().getPassword())).isTrue();
+            assertThat(memberRepository.findById(UUID.fromString("b0eebc99-9c0b-4ef8-bb6d-6bb9bd380a12"))
+                    .orElseThrow().getEmail()).isEqualTo("jane.smith@example.com");
+        } finally {
+            memberRepository.deleteById(first);
+            memberRepository.deleteById(second);
+        }
+    }
+
+    @Test
+    void testAddMembersInBulkReportsEveryChunkInInputOrder() throws Exception {
+        // Given: More members than fit into two chunks
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Member member = new Member();
+            member.setName("Chunked Member " + i);
+            member.setEmail("chunked" + i + "@chunks.test");
+            member.setPassword("password-" + i);
+            members.add(member);
+        }
+        List<List<MemberRegistrar.RegistrationResult>> chunks = new ArrayList<>();
+
+        try {
+            // When: They are registered in bulk
+            memberRegistrar.register(members, chunks::add);
+
+            // Then: Each chunk is reported once stored, and together they cover the members in input order
+            assertThat(chunks).extracting(List::size).containsExactly(2, 2, 1);
+            List<MemberRegistrar.RegistrationResult> results = chunks.stream().flatMap(List::stream).toList();
+            assertThat(results).extracting(MemberRegistrar.RegistrationResult::index).containsExactly(0, 1, 2, 3, 4);
+            assertThat(results).extracting(MemberRegistrar.RegistrationResult::status).containsOnly("CREATED");
+
+            // And: Every password was hashed
+            for (MemberRegistrar.RegistrationResult result : results) {
+                assertThat(passwordEncoder.matches("password-" + result.index(),
+                        memberRepository.findById(result.id()).orElseThrow().getPassword())).isTrue();
+            }
+        } finally {
+            members.forEach(member -> memberRepository.deleteById(member.getId()));
+        }
+    }
+
+    @Test
+    void testAddMembersInBulkReportsInvalidMembers() throws Exception {
+        // Given: A new member and one whose password is too long to be hashed
+        UUID valid = UUID.randomUUID();
+        UUID invalid = UUID.randomUUID();
+        String members = """
+                [{"id":"%s","name":"Bulk Valid","email":"bulk.valid@example.com","password":"secret1"},
+                 {"id":"%s","name":"Bulk Invalid","email":"bulk.invalid@example.com","password":"%s"}]
+                """.formatted(valid, invalid, "x".repeat(100));
+
+        try {
+            // When: A librarian registers them in bulk
+            var result = mockMvc.post()
+                    .uri("/api/members/bulk")
+                    .header("Authorization", LIBRARIAN_AUTH)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(members)
+                    .exchange();
+
+            // Then: The valid member is registered, the invalid one fails with a reason
+            assertThat(result).hasStatus(HttpStatus.OK);
+            List<String> lines = result.getResponse().getContentAsString().lines().toList();
+            assertThat(lines).extracting(line -> JsonPath.<String>read(line, "$.status"))
+                    .containsExactly("CREATED", "FAILED");
+            assertThat(JsonPath.<String>read(lines.get(1), "$.error")).isNotBlank();
+            assertThat(memberRepository.findById(valid)).isPresent();
+            assertThat(memberRepository.findById(invalid)).isEmpty();
+        } finally {
+            memberRepository.deleteById(valid);
+        }
+    }
+
+    @Test
+    void testAddMembersInBulkRequiresLibrarian() {
+        var result = mockMvc.post()
+                .uri("/api/members/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]");
+
+        assertThat(result).hasStatus(HttpStatus.UNAUTHORIZED);
+    }
+
     @Test
     void testDisableMember() throws Exception {
         // Disable a member (using a UUID from initial data)
@@ -80,6 +287,86 @@ class MemberControllerTest {
                 .bodyJson();
     }
 
+    @Test
+    void testChangeStatusInBulk() {
+        // Given: Members of an expiring term, one of them already disabled, and a member of another term
+        Member first = memberRepository.save(termMember("first@term.test", true));
+        Member second = memberRepository.save(termMember("second@TERM.test", true));
+        Member alreadyDisabled = memberRepository.save(termMember("third@term.test", false));
+        Member otherTerm = memberRepository.save(termMember("other@next-term.test", true));
+        List<UUID> ids = List.of(first.getId(), second.getId(), alreadyDisabled.getId(), otherTerm.getId());
+
+        try {
+            assertThat(memberService.isEnabled(first.getId())).isTrue();
+
+            // When: A librarian disables the term by email domain
+            var disableResult = mockMvc.put()
+                    .uri("/api/members/status")
+                    .header("Authorization", LIBRARIAN_AUTH)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"enabled\":false,\"emailDomain\":\"term.test\"}");
+
+            // Then: All members of the term match, and only those still enabled change
+            assertThat(disableResult)
+                    .hasStatus(HttpStatus.OK)
+                    .bodyJson()
+                    .isLenientlyEqualTo("{\"matched\":3,\"changed\":2}");
+            assertThat(memberService.isEnabled(first.getId())).isFalse();
+            assertThat(memberService.isEnabled(second.getId())).isFalse();
+            assertThat(memberService.isEnabled(otherTerm.getId())).isTrue();
+
+            // And: The members can be enabled again by id
+            var enableResult = mockMvc.put()
+                    .uri("/api/members/status")
+                    .header("Authorization", LIBRARIAN_AUTH)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"enabled\":true,\"ids\":[\"%s\",\"%s\",\"%s\"]}"
+                            .formatted(first.getId(), second.getId(), alreadyDisabled.getId()));
+            assertThat(enableResult)
+                    .hasStatus(HttpStatus.OK)
+                    .bodyJson()
+                    .isLenientlyEqualTo("{\"matched\":3,\"changed\":3}");
+            assertThat(memberService.isEnabled(alreadyDisabled.getId())).isTrue();
+        } finally {
+            memberRepository.deleteAllById(ids);
+        }
+    }
+
+    @Test
+    void testChangeStatusAcceptsAnEmailDomainWithItsAtSign() {
+        // Given: A member of a term
+        Member member = memberRepository.save(termMember("member@at-sign.test", true));
+
+        try {
+            // When: A librarian disables the term, writing the domain as it appears in addresses
+            var result = mockMvc.put()
+                    .uri("/api/members/status")
+                    .header("Authorization", LIBRARIAN_AUTH)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"enabled\":false,\"emailDomain\":\"@at-sign.test\"}");
+
+            // Then: The member matches
+            assertThat(result)
+                    .hasStatus(HttpStatus.OK)
+                    .bodyJson()
+                    .isLenientlyEqualTo("{\"matched\":1,\"changed\":1}");
+            assertThat(memberService.isEnabled(member.getId())).isFalse();
+        } finally {
+            memberRepository.deleteById(member.getId());
+        }
+    }
+
+    @Test
+    void testChangeStatusWithoutCriteriaIsRefused() {
+        var result = mockMvc.put()
+                .uri("/api/members/status")
+                .header("Authorization", LIBRARIAN_AUTH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"enabled\":false}");
+
+        assertThat(result).hasStatus(HttpStatus.BAD_REQUEST);
+    }
+
     @Test
     void testSearchMembersByName() throws Exception {
         // Search for members with "John" in the name (from initial data)
@@ -98,6 +385,71 @@ class MemberControllerTest {
                 .bodyJson();
     }
 
+    @Test
+    void testSearchMembersByNameAndEmail() {
+        // When: Searching by a part of the name and a part of the email together
+        var searchResult = mockMvc.get().uri("/api/members/search?name=JOHN&email=johnson@");
+
+        // Then: Only members matching both criteria are returned
+        assertThat(searchResult)
+                .hasStatus(HttpStatus.OK)
+                .bodyJson()
+                .extractingPath("$.items[*].id")
+                .asArray()
+                .containsExactly("b0eebc99-9c0b-4ef8-bb6d-6bb9bd380a13");
+    }
+
+    @Test
+    void testSearchMembersByFullEmail() {
+        // When: Searching by a full email address in another case
+        var searchResult = mockMvc.get().uri("/api/members/search?email=Jane.Smith@Example.com");
+
+        // Then: The member with that address is found
+        assertThat(searchResult)
+                .hasStatus(HttpStatus.OK)
+                .bodyJson()
+                .extractingPath("$.items[*].id")
+                .asArray()
+                .containsExactly("b0eebc99-9c0b-4ef8-bb6d-6bb9bd380a12");
+    }
+
+    @Test
+    void testSearchMembersTreatsWildcardsLiterally() {
+        // When: Searching for a LIKE wildcard
+        var searchResult = mockMvc.get().uri("/api/members/search?name=%25");
+
+        // Then: It only matches itself, which no name contains
+        assertThat(searchResult)
+                .hasStatus(HttpStatus.OK)
+                .bodyJson()
+                .extractingPath("$.items")
+                .asArray()
+                .isEmpty();
+    }
+
+    @Test
+    void testSearchMembersPaginates() throws Exception {
+        // When: Fetching the members with a "j" in the name two at a time
+        var firstPage = mockMvc.get()
+                .uri("/api/members/search?name=j&email=@example.com&size=2")
+                .exchange();
+        String next = JsonPath.read(firstPage.getResponse().getContentAsString(), "$.next");
+        var secondPage = mockMvc.get()
+                .uri("/api/members/search?name=j&email=@example.com&size=2&after=" + next)
+                .exchange();
+
+        // Then: The pages follow each other in id order and the last one has no next key
+        List<String> firstPageIds = JsonPath.read(firstPage.getResponse().getContentAsString(), "$.items[*].id");
+        assertThat(firstPageIds)
+                .containsExactly("b0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11", "b0eebc99-9c0b-4ef8-bb6d-6bb9bd380a12");
+        assertThat(next).isEqualTo("b0eebc99-9c0b-4ef8-bb6d-6bb9bd380a12");
+
+        List<String> secondPageIds = JsonPath.read(secondPage.getResponse().getContentAsString(), "$.items[*].id");
+        String last = JsonPath.read(secondPage.getResponse().getContentAsString(), "$.next");
+        assertThat(secondPageIds).containsExactly("b0eebc99-9c0b-4ef8-bb6d-6bb9bd380a13");
+        assertThat(last).isNull();
+    }
+
     @Test
     void testGetMemberById() throws Exception {
         // Get a member by ID (using a UUID from initial data)
@@ -106,4 +458,12 @@ class MemberControllerTest {
                 .hasStatus(HttpStatus.OK)
                 .bodyJson();
     }
+
+    private static Member termMember(String email, boolean enabled) {
+        Member member = new Member();
+        member.setName("Term Member");
+        member.setEmail(email);
+        member.setEnabled(enabled);
+        return member;
+    }
 }
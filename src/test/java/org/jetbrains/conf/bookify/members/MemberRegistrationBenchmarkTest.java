@@ -0,0 +1,85 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jetbrains.conf.bookify.DbConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Semester start: registering ten thousand members in one bulk request, against registering them one by one.
+ *
+ * <p>Run with {@code -Dbookify.benchmarks=true}.</p>
+ */
+@SpringBootTest
+@Import(DbConfiguration.class)
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "bookify.benchmarks", matches = "true")
+class MemberRegistrationBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(MemberRegistrationBenchmarkTest.class);
+
+    private static final int MEMBERS = 10_000;
+    private static final int ONE_BY_ONE = 200;
+
+    @Autowired
+    private MemberRegistrar memberRegistrar;
+
+    @Autowired
+    private MemberService memberService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void registerSemester() throws Exception {
+        try {
+            // When: A sample is registered one by one, and the whole semester in bulk
+            long start = System.nanoTime();
+            for (Member member : newMembers("single", ONE_BY_ONE)) {
+                memberService.addMember(member);
+            }
+            long singleMillis = (System.nanoTime() - start) / 1_000_000;
+
+            AtomicInteger created = new AtomicInteger();
+            start = System.nanoTime();
+            memberRegistrar.register(newMembers("bulk", MEMBERS), results -> results.stream()
+                    .filter(result -> result.status().equals("CREATED"))
+                    .forEach(result -> created.incrementAndGet()));
+            long bulkMillis = (System.nanoTime() - start) / 1_000_000;
+
+            log.info("One by one: {} members in {} ms, {} members/s",
+                    ONE_BY_ONE, singleMillis, ONE_BY_ONE * 1000L / Math.max(1, singleMillis));
+            log.info("Bulk on {} cores: {} members in {} ms, {} members/s", Runtime.getRuntime().availableProcessors(),
+                    MEMBERS, bulkMillis, MEMBERS * 1000L / Math.max(1, bulkMillis));
+
+            // Then: Every member is registered; the throughputs are logged only, as they vary from run to run
+            assertThat(created).hasValue(MEMBERS);
+        } finally {
+            jdbcTemplate.update("DELETE FROM member WHERE email LIKE '%@semester.test'");
+        }
+    }
+
+    private static List<Member> newMembers(String prefix, int count) {
+        List<Member> members = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Member member = new Member();
+            member.setName("Semester Member " + i);
+            member.setEmail(prefix + i + "@semester.test");
+            member.setPassword("password-" + i);
+            members.add(member);
+        }
+        return members;
+    }
+}
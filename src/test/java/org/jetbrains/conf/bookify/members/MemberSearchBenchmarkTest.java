@@ -0,0 +1,108 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jetbrains.conf.bookify.DbConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Latency of the member search on a million members, against the unindexed {@code ILIKE '%...%'}
+ * scans the search used to run.
+ *
+ * <p>Run with {@code -Dbookify.benchmarks=true}.</p>
+ */
+@SpringBootTest
+@Import(DbConfiguration.class)
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "bookify.benchmarks", matches = "true")
+class MemberSearchBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(MemberSearchBenchmarkTest.class);
+
+    private static final int MEMBERS = 1_000_000;
+    private static final int WARMUP = 20;
+    private static final int SAMPLES = 200;
+
+    @Autowired
+    private MemberService memberService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void searchMillionMembers() {
+        // Given: A million members
+        jdbcTemplate.update("""
+                INSERT INTO member (id, name, email, password, enabled)
+                SELECT gen_random_uuid(), 'Bench Member ' || g, 'bench.member' || g || '@bench.test', 'secret', g % 10 <> 0
+                FROM generate_series(1, ?) g
+                """, MEMBERS);
+        jdbcTemplate.execute("ANALYZE member");
+
+        try {
+            // When: Searching the way librarians do, and the way the search used to
+            Latency legacyName = measure(i -> jdbcTemplate.queryForList(
+                    "SELECT * FROM member WHERE name ILIKE ?", "%member " + (i * 4999 % MEMBERS + 1) + "%"));
+            Latency legacyEmail = measure(i -> jdbcTemplate.queryForList(
+                    "SELECT * FROM member WHERE email ILIKE ?", "%member" + (i * 4999 % MEMBERS + 1) + "@bench.test%"));
+            Latency namePart = measure(i -> memberService.searchMembers(
+                    new MemberCriteria("member " + (i * 4999 % MEMBERS + 1), null, null), null, 50));
+            Latency fullEmail = measure(i -> memberService.searchMembers(
+                    new MemberCriteria(null, "Bench.Member" + (i * 4999 % MEMBERS + 1) + "@bench.test", null), null, 50));
+            Latency combined = measure(i -> memberService.searchMembers(
+                    new MemberCriteria("member " + (i * 4999 % MEMBERS + 1), "@bench.test", true), null, 50));
+            KeysetPage<Member> firstPage = memberService.searchMembers(new MemberCriteria(null, "@bench.test", null), null, 50);
+            UUID deepKey = firstPage.next();
+            Latency nextPage = measure(i -> memberService.searchMembers(
+                    new MemberCriteria(null, "@bench.test", null), deepKey, 50));
+
+            log.info("Search over {} members, p50 / p95 / p99 in ms:", MEMBERS);
+            log.info("  name ILIKE scan (before):    {}", legacyName);
+            log.info("  email ILIKE scan (before):   {}", legacyEmail);
+            log.info("  name part (trigram):         {}", namePart);
+            log.info("  full email (exact):          {}", fullEmail);
+            log.info("  name + email + enabled:      {}", combined);
+            log.info("  next page of a broad search: {}", nextPage);
+
+            // Then: The indexed searches beat the scans they replace
+            assertThat(namePart.p50()).isLessThan(legacyName.p50());
+            assertThat(fullEmail.p50()).isLessThan(legacyEmail.p50());
+        } finally {
+            jdbcTemplate.update("DELETE FROM member WHERE email LIKE '%@bench.test'");
+        }
+    }
+
+    private static Latency measure(IntConsumer search) {
+        for (int i = 0; i < WARMUP; i++) {
+            search.accept(i);
+        }
+        double[] millis = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            search.accept(WARMUP + i);
+            millis[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(millis);
+        return new Latency(millis[SAMPLES / 2], millis[SAMPLES * 95 / 100], millis[SAMPLES * 99 / 100]);
+    }
+
+    private record Latency(double p50, double p95, double p99) {
+
+        @Override
+        public String toString() {
+            return "%.2f / %.2f / %.2f".formatted(p50, p95, p99);
+        }
+    }
+}
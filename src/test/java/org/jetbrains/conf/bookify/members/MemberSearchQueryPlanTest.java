@@ -0,0 +1,91 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jetbrains.conf.bookify.DbConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.jetbrains.conf.bookify.QueryPlans.assertNoSeqScan;
+import static org.jetbrains.conf.bookify.QueryPlans.assertUsesIndex;
+
+/**
+ * Guards the plans of the member search queries against regressions to sequential scans.
+ *
+ * <p>Every test seeds a large member base inside the test transaction, so the data and the
+ * collected statistics are rolled back afterwards.</p>
+ */
+@SpringBootTest
+@Import(DbConfiguration.class)
+@ActiveProfiles("test")
+@Transactional
+class MemberSearchQueryPlanTest {
+
+    private static final int MEMBERS = 50_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seedLargeDataset() {
+        jdbcTemplate.update("""
+                INSERT INTO member (id, name, email, password, enabled)
+                SELECT md5('plan-member-' || g)::uuid, 'Plan Member ' || g, 'plan.member' || g || '@test.com', 'secret', g % 10 <> 0
+                FROM generate_series(1, ?) g
+                """, MEMBERS);
+        jdbcTemplate.execute("ANALYZE member");
+    }
+
+    @Test
+    void searchByNamePart_usesTrigramIndex() {
+        String sql = MemberSearchRepositoryImpl.SELECT_MEMBER
+                + " WHERE lower(name) LIKE '%member 4242%' ORDER BY id LIMIT 51";
+        assertNoSeqScan(jdbcTemplate, "member", sql);
+        assertUsesIndex(jdbcTemplate, "ix_member_name_trgm", sql);
+    }
+
+    @Test
+    void searchByEmailPart_usesTrigramIndex() {
+        String sql = MemberSearchRepositoryImpl.SELECT_MEMBER
+                + " WHERE lower(email) LIKE '%member4242@%' ORDER BY id LIMIT 51";
+        assertNoSeqScan(jdbcTemplate, "member", sql);
+        assertUsesIndex(jdbcTemplate, "ix_member_email_trgm", sql);
+    }
+
+    @Test
+    void searchByFullEmail_usesEmailIndex() {
+        String sql = MemberSearchRepositoryImpl.SELECT_MEMBER
+                + " WHERE lower(email) = 'plan.member4242@test.com' ORDER BY id LIMIT 51";
+        assertNoSeqScan(jdbcTemplate, "member", sql);
+        assertUsesIndex(jdbcTemplate, "ix_member_email_lower", sql);
+    }
+
+    @Test
+    void searchByNameAndEmail_usesIndex() {
+        assertNoSeqScan(jdbcTemplate, "member", MemberSearchRepositoryImpl.SELECT_MEMBER
+                + " WHERE lower(name) LIKE '%member 4242%' AND lower(email) LIKE '%@test.com%'"
+                + " AND enabled = true ORDER BY id LIMIT 51");
+    }
+
+    @Test
+    void searchWithoutCriteria_readsPageInIdOrder() {
+        assertNoSeqScan(jdbcTemplate, "member", MemberSearchRepositoryImpl.SELECT_MEMBER
+                + " WHERE id > md5('plan-member-42')::uuid ORDER BY id LIMIT 51");
+    }
+
+    @Test
+    void nextPageOfABroadSearch_readsOnFromTheKey() {
+        assertNoSeqScan(jdbcTemplate, "member", MemberSearchRepositoryImpl.SELECT_MEMBER
+                + " WHERE lower(email) LIKE '%@test.com%' AND id > md5('plan-member-42')::uuid ORDER BY id LIMIT 51");
+    }
+
+    @Test
+    void listActive_usesIndex() {
+        assertNoSeqScan(jdbcTemplate, "member", MemberSearchRepositoryImpl.SELECT_MEMBER
+                + " WHERE enabled AND id > md5('plan-member-42')::uuid ORDER BY id LIMIT 51");
+    }
+}
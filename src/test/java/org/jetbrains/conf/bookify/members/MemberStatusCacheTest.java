@@ -0,0 +1,141 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jetbrains.conf.bookify.DbConfiguration;
+import org.jetbrains.conf.bookify.config.BookifySettingsConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Import(DbConfiguration.class)
+@ActiveProfiles("test")
+class MemberStatusCacheTest {
+
+    @Autowired
+    private MemberService memberService;
+
+    @Autowired
+    private MemberRepository memberRepository;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BookifySettingsConfig bookifySettingsConfig;
+
+    @Test
+    void isEnabled_isServedFromCacheUntilMemberChanges() {
+        // Given: An enabled member that has been looked up once
+        Member savedMember = memberRepository.save(newMember("cached@test.com"));
+        AtomicInteger lookups = new AtomicInteger();
+        MemberStatusCache cache = new MemberStatusCache(jdbcTemplate, bookifySettingsConfig);
+
+        try {
+            assertThat(cache.isEnabled(savedMember.getId(), id -> countedLookup(id, lookups))).isTrue();
+
+            // When: Looking the member up again
+            boolean enabled = cache.isEnabled(savedMember.getId(), id -> countedLookup(id, lookups));
+
+            // Then: The database is not asked again
+            assertThat(enabled).isTrue();
+            assertThat(lookups).hasValue(1);
+
+            // And: Once the member is invalidated, it is looked up again
+            cache.invalidate(List.of(savedMember.getId()));
+            cache.isEnabled(savedMember.getId(), id -> countedLookup(id, lookups));
+            assertThat(lookups).hasValue(2);
+        } finally {
+            memberRepository.deleteById(savedMember.getId());
+        }
+    }
+
+    @Test
+    void disableMember_takesEffectOnThisNodeRightAway() {
+        // Given: An enabled member known to be eligible
+        Member savedMember = memberRepository.save(newMember("disabled.now@test.com"));
+
+        try {
+            assertThat(memberService.isEnabled(savedMember.getId())).isTrue();
+
+            // When: The member is disabled
+            memberService.disableMember(savedMember.getId());
+
+            // Then: The cached status is not used anymore
+            assertThat(memberService.isEnabled(savedMember.getId())).isFalse();
+        } finally {
+            memberRepository.deleteById(savedMember.getId());
+        }
+    }
+
+    @Test
+    void disableMember_takesEffectOnOtherNodesAfterTheirPoll() {
+        // Given: Another node that has cached the member as enabled
+        Member savedMember = memberRepository.save(newMember("disabled.elsewhere@test.com"));
+        MemberStatusCache otherNode = new MemberStatusCache(jdbcTemplate, bookifySettingsConfig);
+        otherNode.poll();
+
+        try {
+            assertThat(otherNode.isEnabled(savedMember.getId(), this::lookup)).isTrue();
+
+            // When: The member is disabled on this node
+            memberService.disableMember(savedMember.getId());
+
+            // Then: The other node still answers from its cache until it polls
+            assertThat(otherNode.isEnabled(savedMember.getId(), this::lookup)).isTrue();
+            otherNode.poll();
+            assertThat(otherNode.isEnabled(savedMember.getId(), this::lookup)).isFalse();
+        } finally {
+            memberRepository.deleteById(savedMember.getId());
+        }
+    }
+
+    @Test
+    void isEnabled_doesNotCacheLookupRacingAnInvalidation() {
+        // Given: A member that is invalidated while its lookup is in flight
+        Member savedMember = memberRepository.save(newMember("racing@test.com"));
+        MemberStatusCache cache = new MemberStatusCache(jdbcTemplate, bookifySettingsConfig);
+        AtomicInteger lookups = new AtomicInteger();
+
+        try {
+            cache.isEnabled(savedMember.getId(), id -> {
+                Boolean enabled = countedLookup(id, lookups);
+                cache.invalidate(List.of(id));
+                return enabled;
+            });
+
+            // When: Looking the member up again
+            cache.isEnabled(savedMember.getId(), id -> countedLookup(id, lookups));
+
+            // Then: The value read before the invalidation was not kept
+            assertThat(lookups).hasValue(2);
+        } finally {
+            memberRepository.deleteById(savedMember.getId());
+        }
+    }
+
+    private Boolean lookup(UUID memberId) {
+        return memberRepository.findEnabledById(memberId).orElse(null);
+    }
+
+    private Boolean countedLookup(UUID memberId, AtomicInteger lookups) {
+        lookups.incrementAndGet();
+        return lookup(memberId);
+    }
+
+    private static Member newMember(String email) {
+        Member member = new Member();
+        member.setName("Cache Member");
+        member.setEmail(email);
+        member.setEnabled(true);
+        return member;
+    }
+}
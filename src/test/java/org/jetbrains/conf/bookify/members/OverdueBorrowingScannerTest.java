@@ -0,0 +1,109 @@
+package org.jetbrains.conf.bookify.members;
+
+import org.jetbrains.conf.bookify.DbConfiguration;
+import org.jetbrains.conf.bookify.events.BorrowingsOverdueEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.test.web.servlet.assertj.MockMvcTester;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(DbConfiguration.class)
+@TestPropertySource(properties = {
+        "bookify.overdue.days=14",
+        "bookify.overdue.scan.chunk-size=2"
+})
+@ActiveProfiles("test")
+@RecordApplicationEvents
+class OverdueBorrowingScannerTest {
+
+    private static final UUID TEST_BOOK_1 = UUID.fromString("a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11");
+    private static final UUID TEST_BOOK_2 = UUID.fromString("a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a12");
+
+    @Autowired
+    private OverdueBorrowingScanner scanner;
+
+    @Autowired
+    private BorrowingRepository borrowingRepository;
+
+    @Autowired
+    private MemberRepository memberRepository;
+
+    @Autowired
+    private MockMvcTester mockMvc;
+
+    @Autowired
+    private ApplicationEvents events;
+
+    @Test
+    void scan_marksOnlyOverdueBorrowingsInChunks() {
+        // Given: A member with one overdue and one recent borrowing
+        Member member = new Member();
+        member.setName("Overdue Scan Member");
+        member.setEmail("overduescan@test.com");
+        member.setEnabled(true);
+        Member savedMember = memberRepository.save(member);
+
+        Borrowing overdue = borrowingRepository.save(new Borrowing(null, TEST_BOOK_1, TEST_BOOK_1, savedMember.getId(),
+                LocalDateTime.now().minusDays(20), null, BorrowingStatus.APPROVED));
+        Borrowing recent = borrowingRepository.save(new Borrowing(null, TEST_BOOK_2, TEST_BOOK_2, savedMember.getId(),
+                LocalDateTime.now().minusDays(2), null, BorrowingStatus.APPROVED));
+
+        try {
+            // When: The scanner runs
+            scanner.scan();
+
+            // Then: Only the overdue borrowing is marked
+            assertThat(borrowingRepository.findById(overdue.getId()).orElseThrow().getStatus())
+                    .isEqualTo(BorrowingStatus.OVERDUE);
+            assertThat(borrowingRepository.findById(recent.getId()).orElseThrow().getStatus())
+                    .isEqualTo(BorrowingStatus.APPROVED);
+
+            // And: Every chunk was announced, none bigger than the chunk size
+            assertThat(events.stream(BorrowingsOverdueEvent.class))
+                    .isNotEmpty()
+                    .allMatch(event -> event.borrowings().size() <= 2)
+                    .anyMatch(event -> event.borrowings().stream()
+                            .anyMatch(b -> b.borrowingId().equals(overdue.getId())));
+
+            // And: The overdue listing is served from the materialized status
+            var overdueResult = mockMvc.get().uri("/api/borrowings/overdue?size=500");
+            assertThat(overdueResult)
+                    .hasStatus(HttpStatus.OK)
+                    .bodyJson()
+                    .extractingPath("$.items[*].id")
+                    .asArray()
+                    .contains(overdue.getId().toString())
+                    .doesNotContain(recent.getId().toString());
+        } finally {
+            borrowingRepository.deleteById(overdue.getId());
+            borrowingRepository.deleteById(recent.getId());
+            memberRepository.deleteById(savedMember.getId());
+        }
+    }
+
+    @Test
+    void scan_doesNothingWhenNothingIsOverdue() {
+        // Given: A first scan has marked everything that is overdue
+        scanner.scan();
+
+        // When: Scanning again
+        int marked = scanner.scan();
+
+        // Then: Nothing is marked twice
+        assertThat(marked).isZero();
+    }
+}
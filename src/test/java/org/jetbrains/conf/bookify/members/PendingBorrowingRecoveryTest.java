@@ -0,0 +1,161 @@
+package org.jetbrains.conf.bookify.members;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jetbrains.conf.bookify.DbConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.modulith.events.ApplicationModuleListener;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Import({DbConfiguration.class, PendingBorrowingRecoveryTest.FailingListener.class})
+@TestPropertySource(properties = {
+        "bookify.recovery.stuck-after-seconds=0",
+        "bookify.recovery.backoff-seconds=0",
+        "bookify.recovery.max-attempts=2",
+        "bookify.recovery.lease-seconds=0"
+})
+@ActiveProfiles("test")
+class PendingBorrowingRecoveryTest {
+
+    @Autowired
+    private PendingBorrowingRecovery recovery;
+
+    @Autowired
+    private FailingListener failingListener;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private BorrowingRepository borrowingRepository;
+
+    @Autowired
+    private MemberRepository memberRepository;
+
+    @Test
+    void recover_resubmitsFailingPublicationUntilItIsDeadLettered() throws Exception {
+        // Given: An event whose listener always fails
+        PoisonEvent event = new PoisonEvent(UUID.randomUUID());
+        transactionTemplate.executeWithoutResult(status -> eventPublisher.publishEvent(event));
+        awaitCalls(1);
+
+        try {
+            // When: The recovery job runs until the attempts are used up
+            assertThat(recovery.recover()).isPositive();
+            awaitCalls(2);
+            assertThat(recovery.recover()).isPositive();
+            awaitCalls(3);
+            recovery.recover();
+
+            // Then: The publication was moved to the dead letters
+            Integer deadLetters = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM event_dead_letter WHERE serialized_event LIKE ?",
+                    Integer.class, "%" + event.id() + "%");
+            assertThat(deadLetters).isEqualTo(1);
+            assertThat(meterRegistry.get("bookify.events.dead-lettered").counter().count()).isPositive();
+
+            // And: It is not resubmitted any more
+            int calls = failingListener.calls.get();
+            recovery.recover();
+            Thread.sleep(500);
+            assertThat(failingListener.calls.get()).isEqualTo(calls);
+        } finally {
+            jdbcTemplate.update("DELETE FROM event_dead_letter WHERE serialized_event LIKE ?", "%" + event.id() + "%");
+        }
+    }
+
+    @Test
+    void recover_reportsAndResubmitsStuckPendingBorrowings() throws Exception {
+        // Given: A borrowing of an available book that has been pending for an hour, with no publication left
+        UUID bookId = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO book (id, name, isbn, available) VALUES (?, 'Stuck Book', ?, true)",
+                bookId, bookId.toString().substring(0, 13));
+        Member member = new Member();
+        member.setName("Stuck Member");
+        member.setEmail("stuck-" + bookId + "@test.com");
+        member.setEnabled(true);
+        Member savedMember = memberRepository.save(member);
+        Borrowing stuck = borrowingRepository.save(new Borrowing(null, null, bookId, savedMember.getId(),
+                null, null, BorrowingStatus.PENDING));
+        jdbcTemplate.update("UPDATE borrowing SET requested_at = ? WHERE id = ?",
+                LocalDateTime.now().minusHours(1), stuck.getId());
+
+        try {
+            // When: The recovery job runs
+            recovery.recover();
+
+            // Then: The borrowing shows up in the backlog metrics
+            assertThat(meterRegistry.get("bookify.borrowings.stuck.size").gauge().value()).isGreaterThanOrEqualTo(1);
+            assertThat(meterRegistry.get("bookify.borrowings.stuck.age").gauge().value()).isGreaterThanOrEqualTo(3000);
+            assertThat(meterRegistry.get("bookify.events.backlog.size").gauge()).isNotNull();
+
+            // When: It resubmits the stuck borrowings
+            assertThat(recovery.resubmitStuckBorrowings()).isPositive();
+
+            // Then: The books module answers it, and it is pending no longer
+            assertThat(awaitStatus(stuck.getId(), BorrowingStatus.APPROVED)).isEqualTo(BorrowingStatus.APPROVED);
+            assertThat(meterRegistry.get("bookify.borrowings.resubmitted").counter().count()).isPositive();
+        } finally {
+            jdbcTemplate.update("DELETE FROM book_borrow_request WHERE borrowing_id = ?", stuck.getId());
+            borrowingRepository.deleteById(stuck.getId());
+            memberRepository.deleteById(savedMember.getId());
+            jdbcTemplate.update("DELETE FROM book WHERE id = ?", bookId);
+        }
+    }
+
+    private BorrowingStatus awaitStatus(UUID borrowingId, BorrowingStatus expected) throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        BorrowingStatus status = borrowingRepository.findById(borrowingId).orElseThrow().getStatus();
+        while (status != expected && System.currentTimeMillis() - startTime < 5000) {
+            Thread.sleep(100);
+            status = borrowingRepository.findById(borrowingId).orElseThrow().getStatus();
+        }
+        return status;
+    }
+
+    private void awaitCalls(int expected) throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        while (failingListener.calls.get() < expected && System.currentTimeMillis() - startTime < 5000) {
+            Thread.sleep(100);
+        }
+        assertThat(failingListener.calls.get()).isGreaterThanOrEqualTo(expected);
+    }
+
+    record PoisonEvent(UUID id) {
+    }
+
+    @TestConfiguration
+    static class FailingListener {
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        @ApplicationModuleListener
+        void on(PoisonEvent event) {
+            calls.incrementAndGet();
+            throw new IllegalStateException("Listener for " + event.id() + " always fails");
+        }
+    }
+}
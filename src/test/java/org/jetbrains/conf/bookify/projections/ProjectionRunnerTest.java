@@ -0,0 +1,267 @@
+package org.jetbrains.conf.bookify.projections;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.jetbrains.conf.bookify.DbConfiguration;
+import org.jetbrains.conf.bookify.config.BookifySettingsConfig;
+import org.jetbrains.conf.bookify.events.BookAvailabilityCheckedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.assertj.MockMvcTester;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(DbConfiguration.class)
+@ActiveProfiles("test")
+class ProjectionRunnerTest {
+
+    private static final String LIBRARIAN_AUTH = "Basic " + Base64.getEncoder().encodeToString("testlibrarian:password".getBytes());
+    private static final UUID TEST_MEMBER_ID = UUID.fromString("b0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11");
+
+    @Autowired
+    private ProjectionRunner projectionRunner;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MockMvcTester mockMvc;
+
+    private final UUID bookId = UUID.randomUUID();
+
+    @BeforeEach
+    void insertHistory() {
+        // Three approved loans, one of them still out and one archived, a rejected and a pending request
+        jdbcTemplate.update("INSERT INTO book (id, name, isbn, available) VALUES (?, 'Projected Book', ?, true)",
+                bookId, bookId.toString().substring(0, 13));
+        insertBorrowing("borrowing", bookId, "APPROVED");
+        insertBorrowing("borrowing", bookId, "RETURNED");
+        insertBorrowing("borrowing_archive", bookId, "RETURNED");
+        insertBorrowing("borrowing", null, "REJECTED");
+        insertBorrowing("borrowing", null, "PENDING");
+    }
+
+    @AfterEach
+    void deleteHistory() {
+        jdbcTemplate.update("DELETE FROM book_popularity_borrowing WHERE book_id = ?", bookId);
+        jdbcTemplate.update("DELETE FROM book_borrow_request WHERE book_id = ?", bookId);
+        jdbcTemplate.update("DELETE FROM borrowing WHERE requested_book_id = ?", bookId);
+        jdbcTemplate.update("DELETE FROM borrowing_archive WHERE requested_book_id = ?", bookId);
+        jdbcTemplate.update("DELETE FROM book_popularity WHERE book_id = ?", bookId);
+        jdbcTemplate.update("DELETE FROM book WHERE id = ?", bookId);
+    }
+
+    @Test
+    void rebuild_replaysTheBorrowingHistoryAndGoesLive() throws Exception {
+        // When: The projection is rebuilt
+        long replayed = projectionRunner.rebuild(BookPopularityProjection.NAME);
+
+        // Then: Every approved loan counts, archived ones included
+        assertThat(replayed).isGreaterThanOrEqualTo(5);
+        assertThat(borrowCount()).isEqualTo(3);
+        assertThat(projectionRunner.checkpoints())
+                .filteredOn(checkpoint -> checkpoint.name().equals(BookPopularityProjection.NAME))
+                .singleElement()
+                .satisfies(checkpoint -> {
+                    assertThat(checkpoint.status()).isEqualTo(ProjectionCheckpoint.LIVE);
+                    assertThat(checkpoint.rebuiltBorrowings()).isEqualTo(replayed);
+                });
+
+        // When: Another loan is approved afterwards
+        UUID pending = insertBorrowing("borrowing", null, "PENDING");
+        transactionTemplate.executeWithoutResult(status -> eventPublisher.publishEvent(
+                new BookAvailabilityCheckedEvent(bookId, pending, true)));
+
+        // Then: The live event is applied on top of the history
+        long startTime = System.currentTimeMillis();
+        while (borrowCount() < 4 && System.currentTimeMillis() - startTime < 5000) {
+            Thread.sleep(100);
+        }
+        assertThat(borrowCount()).isEqualTo(4);
+    }
+
+    @Test
+    void liveEvents_countTheSameAsARebuild() throws Exception {
+        // Given: A live projection
+        projectionRunner.rebuild(BookPopularityProjection.NAME);
+        LocalDateTime since = LocalDateTime.now().minusSeconds(1);
+
+        // When: A hand-over is delivered twice, and another one is declined as its request was rejected already
+        UUID pending = insertBorrowing("borrowing", null, "PENDING");
+        UUID rejected = insertBorrowing("borrowing", null, "REJECTED");
+        BookAvailabilityCheckedEvent handOver = new BookAvailabilityCheckedEvent(bookId, pending, true);
+        transactionTemplate.executeWithoutResult(status -> eventPublisher.publishEvent(handOver));
+        transactionTemplate.executeWithoutResult(status -> eventPublisher.publishEvent(handOver));
+        transactionTemplate.executeWithoutResult(status -> eventPublisher.publishEvent(
+                new BookAvailabilityCheckedEvent(bookId, rejected, true)));
+        awaitPublicationsCompleted(since);
+        long live = borrowCount();
+
+        // Then: Each approved loan counts once, as a rebuild from the borrowing history counts it
+        assertThat(live).isEqualTo(4);
+        projectionRunner.rebuild(BookPopularityProjection.NAME);
+        assertThat(borrowCount()).isEqualTo(live);
+    }
+
+    @Test
+    void rebuild_takesItsConnectionsFromThePoolOfTheProjections() {
+        // Given: The connections the projections pool handed out so far
+        double acquired = projectionsPoolAcquisitions();
+
+        // When: The projection is rebuilt
+        projectionRunner.rebuild(BookPopularityProjection.NAME);
+
+        // Then: It got its connections from there
+        assertThat(projectionsPoolAcquisitions()).isGreaterThan(acquired);
+    }
+
+    @Test
+    void projectionRunner_refusesToStartWhenARebuildNeedsMoreConnectionsThanThePoolHas() {
+        // Given: A rebuild of six partitions, which needs 14 connections, and a pool of 10
+        ProjectionSettings settings = new ProjectionSettings(true, 6, 500);
+        BookifySettingsConfig bookifySettingsConfig = new BookifySettingsConfig();
+        bookifySettingsConfig.setBulkheadsProjectionsPoolSize(10);
+
+        // When: The runner is created
+        // Then: It fails
+        assertThatThrownBy(() -> new ProjectionRunner(List.of(), jdbcTemplate, transactionManager, settings,
+                bookifySettingsConfig))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("needs 14 connections");
+    }
+
+    @Test
+    void rebuild_isSkippedWhileAnotherNodeHoldsTheLockOfTheProjection() throws Exception {
+        // Given: A counted loan, and another node rebuilding the projection
+        jdbcTemplate.update("INSERT INTO book_popularity (book_id, borrow_count) VALUES (?, 42)", bookId);
+        try (Connection otherNode = Objects.requireNonNull(jdbcTemplate.getDataSource()).getConnection()) {
+            lock(otherNode, "pg_advisory_lock");
+
+            // When: This node rebuilds the projection
+            // Then: It refuses, leaving the projection alone
+            assertThatThrownBy(() -> projectionRunner.rebuild(BookPopularityProjection.NAME))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("another node");
+            assertThat(borrowCount()).isEqualTo(42);
+
+            lock(otherNode, "pg_advisory_unlock");
+        }
+
+        // When: The other node is done
+        projectionRunner.rebuild(BookPopularityProjection.NAME);
+
+        // Then: The rebuild runs here
+        assertThat(borrowCount()).isEqualTo(3);
+    }
+
+    @Test
+    void rebuildEndpoint_isForLibrariansOnly() throws Exception {
+        // When: Anonymous users ask for a rebuild
+        // Then: They are turned away
+        assertThat(mockMvc.post().uri("/api/projections/" + BookPopularityProjection.NAME + "/rebuild"))
+                .hasStatus(HttpStatus.UNAUTHORIZED);
+
+        // When: A librarian asks for a rebuild of an unknown and of a known projection
+        LocalDateTime requestedAt = LocalDateTime.now().minusSeconds(1);
+        assertThat(mockMvc.post().uri("/api/projections/unknown/rebuild").header("Authorization", LIBRARIAN_AUTH))
+                .hasStatus(HttpStatus.NOT_FOUND);
+        assertThat(mockMvc.post().uri("/api/projections/" + BookPopularityProjection.NAME + "/rebuild")
+                .header("Authorization", LIBRARIAN_AUTH))
+                .hasStatus(HttpStatus.ACCEPTED);
+
+        // Then: The rebuild completes in the background
+        long startTime = System.currentTimeMillis();
+        while (!isLive(requestedAt) && System.currentTimeMillis() - startTime < 5000) {
+            Thread.sleep(100);
+        }
+        assertThat(borrowCount()).isEqualTo(3);
+        assertThat(mockMvc.get().uri("/api/projections/book-popularity?limit=100").header("Authorization", LIBRARIAN_AUTH))
+                .hasStatus(HttpStatus.OK)
+                .bodyJson()
+                .extractingPath("$[*].bookId")
+                .asArray()
+                .contains(bookId.toString());
+    }
+
+    private static void lock(Connection connection, String function) throws SQLException {
+        try (PreparedStatement statement =
+                     connection.prepareStatement("SELECT " + function + "(hashtextextended(?, 0))")) {
+            statement.setString(1, ProjectionRunner.REBUILD_LOCK + BookPopularityProjection.NAME);
+            statement.executeQuery().close();
+        }
+    }
+
+    private double projectionsPoolAcquisitions() {
+        Timer acquire = meterRegistry.find("hikaricp.connections.acquire").tag("pool", "bookify-projections").timer();
+        return acquire != null ? acquire.count() : 0;
+    }
+
+    private UUID insertBorrowing(String table, UUID lentBookId, String status) {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO " + table + " (id, book_id, requested_book_id, member_id, borrow_date, status)"
+                        + " VALUES (?, ?, ?, ?, now() - interval '30 days', ?)",
+                id, lentBookId, bookId, TEST_MEMBER_ID, status);
+        return id;
+    }
+
+    private void awaitPublicationsCompleted(LocalDateTime since) throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        while (incompletePublicationsSince(since) > 0 && System.currentTimeMillis() - startTime < 5000) {
+            Thread.sleep(100);
+        }
+        assertThat(incompletePublicationsSince(since)).isZero();
+    }
+
+    private int incompletePublicationsSince(LocalDateTime since) {
+        return Objects.requireNonNull(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM event_publication WHERE publication_date >= ? AND completion_date IS NULL",
+                Integer.class, since));
+    }
+
+    private boolean isLive(LocalDateTime rebuiltAfter) {
+        return projectionRunner.checkpoints().stream()
+                .anyMatch(checkpoint -> checkpoint.name().equals(BookPopularityProjection.NAME)
+                        && checkpoint.status().equals(ProjectionCheckpoint.LIVE)
+                        && checkpoint.startedAt() != null && checkpoint.startedAt().isAfter(rebuiltAfter));
+    }
+
+    private long borrowCount() {
+        return jdbcTemplate.query("SELECT borrow_count FROM book_popularity WHERE book_id = ?",
+                rs -> rs.next() ? rs.getLong(1) : 0L, bookId);
+    }
+}